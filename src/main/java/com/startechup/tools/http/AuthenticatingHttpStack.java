@@ -0,0 +1,222 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpStack;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Refreshes the access token once when requests fail with 401 Unauthorized. While the refresh runs,
+ * requests with an Authorization header to the hosts that answered 401 wait before they are sent,
+ * instead of all failing with the expired token. Requests that failed are sent once more with the
+ * new token.
+ */
+public class AuthenticatingHttpStack implements HttpStack {
+
+    private static final String TAG = "AuthenticatingHttpStack";
+
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+
+    private final HttpStack mHttpStack;
+
+    private final Authenticator mAuthenticator;
+
+    /**
+     * Client whose access token is refreshed.
+     */
+    private final ValleyClient mClient;
+
+    /**
+     * Guards the fields below, waiting requests are woken up on it.
+     */
+    private final Object mLock = new Object();
+
+    /**
+     * Hosts whose requests wait for the running refresh.
+     */
+    private final Set<String> mPausedHosts = new HashSet<>();
+
+    private boolean mRefreshing;
+
+    /**
+     * Authorization header value replaced by the last successful refresh. Requests that fail
+     * with it are only sent again.
+     */
+    private String mStaleAuthorization;
+
+    /**
+     * Authorization header value the last failed refresh was for, so a failed refresh is not
+     * repeated for every request still using it.
+     */
+    private String mFailedAuthorization;
+
+    public AuthenticatingHttpStack(HttpStack httpStack, Authenticator authenticator, ValleyClient client) {
+        mHttpStack = httpStack;
+        mAuthenticator = authenticator;
+        mClient = client;
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        String host = new URL(request.getUrl()).getHost();
+
+        String authorization = request.getHeaders().get(HEADER_AUTHORIZATION);
+        Map<String, String> headers = additionalHeaders;
+        if(authorization != null) {
+            awaitRefresh(host);
+
+            // Most requests keep the headers they were built with, the token may have changed since.
+            headers = withCurrentAuthorization(additionalHeaders, authorization);
+            String current = headers.get(HEADER_AUTHORIZATION);
+            if(current != null) {
+                authorization = current;
+            }
+        }
+
+        HttpResponse response = mHttpStack.performRequest(request, headers);
+        if(authorization == null || response.getStatusLine().getStatusCode() != HttpStatus.SC_UNAUTHORIZED) {
+            return response;
+        }
+
+        // Let go of the connection, keep the body in case the 401 is returned after all.
+        HttpEntity entity = response.getEntity();
+        if(entity != null) {
+            try {
+                ByteArrayEntity buffered = new ByteArrayEntity(EntityUtils.toByteArray(entity));
+                buffered.setContentType(entity.getContentType());
+                response.setEntity(buffered);
+            } finally {
+                // Releases the permits OkHttpStack holds until the body is consumed.
+                entity.consumeContent();
+            }
+        }
+
+        if(!refresh(host, authorization)) {
+            return response;
+        }
+
+        request.addMarker("auth-retry");
+
+        return mHttpStack.performRequest(request, withCurrentAuthorization(additionalHeaders, authorization));
+    }
+
+    /**
+     * Returns the additional headers with the Authorization header of the client's current token,
+     * which take precedence over the request's own headers. Unchanged if the request does not use
+     * the client's token or the token did not change.
+     */
+    private Map<String, String> withCurrentAuthorization(Map<String, String> additionalHeaders,
+                                                         String authorization) {
+        String current = "Bearer " + mClient.getAccessToken();
+        if(!authorization.startsWith("Bearer ") || authorization.equals(current)) {
+            return additionalHeaders;
+        }
+
+        Map<String, String> headers = new HashMap<>(additionalHeaders);
+        headers.put(HEADER_AUTHORIZATION, current);
+
+        return headers;
+    }
+
+    /**
+     * Waits while a refresh for the host runs.
+     */
+    private void awaitRefresh(String host) throws IOException {
+        synchronized(mLock) {
+            while(mPausedHosts.contains(host)) {
+                waitForRefresh();
+            }
+        }
+    }
+
+    /**
+     * Gets a new token for a request that failed with the given Authorization header, unless
+     * another request already did.
+     *
+     * @return True if the request should be sent again
+     */
+    private boolean refresh(String host, String failedAuthorization) throws IOException {
+        synchronized(mLock) {
+            mPausedHosts.add(host);
+            while(mRefreshing) {
+                waitForRefresh();
+            }
+
+            if(failedAuthorization.equals(mStaleAuthorization)) {
+                mPausedHosts.remove(host);
+                return true;
+            }
+            if(failedAuthorization.equals(mFailedAuthorization)) {
+                mPausedHosts.remove(host);
+                return false;
+            }
+
+            mRefreshing = true;
+        }
+
+        String accessToken = null;
+        try {
+            Log.d(TAG, "Refreshing access token");
+            accessToken = mAuthenticator.refreshToken();
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to refresh access token", e);
+        } finally {
+            synchronized(mLock) {
+                if(accessToken != null) {
+                    mClient.setAccessToken(accessToken);
+                    mStaleAuthorization = failedAuthorization;
+                    mFailedAuthorization = null;
+                } else {
+                    mFailedAuthorization = failedAuthorization;
+                }
+
+                mRefreshing = false;
+                mPausedHosts.clear();
+                mLock.notifyAll();
+            }
+        }
+
+        return accessToken != null;
+    }
+
+    private void waitForRefresh() throws IOException {
+        try {
+            mLock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the access token");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Gets a new access token when the API answers 401 Unauthorized. However many requests fail at
+ * the same time, {@link #refreshToken()} runs once; requests to the same host wait for it and are
+ * then sent again with the new token. Set it with
+ * {@link NetworkingValley.Builder#setAuthenticator(Authenticator)}.
+ *
+ * <pre>
+ * new Authenticator() {
+ *     public String refreshToken() throws VolleyError {
+ *         String response = execute(NetworkingValley.constructAuthRequest(tokenUrl, refreshParams, null));
+ *         return parseAccessToken(response);
+ *     }
+ * };
+ * </pre>
+ */
+public abstract class Authenticator {
+
+    private Network mNetwork;
+
+    /**
+     * Returns a new access token, or null if the token cannot be refreshed and the user has to sign
+     * in again. Called on a network thread. Send the refresh call with {@link #execute(Request)},
+     * the queue's threads may all be waiting for this refresh.
+     */
+    public abstract String refreshToken() throws VolleyError;
+
+    /**
+     * Sends the request on the calling thread, outside of the request queue, and returns the
+     * response body. The request's listeners are not called.
+     *
+     * @param request Request without an Authorization header, e.g. from
+     *                {@link NetworkingValley#constructAuthRequest(String, java.util.Map, OnAPIListener)}
+     * @return Response body
+     */
+    protected final String execute(Request<?> request) throws VolleyError {
+        NetworkResponse response = mNetwork.performRequest(request);
+
+        try {
+            return new String(response.data, HttpHeaderParser.parseCharset(response.headers));
+        } catch (UnsupportedEncodingException e) {
+            return new String(response.data);
+        }
+    }
+
+    /**
+     * Called by {@link ValleyClient.Builder#build()}.
+     */
+    void attach(Network network) {
+        mNetwork = network;
+    }
+}
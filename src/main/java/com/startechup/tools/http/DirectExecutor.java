@@ -0,0 +1,41 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs commands right away on the calling thread. Used as a delivery executor,
+ * responses are handed to the listener on the network thread that parsed them.
+ */
+public class DirectExecutor implements Executor {
+
+    private static final DirectExecutor INSTANCE = new DirectExecutor();
+
+    private DirectExecutor() {
+    }
+
+    public static DirectExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        command.run();
+    }
+}
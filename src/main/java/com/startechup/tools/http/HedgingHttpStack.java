@@ -0,0 +1,331 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpStack;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cuts the tail latency of GET requests. A GET that has no response after the delay of its
+ * {@link HedgingPolicy} is sent a second time on a separate connection pool, so a stalled
+ * connection does not hold it back. The first response wins and the other attempt is cancelled.
+ *
+ * <p>Only plain GETs are hedged: other methods may not be idempotent, and a
+ * {@link StreamingRequest} writes its body somewhere as it reads it. The first attempt runs on the
+ * network thread and hedges on a small pool; a hedge that wins disconnects the first attempt so the
+ * network thread returns its response.</p>
+ */
+public class HedgingHttpStack implements HttpStack {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "HedgingHttpStack";
+
+    private static final int HEDGE_MAX_IDLE_CONNECTIONS = 2;
+
+    private static final long HEDGE_KEEP_ALIVE_MS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * Maximum number of hedges in flight, later ones wait for a free thread
+     */
+    private static final int HEDGE_THREADS = 4;
+
+    private final OkHttpStack mHttpStack;
+
+    /**
+     * Sends the hedges, its own connection pool keeps them off the connection that stalled
+     */
+    private final OkHttpStack mHedgeStack;
+
+    private final HedgingPolicy mPolicy;
+
+    /**
+     * Sends the hedges once their delay passed
+     */
+    private final ScheduledExecutorService mExecutor;
+
+    /**
+     * Public constructor
+     *
+     * @param httpStack Stack of the client, sends the first attempt
+     * @param policy Decides when to hedge
+     */
+    public HedgingHttpStack(OkHttpStack httpStack, HedgingPolicy policy) {
+        mHttpStack = httpStack;
+        mPolicy = policy;
+
+        OkHttpClient hedgeClient = httpStack.getOkHttpClient().clone();
+        hedgeClient.setConnectionPool(new ConnectionPool(HEDGE_MAX_IDLE_CONNECTIONS, HEDGE_KEEP_ALIVE_MS));
+        // Hedges take the same per-host stream permits as the first attempts, so a host never sees
+        // more than maxStreamsPerHost requests. They take no link quality permit: with a single one
+        // on a poor link, a hedge would only wait behind the attempt that stalled.
+        mHedgeStack = new OkHttpStack(hedgeClient, httpStack.getMaxStreamsPerHost(), httpStack.getHostPermitMap());
+        hedgeClient.setProtocols(httpStack.getOkHttpClient().getProtocols());
+
+        mExecutor = new ScheduledThreadPoolExecutor(HEDGE_THREADS, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public HedgingPolicy getPolicy() {
+        return mPolicy;
+    }
+
+    @Override
+    public HttpResponse performRequest(final Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        if(request.getMethod() != Request.Method.GET || request instanceof StreamingRequest) {
+            return mHttpStack.performRequest(request, additionalHeaders);
+        }
+
+        mPolicy.onRequest();
+        long start = SystemClock.elapsedRealtime();
+
+        final long delayMs = mPolicy.getHedgeDelayMs();
+        if(delayMs < 0) {
+            // Not enough response times yet, learn them from plain requests.
+            HttpResponse response = mHttpStack.performRequest(request, additionalHeaders);
+            mPolicy.addResponseTime(SystemClock.elapsedRealtime() - start);
+            return response;
+        }
+
+        final Attempt first = new Attempt(mHttpStack, request, additionalHeaders);
+        final Attempt hedge = new Attempt(mHedgeStack, request, additionalHeaders);
+
+        // Set by whoever comes first: the first attempt finishing or the hedge timer.
+        final AtomicBoolean decided = new AtomicBoolean();
+        ScheduledFuture<?> timer = mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(!decided.compareAndSet(false, true)) {
+                    return;
+                }
+
+                if(!mPolicy.tryHedge()) {
+                    hedge.skip();
+                    return;
+                }
+
+                Log.d(TAG, "Hedging " + request.getUrl() + " after " + delayMs + " ms");
+                hedge.run();
+
+                // Disconnects the first attempt so the network thread returns the hedge's response,
+                // unless the first attempt already won.
+                if(hedge.mResponse != null && !first.cancel()) {
+                    hedge.cancel();
+                }
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+
+        first.run();
+        if(decided.compareAndSet(false, true)) {
+            // Finished before the delay, no hedge was sent.
+            timer.cancel(false);
+            HttpResponse response = first.take();
+            if(response == null) {
+                first.rethrow();
+            }
+            mPolicy.addResponseTime(SystemClock.elapsedRealtime() - start);
+            return response;
+        }
+
+        HttpResponse response = first.take();
+        if(response != null) {
+            hedge.cancel();
+            mPolicy.addResponseTime(SystemClock.elapsedRealtime() - start);
+            return response;
+        }
+
+        // The first attempt failed or lost, a failed attempt does not win while the hedge may
+        // still answer.
+        try {
+            hedge.mFinished.await();
+        } catch (InterruptedException e) {
+            hedge.cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + request.getUrl());
+        }
+
+        response = hedge.take();
+        if(response == null) {
+            // Both failed, report the failure of the original request.
+            first.rethrow();
+        }
+
+        mPolicy.addResponseTime(SystemClock.elapsedRealtime() - start);
+        mPolicy.onHedgeWon();
+        return response;
+    }
+
+    /**
+     * One attempt of a request, {@link #mFinished} is counted down once it has a response or
+     * failed.
+     */
+    private static class Attempt implements Runnable {
+
+        final OkHttpStack mStack;
+        final Request<?> mRequest;
+        final Map<String, String> mAdditionalHeaders;
+        final CountDownLatch mFinished = new CountDownLatch(1);
+
+        /**
+         * Connection of the attempt, disconnected to cancel it
+         */
+        final AtomicReference<HttpURLConnection> mConnection = new AtomicReference<>();
+
+        volatile HttpResponse mResponse;
+
+        volatile Exception mFailure;
+
+        private boolean mCancelled;
+
+        /**
+         * Set once the response is returned, it must not be closed by a cancel after that
+         */
+        private boolean mTaken;
+
+        Attempt(OkHttpStack stack, Request<?> request, Map<String, String> additionalHeaders) {
+            mStack = stack;
+            mRequest = request;
+            mAdditionalHeaders = additionalHeaders;
+        }
+
+        @Override
+        public void run() {
+            OkHttpStack.CURRENT_CONNECTION.set(mConnection);
+            try {
+                HttpResponse response = mStack.performRequest(mRequest, mAdditionalHeaders);
+                synchronized (this) {
+                    if(mCancelled) {
+                        close(response);
+                        return;
+                    }
+                    mResponse = response;
+                }
+            } catch (IOException | AuthFailureError | RuntimeException e) {
+                mFailure = e;
+            } finally {
+                OkHttpStack.CURRENT_CONNECTION.remove();
+                mFinished.countDown();
+            }
+        }
+
+        /**
+         * Finishes an attempt that was not sent.
+         */
+        void skip() {
+            mFinished.countDown();
+        }
+
+        /**
+         * Returns the response of a finished attempt, null if it failed or was cancelled.
+         */
+        synchronized HttpResponse take() {
+            mTaken = mResponse != null;
+            return mResponse;
+        }
+
+        /**
+         * Cancels the attempt, returns false if its response was already taken.
+         */
+        boolean cancel() {
+            HttpResponse response;
+            synchronized (this) {
+                if(mTaken) {
+                    return false;
+                }
+                mCancelled = true;
+                response = mResponse;
+                mResponse = null;
+            }
+
+            if(response != null) {
+                close(response);
+            }
+
+            HttpURLConnection connection = mConnection.get();
+            if(connection != null) {
+                connection.disconnect();
+            }
+            return true;
+        }
+
+        void rethrow() throws IOException, AuthFailureError {
+            if(mFailure instanceof IOException) {
+                throw (IOException) mFailure;
+            }
+            if(mFailure instanceof AuthFailureError) {
+                throw (AuthFailureError) mFailure;
+            }
+            if(mFailure instanceof RuntimeException) {
+                throw (RuntimeException) mFailure;
+            }
+            throw new IOException("Request cancelled: " + mRequest.getUrl());
+        }
+
+        @SuppressWarnings("deprecation")
+        private static void close(HttpResponse response) {
+            HttpEntity entity = response.getEntity();
+            if(entity == null) {
+                return;
+            }
+
+            try {
+                // consumeContent() alone does not close the stream of every entity.
+                entity.getContent().close();
+            } catch (IOException | IllegalStateException e) {
+                Log.w(TAG, "Unable to close a cancelled response: " + e.getMessage());
+            } finally {
+                // Releases the permits of the stack even if the stream failed to close.
+                try {
+                    entity.consumeContent();
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to consume a cancelled response: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
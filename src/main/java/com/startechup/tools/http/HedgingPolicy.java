@@ -0,0 +1,170 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a GET is hedged, see {@link HedgingHttpStack}. A request is hedged once it has
+ * waited longer than a percentile of the recent response times, the 95th by default, and only
+ * while hedges stay under a share of all requests, 5% by default, so a slow server is not hit
+ * with twice the load.
+ */
+public class HedgingPolicy {
+
+    public static final int DEFAULT_PERCENTILE = 95;
+
+    public static final float DEFAULT_MAX_HEDGE_RATIO = 0.05f;
+
+    /**
+     * Requests are not hedged before this many response times are known.
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * Recent response times kept for the percentile.
+     */
+    private static final int SAMPLE_COUNT = 256;
+
+    /**
+     * The percentile is computed again after this many new samples.
+     */
+    private static final int UPDATE_INTERVAL = 16;
+
+    /**
+     * Hedges that can be saved up while requests are fast, so a burst of stalls can be hedged.
+     */
+    private static final float MAX_BUDGET = 10f;
+
+    private final long[] mSamples = new long[SAMPLE_COUNT];
+
+    private final long[] mSortedSamples = new long[SAMPLE_COUNT];
+
+    private long mSampleTotal;
+
+    private int mPercentile = DEFAULT_PERCENTILE;
+
+    private float mMaxHedgeRatio = DEFAULT_MAX_HEDGE_RATIO;
+
+    private long mMinDelayMs = 50;
+
+    private volatile long mHedgeDelayMs = -1;
+
+    private float mBudget;
+
+    private long mRequestCount;
+
+    private long mHedgeCount;
+
+    private long mHedgeWinCount;
+
+    /**
+     * Sets the percentile of the response times a request must exceed to be hedged.
+     */
+    public synchronized HedgingPolicy setPercentile(int percentile) {
+        if(percentile < 1 || percentile > 99) {
+            throw new IllegalArgumentException("Percentile out of range: " + percentile);
+        }
+
+        mPercentile = percentile;
+        return this;
+    }
+
+    /**
+     * Sets the largest share of requests that may be hedged.
+     */
+    public synchronized HedgingPolicy setMaxHedgeRatio(float maxHedgeRatio) {
+        mMaxHedgeRatio = maxHedgeRatio;
+        return this;
+    }
+
+    /**
+     * Sets the shortest wait before hedging, 50 ms by default, so fast responses are never doubled.
+     */
+    public synchronized HedgingPolicy setMinDelayMs(long minDelayMs) {
+        mMinDelayMs = minDelayMs;
+        return this;
+    }
+
+    /**
+     * Returns how long a request waits before it is hedged, -1 while too few response times are
+     * known.
+     */
+    public long getHedgeDelayMs() {
+        return mHedgeDelayMs;
+    }
+
+    /**
+     * Adds the time a request took to receive its response headers.
+     */
+    public synchronized void addResponseTime(long responseTimeMs) {
+        mSamples[(int) (mSampleTotal % SAMPLE_COUNT)] = responseTimeMs;
+        mSampleTotal++;
+
+        if(mSampleTotal == MIN_SAMPLES || mSampleTotal > MIN_SAMPLES && mSampleTotal % UPDATE_INTERVAL == 0) {
+            int count = (int) Math.min(mSampleTotal, SAMPLE_COUNT);
+            System.arraycopy(mSamples, 0, mSortedSamples, 0, count);
+            Arrays.sort(mSortedSamples, 0, count);
+            int index = Math.min(count - 1, (int) Math.ceil(count * mPercentile / 100.0) - 1);
+            mHedgeDelayMs = Math.max(mMinDelayMs, mSortedSamples[index]);
+        }
+    }
+
+    /**
+     * Counts a request that may be hedged, each one earns a share of a hedge.
+     */
+    synchronized void onRequest() {
+        mRequestCount++;
+        mBudget = Math.min(MAX_BUDGET, mBudget + mMaxHedgeRatio);
+    }
+
+    /**
+     * Returns true and counts the hedge if the hedge ratio allows one more.
+     */
+    synchronized boolean tryHedge() {
+        if(mBudget < 1f) {
+            return false;
+        }
+
+        mBudget -= 1f;
+        mHedgeCount++;
+        return true;
+    }
+
+    synchronized void onHedgeWon() {
+        mHedgeWinCount++;
+    }
+
+    public synchronized long getRequestCount() {
+        return mRequestCount;
+    }
+
+    /**
+     * Returns how many hedges were sent.
+     */
+    public synchronized long getHedgeCount() {
+        return mHedgeCount;
+    }
+
+    /**
+     * Returns how many hedges answered before the request they were sent for.
+     */
+    public synchronized long getHedgeWinCount() {
+        return mHedgeWinCount;
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import com.startechup.tools.http.custom.JsonArrayStreamRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads a paginated JSON array feed page by page, following the rel="next" link of each page.
+ * Items of a page reach the listener in batches while the page is downloading.
+ *
+ * <p>With prefetching on, the next page starts loading as soon as the current one is complete.
+ * Its items are held until {@link #loadNextPage()} is called, so scrolling to the end of the list
+ * shows them right away.</p>
+ *
+ * <pre>
+ * JsonArrayPager&lt;Post&gt; pager = new JsonArrayPager&lt;&gt;(feedUrl, postConverter, this);
+ * pager.setPrefetch(true);
+ * pager.loadNextPage();
+ * </pre>
+ *
+ * Methods must be called on the thread responses are delivered on, the main thread by default.
+ *
+ * @param <T> Type of the items
+ */
+public class JsonArrayPager<T> {
+
+    private final ValleyClient mClient;
+
+    private final JsonStreamConverter<T> mConverter;
+
+    private final OnItemsListener<T> mListener;
+
+    private int mBatchSize = JsonArrayStreamRequest.DEFAULT_BATCH_SIZE;
+
+    private boolean mPrefetch;
+
+    /**
+     * URL of the next page to request, null if it is already requested or there is none
+     */
+    private String mNextPageUrl;
+
+    /**
+     * Page whose items are delivered to the listener, null if no page is loading
+     */
+    private Page mCurrentPage;
+
+    /**
+     * Next page loaded ahead of time, null if none
+     */
+    private Page mPrefetchedPage;
+
+    /**
+     * Pages are loaded through the client built with {@link NetworkingValley.Builder}.
+     *
+     * @param firstPageUrl URL of the first page
+     * @param converter Decodes one element of the array
+     * @param listener Listener for the items of every page
+     */
+    public JsonArrayPager(String firstPageUrl, JsonStreamConverter<T> converter, OnItemsListener<T> listener) {
+        this(NetworkingValley.getDefaultClient(), firstPageUrl, converter, listener);
+    }
+
+    /**
+     * Public constructor
+     *
+     * @param client Client the pages are loaded with
+     * @param firstPageUrl URL of the first page
+     * @param converter Decodes one element of the array
+     * @param listener Listener for the items of every page
+     */
+    public JsonArrayPager(ValleyClient client, String firstPageUrl, JsonStreamConverter<T> converter,
+                          OnItemsListener<T> listener) {
+        mClient = client;
+        mNextPageUrl = firstPageUrl;
+        mConverter = converter;
+        mListener = listener;
+    }
+
+    /**
+     * Sets how many items are delivered at once, see {@link JsonArrayStreamRequest#setBatchSize(int)}.
+     */
+    public void setBatchSize(int batchSize) {
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Loads the next page in the background once the current one is complete. Off by default.
+     */
+    public void setPrefetch(boolean prefetch) {
+        mPrefetch = prefetch;
+    }
+
+    /**
+     * Returns true until the last page has been loaded.
+     */
+    public boolean hasNextPage() {
+        return mNextPageUrl != null || mPrefetchedPage != null;
+    }
+
+    public boolean isLoading() {
+        return mCurrentPage != null;
+    }
+
+    /**
+     * Starts delivering the next page, from the prefetched items if it was loaded ahead.
+     *
+     * @return False if a page is still loading or there are no more pages
+     */
+    public boolean loadNextPage() {
+        if(mCurrentPage != null) {
+            return false;
+        }
+
+        if(mPrefetchedPage != null) {
+            mCurrentPage = mPrefetchedPage;
+            mPrefetchedPage = null;
+            mCurrentPage.show();
+            return true;
+        }
+
+        if(mNextPageUrl == null) {
+            return false;
+        }
+
+        mCurrentPage = startPage(true);
+        return true;
+    }
+
+    /**
+     * Cancels the pages that are loading, the pager can not be used afterwards.
+     */
+    public void cancel() {
+        if(mCurrentPage != null) {
+            mCurrentPage.mRequest.cancel();
+            mCurrentPage = null;
+        }
+        if(mPrefetchedPage != null) {
+            mPrefetchedPage.mRequest.cancel();
+            mPrefetchedPage = null;
+        }
+        mNextPageUrl = null;
+    }
+
+    private Page startPage(boolean visible) {
+        Page page = new Page(mNextPageUrl, visible);
+        mNextPageUrl = null;
+
+        page.mRequest = mClient.constructJsonArrayRequest(page.mUrl, mConverter, page);
+        page.mRequest.setBatchSize(mBatchSize);
+        mClient.addRequestQueue(page.mRequest);
+
+        return page;
+    }
+
+    private void onPageComplete(String nextPageUrl) {
+        mCurrentPage = null;
+        mNextPageUrl = nextPageUrl;
+
+        mListener.onComplete(nextPageUrl);
+
+        if(mPrefetch && mNextPageUrl != null && mCurrentPage == null && mPrefetchedPage == null) {
+            mPrefetchedPage = startPage(false);
+        }
+    }
+
+    private void onPageFail(Page page, String response) {
+        mCurrentPage = null;
+        // Loading the next page tries the failed one again.
+        mNextPageUrl = page.mUrl;
+
+        mListener.onFail(response);
+    }
+
+    /**
+     * One page of the feed, holds its batches until it is shown if it was prefetched.
+     */
+    private class Page implements OnItemsListener<T> {
+
+        final String mUrl;
+
+        JsonArrayStreamRequest<T> mRequest;
+
+        boolean mVisible;
+
+        List<List<T>> mPendingBatches = new ArrayList<>();
+
+        boolean mComplete;
+
+        String mPageNextUrl;
+
+        String mFailure;
+
+        Page(String url, boolean visible) {
+            mUrl = url;
+            mVisible = visible;
+        }
+
+        void show() {
+            mVisible = true;
+            for(List<T> batch : mPendingBatches) {
+                mListener.onItems(batch);
+            }
+            mPendingBatches = null;
+
+            if(mComplete) {
+                onPageComplete(mPageNextUrl);
+            } else if(mFailure != null) {
+                onPageFail(this, mFailure);
+            }
+        }
+
+        @Override
+        public void onItems(List<T> items) {
+            if(mVisible) {
+                mListener.onItems(items);
+            } else {
+                mPendingBatches.add(items);
+            }
+        }
+
+        @Override
+        public void onComplete(String nextPageUrl) {
+            if(mVisible) {
+                onPageComplete(nextPageUrl);
+            } else {
+                mComplete = true;
+                mPageNextUrl = nextPageUrl;
+            }
+        }
+
+        @Override
+        public void onFail(String response) {
+            if(mVisible) {
+                onPageFail(this, response);
+            } else {
+                mFailure = response;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.util.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * {@link ResponseConverter} for JSON bodies. The body is parsed token by token with a
+ * {@link JsonReader}, so no String of the whole body and no intermediate JSONObject tree is built.
+ *
+ * <pre>
+ * new JsonStreamConverter&lt;User&gt;() {
+ *     protected User read(JsonReader reader) throws IOException {
+ *         User user = new User();
+ *         reader.beginObject();
+ *         while(reader.hasNext()) {
+ *             String name = reader.nextName();
+ *             if(name.equals("name")) {
+ *                 user.name = reader.nextString();
+ *             } else {
+ *                 reader.skipValue();
+ *             }
+ *         }
+ *         reader.endObject();
+ *         return user;
+ *     }
+ * };
+ * </pre>
+ *
+ * @param <T> Type of the model object
+ */
+public abstract class JsonStreamConverter<T> implements ResponseConverter<T> {
+
+    @Override
+    public T convert(InputStream body, String charset) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(body, charset));
+        try {
+            return read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads one model object from a reader positioned on it, e.g. an element of a streamed array.
+     */
+    public T readValue(JsonReader reader) throws IOException {
+        return read(reader);
+    }
+
+    /**
+     * Reads the model object from the JSON tokens.
+     *
+     * @param reader Reader positioned before the top level JSON value
+     * @return Model object delivered to the listener
+     */
+    protected abstract T read(JsonReader reader) throws IOException;
+}
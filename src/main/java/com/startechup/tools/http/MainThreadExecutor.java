@@ -0,0 +1,45 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs commands on the main thread, the same thread Volley delivers responses on.
+ */
+public class MainThreadExecutor implements Executor {
+
+    private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    private MainThreadExecutor() {
+    }
+
+    public static MainThreadExecutor getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        mHandler.post(command);
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+/**
+ * Implemented by caches and pools that can give memory back when the system runs low, see
+ * {@link MemoryTrimmer}.
+ */
+public interface MemoryTrimmable {
+
+    /**
+     * Releases memory for the given level, keeping about {@link MemoryTrimmer#getRetainedFraction(int)}
+     * of the usual size. Called on the main thread.
+     *
+     * @param level One of the {@link android.content.ComponentCallbacks2} TRIM_MEMORY levels
+     * @return Number of bytes released, 0 if unknown
+     */
+    long trimMemory(int level);
+}
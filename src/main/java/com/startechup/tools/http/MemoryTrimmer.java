@@ -0,0 +1,129 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Passes the system's memory signals on to the caches and pools of a client. Registered with the
+ * application context by {@link ValleyClient}, which adds its own byte pool and connection pool;
+ * apps can add their caches with {@link #register(MemoryTrimmable)}.
+ */
+public class MemoryTrimmer implements ComponentCallbacks2 {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "MemoryTrimmer";
+
+    private final List<MemoryTrimmable> mTrimmables = new CopyOnWriteArrayList<>();
+
+    private int mTrimCount;
+
+    private long mReleasedBytes;
+
+    private int mLastLevel;
+
+    public void register(MemoryTrimmable trimmable) {
+        mTrimmables.add(trimmable);
+    }
+
+    public void unregister(MemoryTrimmable trimmable) {
+        mTrimmables.remove(trimmable);
+    }
+
+    /**
+     * Returns the share of their usual size caches keep at the given level. Nothing is kept once
+     * the process is likely to be killed, half of it while the UI is hidden or memory runs low.
+     *
+     * @param level One of the {@link ComponentCallbacks2} TRIM_MEMORY levels
+     */
+    public static float getRetainedFraction(int level) {
+        if(level >= TRIM_MEMORY_MODERATE) {
+            return 0f;
+        }
+        if(level >= TRIM_MEMORY_BACKGROUND) {
+            return 0.25f;
+        }
+        if(level >= TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f;
+        }
+        if(level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        }
+        if(level >= TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        }
+        if(level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+
+        return 1f;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        long released = 0;
+        for(MemoryTrimmable trimmable : mTrimmables) {
+            released += trimmable.trimMemory(level);
+        }
+
+        synchronized (this) {
+            mTrimCount++;
+            mReleasedBytes += released;
+            mLastLevel = level;
+        }
+
+        Log.i(TAG, "Trim level " + level + " released " + released + " bytes");
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * Returns how many memory signals were received.
+     */
+    public synchronized int getTrimCount() {
+        return mTrimCount;
+    }
+
+    /**
+     * Returns the bytes released over all the memory signals received.
+     */
+    public synchronized long getReleasedBytes() {
+        return mReleasedBytes;
+    }
+
+    /**
+     * Returns the level of the last memory signal, 0 if none was received.
+     */
+    public synchronized int getLastLevel() {
+        return mLastLevel;
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+/**
+ * Quality of the current link as seen by a {@link NetworkQualityEstimator}, with the settings
+ * requests use on it.
+ */
+public enum NetworkQuality {
+
+    /**
+     * Not enough samples yet, the settings are the library defaults.
+     */
+    UNKNOWN(4, NetworkingValley.DEFAULT_TIMEOUT_MS, 30, 0),
+
+    /**
+     * Below 150 kbps or a round trip over 1 second, e.g. 2G.
+     */
+    POOR(1, 60000, 30, 800),
+
+    /**
+     * Below 550 kbps or a round trip over 400 ms, e.g. slow 3G.
+     */
+    MODERATE(2, 30000, 50, 1280),
+
+    /**
+     * Below 2 Mbps or a round trip over 150 ms.
+     */
+    GOOD(4, 20000, 75, 1920),
+
+    /**
+     * Fast Wi-Fi or LTE.
+     */
+    EXCELLENT(6, 15000, 90, 0);
+
+    private final int mMaxConcurrentRequests;
+    private final int mTimeoutMs;
+    private final int mUploadQuality;
+    private final int mMaxUploadImageSize;
+
+    NetworkQuality(int maxConcurrentRequests, int timeoutMs, int uploadQuality, int maxUploadImageSize) {
+        mMaxConcurrentRequests = maxConcurrentRequests;
+        mTimeoutMs = timeoutMs;
+        mUploadQuality = uploadQuality;
+        mMaxUploadImageSize = maxUploadImageSize;
+    }
+
+    /**
+     * Returns how many requests may run at the same time.
+     */
+    public int getMaxConcurrentRequests() {
+        return mMaxConcurrentRequests;
+    }
+
+    /**
+     * Returns the initial timeout of the retry policy.
+     */
+    public int getTimeoutMs() {
+        return mTimeoutMs;
+    }
+
+    /**
+     * Returns the JPEG quality uploaded images are compressed with, from 0 to 100.
+     */
+    public int getUploadQuality() {
+        return mUploadQuality;
+    }
+
+    /**
+     * Returns the longest side of uploaded images in pixels, 0 to keep their size.
+     */
+    public int getMaxUploadImageSize() {
+        return mMaxUploadImageSize;
+    }
+
+    static NetworkQuality fromBandwidth(double kbps) {
+        if(kbps < 150) {
+            return POOR;
+        }
+        if(kbps < 550) {
+            return MODERATE;
+        }
+        if(kbps < 2000) {
+            return GOOD;
+        }
+
+        return EXCELLENT;
+    }
+
+    static NetworkQuality fromRtt(double rttMs) {
+        if(rttMs > 1000) {
+            return POOR;
+        }
+        if(rttMs > 400) {
+            return MODERATE;
+        }
+        if(rttMs > 150) {
+            return GOOD;
+        }
+
+        return EXCELLENT;
+    }
+}
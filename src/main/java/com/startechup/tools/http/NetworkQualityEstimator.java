@@ -0,0 +1,173 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.util.Log;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Estimates the round trip time and the bandwidth of the current link from the requests a
+ * client completes. The resulting {@link NetworkQuality} decides how many requests run at once,
+ * the timeouts of new requests and how images are compressed before upload.
+ *
+ * <p>Round trips are measured up to the response headers, bandwidth while response bodies of at
+ * least 16 KB are read. Both are smoothed with an exponentially weighted moving average, so a few
+ * slow requests do not flip the quality.</p>
+ */
+public class NetworkQualityEstimator {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "NetworkQualityEstimator";
+
+    /**
+     * Weight of a new sample in the moving averages.
+     */
+    private static final double SAMPLE_WEIGHT = 0.25;
+
+    /**
+     * Smaller bodies are mostly TCP slow start and say little about the bandwidth.
+     */
+    private static final long MIN_THROUGHPUT_BYTES = 16 * 1024;
+
+    /**
+     * Samples needed before an estimate is trusted.
+     */
+    private static final int MIN_SAMPLES = 3;
+
+    private double mRttMs;
+
+    private int mRttSamples;
+
+    private double mBandwidthKbps;
+
+    private int mBandwidthSamples;
+
+    private volatile NetworkQuality mQuality = NetworkQuality.UNKNOWN;
+
+    /**
+     * Permits for the requests running at the same time, resized with the quality
+     */
+    private final ResizableSemaphore mPermits =
+            new ResizableSemaphore(NetworkQuality.UNKNOWN.getMaxConcurrentRequests());
+
+    public NetworkQuality getQuality() {
+        return mQuality;
+    }
+
+    /**
+     * Returns the smoothed round trip time in milliseconds, -1 if not known yet.
+     */
+    public synchronized long getRttMs() {
+        return mRttSamples > 0 ? Math.round(mRttMs) : -1;
+    }
+
+    /**
+     * Returns the smoothed bandwidth in kilobits per second, -1 if not known yet.
+     */
+    public synchronized long getBandwidthKbps() {
+        return mBandwidthSamples > 0 ? Math.round(mBandwidthKbps) : -1;
+    }
+
+    /**
+     * Adds the time from sending a request to receiving its response headers.
+     */
+    public synchronized void addRttSample(long rttMs) {
+        mRttMs = mRttSamples == 0 ? rttMs : mRttMs + SAMPLE_WEIGHT * (rttMs - mRttMs);
+        mRttSamples++;
+
+        updateQuality();
+    }
+
+    /**
+     * Adds the time it took to read a response body. Bodies under 16 KB are ignored.
+     */
+    public synchronized void addThroughputSample(long bytes, long durationMs) {
+        if(bytes < MIN_THROUGHPUT_BYTES || durationMs <= 0) {
+            return;
+        }
+
+        double kbps = bytes * 8.0 / durationMs;
+        mBandwidthKbps = mBandwidthSamples == 0 ? kbps : mBandwidthKbps + SAMPLE_WEIGHT * (kbps - mBandwidthKbps);
+        mBandwidthSamples++;
+
+        updateQuality();
+    }
+
+    /**
+     * Forgets the samples, e.g. when the device switched networks.
+     */
+    public synchronized void reset() {
+        mRttSamples = 0;
+        mBandwidthSamples = 0;
+
+        updateQuality();
+    }
+
+    Semaphore getPermits() {
+        return mPermits;
+    }
+
+    private void updateQuality() {
+        NetworkQuality quality = NetworkQuality.UNKNOWN;
+        if(mBandwidthSamples >= MIN_SAMPLES && mRttSamples >= MIN_SAMPLES) {
+            // Either a slow link or a long round trip makes the network slow.
+            NetworkQuality byBandwidth = NetworkQuality.fromBandwidth(mBandwidthKbps);
+            NetworkQuality byRtt = NetworkQuality.fromRtt(mRttMs);
+            quality = byBandwidth.ordinal() < byRtt.ordinal() ? byBandwidth : byRtt;
+        } else if(mBandwidthSamples >= MIN_SAMPLES) {
+            quality = NetworkQuality.fromBandwidth(mBandwidthKbps);
+        } else if(mRttSamples >= MIN_SAMPLES) {
+            quality = NetworkQuality.fromRtt(mRttMs);
+        }
+
+        if(quality != mQuality) {
+            Log.i(TAG, "Network quality " + mQuality + " -> " + quality);
+
+            mPermits.resize(quality.getMaxConcurrentRequests());
+            mQuality = quality;
+        }
+    }
+
+    /**
+     * Semaphore whose number of permits can change while some are taken. Lowering it below the
+     * permits in use lets the running requests finish and holds new ones back until enough of
+     * them are released.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+
+        private int mSize;
+
+        ResizableSemaphore(int size) {
+            super(size, true);
+
+            mSize = size;
+        }
+
+        void resize(int size) {
+            if(size > mSize) {
+                release(size - mSize);
+            } else if(size < mSize) {
+                reducePermits(mSize - size);
+            }
+            mSize = size;
+        }
+    }
+}
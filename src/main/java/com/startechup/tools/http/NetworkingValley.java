@@ -19,171 +19,313 @@ package com.startechup.tools.http;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.util.Log;
 
-import com.android.volley.AuthFailureError;
-import com.android.volley.DefaultRetryPolicy;
 import com.android.volley.Request;
-import com.android.volley.RequestQueue;
-import com.android.volley.Response;
-import com.android.volley.VolleyError;
 import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
+import com.startechup.tools.http.body.FormBody;
+import com.startechup.tools.http.body.JsonBody;
+import com.startechup.tools.http.body.RequestBody;
+import com.startechup.tools.http.codec.BinaryCodec;
+import com.startechup.tools.http.codec.CborCodec;
+import com.startechup.tools.http.codec.ProtobufCodec;
+import com.startechup.tools.http.custom.BodyRequest;
+import com.startechup.tools.http.custom.DownloadRequest;
 import com.startechup.tools.http.custom.ImageUploadRequest;
+import com.startechup.tools.http.custom.JsonArrayStreamRequest;
+import com.startechup.tools.http.custom.MultipartUploadRequest;
+import com.startechup.tools.http.custom.RawRequest;
+import com.startechup.tools.http.custom.TypedRequest;
+import com.startechup.tools.http.image.ImageLoader;
+import com.startechup.tools.http.image.OnImageListener;
+import com.startechup.tools.http.outbox.Outbox;
+import com.startechup.tools.http.push.OnEventListener;
+import com.startechup.tools.http.push.SseChannel;
+import com.startechup.tools.http.push.WebSocketChannel;
+import com.startechup.tools.http.upload.ResumableUpload;
+import com.startechup.tools.http.url.UrlBuilder;
 
 import java.io.File;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * This is a helper class for HTTP requests. This class is using a combination of Volley and Square's
  * OkHttp library. OkHttp is used as the networking layer for our Volley library.
  *
+ * <p>The static methods use the client built last with {@link Builder}. Apps talking to more than
+ * one backend build a {@link ValleyClient} for each.</p>
  */
 public class NetworkingValley {
 
     /**
-     * Identifier for debugging or logging.
+     * Access token provided from the API after authentication. Replaced by the
+     * {@link Authenticator}, if set, when it expires.
      */
-    private static final String TAG = "NetworkingValley";
+    public static volatile String mAccessToken = "";
 
     /**
-     * Access token provided from the API after authentication.
+     * Client used by the static methods
      */
-    public static String mAccessToken = "";
-
-    /**
-     * Base URL for API endpoint
-     */
-    private String mBaseUrl;
-
-    /**
-     * Volley's request queue
-     */
-    private static RequestQueue mRequestQueue;
-
-    /**
-     * Initialized when secure http request
-     */
-    private SSLHttpStack mSSLHttpStack;
-
-    /**
-     * Parameters for http header
-     */
-    private HashMap<String, String> mHeaders;
-
-    /**
-     * Parameters for http
-     */
-    private HashMap<String, String> mBodyParams;
-
-    /**
-     * Keystore password
-     */
-    private String mKeyStorePassword = "";
-
-    /**
-     * Client store password
-     */
-    private String mClientStorePassword = "";
+    private static volatile ValleyClient mDefaultClient;
 
     /**
      * Default timeout at 30 seconds
      */
     public static final int DEFAULT_TIMEOUT_MS = 30000;
 
-    private NetworkingValley(Builder builder) {
-        mAccessToken = builder.mAccessToken;
-        mBaseUrl = builder.mBaseUrl;
-        mRequestQueue = builder.mRequestQueue;
-        mSSLHttpStack = builder.mSSLHttpStack;
-        mHeaders = builder.mHeaders;
-        mBodyParams = builder.mBodyParams;
-        mKeyStorePassword = builder.mKeyStorePassword;
-        mClientStorePassword = builder.mClientStorePassword;
+    private NetworkingValley() {
     }
 
     public static class Builder {
 
-        private Context mContext;
-        private String mAccessToken = "";
-        private String mBaseUrl;
-        private RequestQueue mRequestQueue;
-        private SSLHttpStack mSSLHttpStack;
-        private HashMap<String, String> mHeaders;
-        private HashMap<String, String> mBodyParams;
-        private String mKeyStorePassword = "";
-        private String mClientStorePassword = "";
+        private final ValleyClient.Builder mClientBuilder;
 
         public Builder(Context context) {
-            if(mRequestQueue == null) {
-                mRequestQueue = Volley.newRequestQueue(context);
-            }
-
-            mContext = context;
+            mClientBuilder = new ValleyClient.Builder(context);
         }
 
         public Builder(Context context, String baseUrl) {
             this(context);
 
-            mBaseUrl = baseUrl;
+            loadBaseUrl(baseUrl);
         }
 
         public Builder loadBaseUrl(String baseUrl) {
-            mBaseUrl = baseUrl;
+            mClientBuilder.loadBaseUrl(baseUrl);
 
             return this;
         }
 
         public Builder loadSSLHttpStack(SSLHttpStack sslHttpStack) {
-            mSSLHttpStack = sslHttpStack;
+            mClientBuilder.loadSSLHttpStack(sslHttpStack);
 
             return this;
         }
 
         public Builder loadCerts(InputStream inputClientStore, InputStream inputKeyStore) {
-            mSSLHttpStack = new SSLHttpStack(inputClientStore, inputKeyStore);
-            mRequestQueue = Volley.newRequestQueue(mContext, mSSLHttpStack);
-
-            return this;
+            return loadSSLHttpStack(new SSLHttpStack(inputClientStore, inputKeyStore));
         }
 
         public Builder loadAccessToken(String accessToken) {
-            mAccessToken = accessToken;
+            mClientBuilder.loadAccessToken(accessToken);
 
             return this;
         }
 
+        /**
+         * @deprecated Not used by the client, pass headers to the requests instead.
+         */
+        @Deprecated
         public Builder loadHeaders(HashMap<String, String> headers) {
-            mHeaders = headers;
-
             return this;
         }
 
+        /**
+         * @deprecated Not used by the client, pass parameters to the requests instead.
+         */
+        @Deprecated
         public Builder loadBodyParams(HashMap<String, String> bodyParams) {
-            mBodyParams = bodyParams;
-
             return this;
         }
 
+        /**
+         * @deprecated Not used by the client.
+         */
+        @Deprecated
         public Builder setKeyStorePassword(String keyStorePassword) {
-            mKeyStorePassword = keyStorePassword;
-
             return this;
         }
 
+        /**
+         * @deprecated Not used by the client.
+         */
+        @Deprecated
         public Builder setClientStorePassword(String clientStorePassword) {
-            mClientStorePassword = clientStorePassword;
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setHttp2Enabled(boolean)}.
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            mClientBuilder.setHttp2Enabled(http2Enabled);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setMaxStreamsPerHost(int)}.
+         */
+        public Builder setMaxStreamsPerHost(int maxStreamsPerHost) {
+            mClientBuilder.setMaxStreamsPerHost(maxStreamsPerHost);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setDeliveryExecutor(Executor)}.
+         */
+        public Builder setDeliveryExecutor(Executor deliveryExecutor) {
+            mClientBuilder.setDeliveryExecutor(deliveryExecutor);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setRateLimiter(RateLimiter)}.
+         */
+        public Builder setRateLimiter(RateLimiter rateLimiter) {
+            mClientBuilder.setRateLimiter(rateLimiter);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setOutbox(Outbox)}.
+         */
+        public Builder setOutbox(Outbox outbox) {
+            mClientBuilder.setOutbox(outbox);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setAuthenticator(Authenticator)}.
+         */
+        public Builder setAuthenticator(Authenticator authenticator) {
+            mClientBuilder.setAuthenticator(authenticator);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setMemoryTrimEnabled(boolean)}.
+         */
+        public Builder setMemoryTrimEnabled(boolean memoryTrimEnabled) {
+            mClientBuilder.setMemoryTrimEnabled(memoryTrimEnabled);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setNetworkQualityEstimator(NetworkQualityEstimator)}.
+         */
+        public Builder setNetworkQualityEstimator(NetworkQualityEstimator qualityEstimator) {
+            mClientBuilder.setNetworkQualityEstimator(qualityEstimator);
 
             return this;
         }
 
+        /**
+         * See {@link ValleyClient.Builder#setRequestTracer(RequestTracer)}.
+         */
+        public Builder setRequestTracer(RequestTracer requestTracer) {
+            mClientBuilder.setRequestTracer(requestTracer);
+
+            return this;
+        }
+
+        /**
+         * See {@link ValleyClient.Builder#setHedgingPolicy(HedgingPolicy)}.
+         */
+        public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            mClientBuilder.setHedgingPolicy(hedgingPolicy);
+
+            return this;
+        }
+
+        /**
+         * Builds the client used by the static methods. The previous one is stopped, its requests
+         * are dropped.
+         */
         public NetworkingValley build() {
-            return new NetworkingValley(this);
+            // Two clients must not run on the same cache directory.
+            ValleyClient previous = mDefaultClient;
+            if(previous != null) {
+                previous.stop();
+            }
+
+            // The default client keeps its token in mAccessToken, where apps have always set it.
+            mDefaultClient = new ValleyClient(mClientBuilder) {
+                @Override
+                public String getAccessToken() {
+                    return NetworkingValley.mAccessToken;
+                }
+
+                @Override
+                public void setAccessToken(String accessToken) {
+                    NetworkingValley.mAccessToken = accessToken;
+                }
+            };
+
+            return new NetworkingValley();
         }
     }
 
+    /**
+     * Returns the client used by the static methods.
+     *
+     * @throws IllegalStateException If no client was built with {@link Builder} yet
+     */
+    public static ValleyClient getDefaultClient() {
+        ValleyClient client = mDefaultClient;
+        if(client == null) {
+            throw new IllegalStateException("Build NetworkingValley before sending requests");
+        }
+
+        return client;
+    }
+
+    /**
+     * Returns the URL of a path template relative to the base URL, e.g.
+     * {@code url("users/{id}/posts", userId)}. Values are encoded once, pass them unencoded.
+     *
+     * @param template Template such as "users/{id}/posts", parsed once and cached
+     * @param values One value per variable, in the order they appear
+     */
+    public static String url(String template, Object... values) {
+        return getDefaultClient().url(template, values);
+    }
+
+    /**
+     * Same as {@link #url(String, Object...)}, returning a builder to add query parameters.
+     */
+    public static UrlBuilder newUrl(String template, Object... values) {
+        return getDefaultClient().newUrl(template, values);
+    }
+
+    /**
+     * Fetches a URL into the response cache once the client is idle on an unmetered network. See
+     * {@link ValleyClient#prefetch(String, Object...)}.
+     */
+    public static void prefetch(String template, Object... values) {
+        getDefaultClient().prefetch(template, values);
+    }
+
+    /**
+     * Loads an image decoded to at least the given size. See
+     * {@link ValleyClient#loadImage(String, int, int, OnImageListener)}.
+     */
+    public static ImageLoader.Handle loadImage(String url, int maxWidth, int maxHeight, OnImageListener listener) {
+        return getDefaultClient().loadImage(url, maxWidth, maxHeight, listener);
+    }
+
+    /**
+     * Creates a Server-Sent Events channel. See {@link ValleyClient#newEventSource(String, OnEventListener)}.
+     */
+    public static SseChannel newEventSource(String url, OnEventListener listener) {
+        return getDefaultClient().newEventSource(url, listener);
+    }
+
+    /**
+     * Creates a WebSocket channel. See {@link ValleyClient#newWebSocket(String, OnEventListener)}.
+     */
+    public static WebSocketChannel newWebSocket(String url, OnEventListener listener) {
+        return getDefaultClient().newWebSocket(url, listener);
+    }
+
     /**
      * Performs and add the network request with tag to identify this network request.
      *
@@ -191,11 +333,7 @@ public class NetworkingValley {
      * @param tag Tag identifier for this request
      */
     public static <T> void addRequestQueue(Request<T> request, String tag) {
-        // Set the default tag to our request
-        request.setTag(tag);
-
-        // Add our request to the queue
-        mRequestQueue.add(request);
+        getDefaultClient().addRequestQueue(request, tag);
     }
 
     /**
@@ -204,8 +342,31 @@ public class NetworkingValley {
      * @param request Network request
      */
     public static <T> void addRequestQueue(Request<T> request) {
-        // Add our request to the queue
-        mRequestQueue.add(request);
+        getDefaultClient().addRequestQueue(request);
+    }
+
+    /**
+     * Performs and add the network request, its response is delivered on the given executor
+     * instead of the default one.
+     *
+     * @param request Network request
+     * @param deliveryExecutor Executor the request's listeners are called on
+     */
+    public static <T> void addRequestQueue(Request<T> request, Executor deliveryExecutor) {
+        getDefaultClient().addRequestQueue(request, deliveryExecutor);
+    }
+
+    /**
+     * Adds a POST, PUT, PATCH or DELETE request to the outbox set on the {@link Builder}. It is
+     * saved to disk and sent once the device is connected, even after the app was restarted.
+     * Results are reported to the outbox's {@link com.startechup.tools.http.outbox.OnOutboxListener},
+     * the request's own listeners are not called.
+     *
+     * @param request Network request, e.g. from {@link #constructPostRequest(String, HashMap, OnAPIListener)}
+     * @param idempotencyKey Identifies the request, a request with a key already seen is dropped
+     */
+    public static void addOutboxRequest(Request<?> request, String idempotencyKey) {
+        getDefaultClient().addOutboxRequest(request, idempotencyKey);
     }
 
     /**
@@ -217,22 +378,49 @@ public class NetworkingValley {
      */
     public static StringRequest constructGetRequest(String url,
                                                     final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.GET,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)
-        ){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.i(TAG, "Headers: " + getHeaderParams().toString());
-                return getHeaderParams();
-            }
-        };
+        return getDefaultClient().constructGetRequest(url, apiListener);
+    }
 
-        request.setRetryPolicy(getHttpRetryPolicy());
+    /**
+     * Constructs a GET network request that decodes the response into a model object. The body is
+     * decoded on the network thread, the listener receives the finished object.
+     *
+     * @param url URL of the API
+     * @param converter Decodes the response body, e.g. a {@link JsonStreamConverter}
+     * @param resultListener Listener whether network request is successful or not
+     * @return Request delivering the decoded response
+     */
+    public static <T> TypedRequest<T> constructGetRequest(String url,
+                                                          ResponseConverter<T> converter,
+                                                          final OnResultListener<T> resultListener) {
+        return getDefaultClient().constructGetRequest(url, converter, resultListener);
+    }
 
-        return request;
+    /**
+     * Constructs a GET network request for a JSON array, delivering its items in batches while
+     * the response is still being read. Useful for long feeds, see {@link JsonArrayPager} to load
+     * them page by page.
+     *
+     * @param url URL of the API
+     * @param converter Decodes one element of the array
+     * @param itemsListener Listener for the batches and the end of the array
+     * @return Streaming request, add it with {@link #addRequestQueue(Request)}
+     */
+    public static <T> JsonArrayStreamRequest<T> constructJsonArrayRequest(String url,
+                                                                          JsonStreamConverter<T> converter,
+                                                                          OnItemsListener<T> itemsListener) {
+        return getDefaultClient().constructJsonArrayRequest(url, converter, itemsListener);
+    }
+
+    /**
+     * Constructs a GET network request that returns the raw response body, for binary endpoints.
+     *
+     * @param url URL of the API
+     * @param bytesListener Listener whether network request is successful or not
+     * @return Request delivering the response body as received
+     */
+    public static RawRequest constructRawGetRequest(String url, final OnBytesListener bytesListener) {
+        return getDefaultClient().constructRawGetRequest(url, bytesListener);
     }
 
     /**
@@ -246,28 +434,7 @@ public class NetworkingValley {
     public static StringRequest constructPostRequest(String url,
                                                      final HashMap<String, String> bodyArg,
                                                      final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.POST,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + getHeaderParams().toString());
-
-                return getHeaderParams();
-            }
-
-            @Override
-            protected Map<String, String> getParams() throws AuthFailureError {
-                Log.d(TAG, "Params: " + bodyArg.toString());
-                return bodyArg;
-            }
-        };
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructPostRequest(url, bodyArg, apiListener);
     }
 
     /**
@@ -284,28 +451,71 @@ public class NetworkingValley {
                                                      final HashMap<String, String> headers,
                                                      final HashMap<String, String> bodyArg,
                                                      final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.POST,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)) {
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + headers);
-
-                return headers;
-            }
+        return getDefaultClient().constructPostRequest(url, headers, bodyArg, apiListener);
+    }
 
-            @Override
-            protected Map<String, String> getParams() throws AuthFailureError {
-                Log.d(TAG, "Params: " + bodyArg.toString());
-                return bodyArg;
-            }
-        };
+    /**
+     * Constructs a POST network request with the given body that returns a String format response.
+     * Unlike the map of body arguments, the body is encoded once and reused when the request is
+     * retried, see {@link FormBody} and {@link JsonBody}.
+     *
+     * @param url URL of the API
+     * @param body Body of the request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public static BodyRequest constructPostRequest(String url,
+                                                   final RequestBody body,
+                                                   final OnAPIListener apiListener) {
+        return getDefaultClient().constructPostRequest(url, body, apiListener);
+    }
 
-        request.setRetryPolicy(getHttpRetryPolicy());
+    /**
+     * Constructs a POST network request that sends the value in a binary format, e.g. with a
+     * {@link CborCodec} or {@link ProtobufCodec}. The value is encoded once, up front.
+     *
+     * @param url URL of the API
+     * @param value Value sent as the body
+     * @param codec Encodes the value
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public static <T> BodyRequest constructPostRequest(String url,
+                                                       T value,
+                                                       BinaryCodec<T> codec,
+                                                       final OnAPIListener apiListener) {
+        return getDefaultClient().constructPostRequest(url, value, codec, apiListener);
+    }
 
-        return request;
+    /**
+     * Constructs a POST network request that decodes the response into a model object. The body
+     * is decoded on the network thread, the listener receives the finished object.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param converter Decodes the response body, e.g. a {@link JsonStreamConverter}
+     * @param resultListener Listener whether network request is successful or not
+     * @return Request delivering the decoded response
+     */
+    public static <T> TypedRequest<T> constructPostRequest(String url,
+                                                           final Map<String, String> bodyArg,
+                                                           ResponseConverter<T> converter,
+                                                           final OnResultListener<T> resultListener) {
+        return getDefaultClient().constructPostRequest(url, bodyArg, converter, resultListener);
+    }
+
+    /**
+     * Constructs a POST network request that returns the raw response body, for binary endpoints.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param bytesListener Listener whether network request is successful or not
+     * @return Request delivering the response body as received
+     */
+    public static RawRequest constructRawPostRequest(String url,
+                                                     final Map<String, String> bodyArg,
+                                                     final OnBytesListener bytesListener) {
+        return getDefaultClient().constructRawPostRequest(url, bodyArg, bytesListener);
     }
 
     /**
@@ -319,28 +529,7 @@ public class NetworkingValley {
     public static StringRequest constructPutRequest(String url,
                                                      final Map<String, String> bodyArg,
                                                      final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.PUT,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)
-        ){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + getHeaderParams().toString());
-                return getHeaderParams();
-            }
-
-            @Override
-            protected Map<String, String> getParams() throws AuthFailureError {
-                Log.d(TAG, "Params: " + bodyArg.toString());
-                return bodyArg;
-            }
-        };
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructPutRequest(url, bodyArg, apiListener);
     }
 
     /**
@@ -357,28 +546,40 @@ public class NetworkingValley {
                                                     final HashMap<String, String> headers,
                                                     final Map<String, String> bodyArg,
                                                     final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.PUT,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)
-        ){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + headers);
-                return headers;
-            }
-
-            @Override
-            protected Map<String, String> getParams() throws AuthFailureError {
-                Log.d(TAG, "Params: " + bodyArg.toString());
-                return bodyArg;
-            }
-        };
+        return getDefaultClient().constructPutRequest(url, headers, bodyArg, apiListener);
+    }
 
-        request.setRetryPolicy(getHttpRetryPolicy());
+    /**
+     * Constructs a PUT network request with the given body that returns a String format response.
+     * Unlike the map of body arguments, the body is encoded once and reused when the request is
+     * retried, see {@link FormBody} and {@link JsonBody}.
+     *
+     * @param url URL of the API
+     * @param body Body of the request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public static BodyRequest constructPutRequest(String url,
+                                                  final RequestBody body,
+                                                  final OnAPIListener apiListener) {
+        return getDefaultClient().constructPutRequest(url, body, apiListener);
+    }
 
-        return request;
+    /**
+     * Constructs a PUT network request that sends the value in a binary format, e.g. with a
+     * {@link CborCodec} or {@link ProtobufCodec}. The value is encoded once, up front.
+     *
+     * @param url URL of the API
+     * @param value Value sent as the body
+     * @param codec Encodes the value
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public static <T> BodyRequest constructPutRequest(String url,
+                                                      T value,
+                                                      BinaryCodec<T> codec,
+                                                      final OnAPIListener apiListener) {
+        return getDefaultClient().constructPutRequest(url, value, codec, apiListener);
     }
 
     /**
@@ -390,21 +591,7 @@ public class NetworkingValley {
      */
     public static StringRequest constructDeleteRequest(String url,
                                                        final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.DELETE,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + getHeaderParams().toString());
-                return getHeaderParams();
-            }
-        };
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructDeleteRequest(url, apiListener);
     }
 
     /**
@@ -419,21 +606,7 @@ public class NetworkingValley {
     public static StringRequest constructDeleteRequest(String url,
                                                        final HashMap<String, String> headers,
                                                        final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.DELETE,
-                url,
-                getStringResponseListener(apiListener),
-                getErrorListener(apiListener)){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Log.d(TAG, "Headers: " + headers);
-                return headers;
-            }
-        };
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructDeleteRequest(url, headers, apiListener);
     }
 
     /**
@@ -447,140 +620,108 @@ public class NetworkingValley {
     public static StringRequest constructAuthRequest(String url,
                                                      final Map<String, String> bodyArg,
                                                      final OnAPIListener apiListener) {
-        StringRequest request = new StringRequest(
-                Request.Method.POST,
-                url, new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                apiListener.onSuccess(response);
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-                apiListener.onFail(error.getClass().getSimpleName());
-            }
-        }){
-            @Override
-            public Map<String, String> getHeaders() throws AuthFailureError {
-                Map<String,String> headers = new HashMap<>();
-                headers.put("Accept","application/json");
-                headers.put("Content-Type", "application/x-www-form-urlencoded");
-
-                Log.d(TAG, "Headers: " + headers.toString());
-
-                return headers;
-            }
-
-            @Override
-            protected Map<String, String> getParams() {
-                Log.d(TAG, "Params: " + bodyArg.toString());
-                return bodyArg;
-            }
-        };
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructAuthRequest(url, bodyArg, apiListener);
     }
 
     public static ImageUploadRequest constructImageUploadRequest(String url,
                                                                  Bitmap bitmap,
                                                                  final OnAPIListener apiListener) {
-        ImageUploadRequest request = new ImageUploadRequest(
-                url,
-                bitmap,
-                new Response.Listener() {
-            @Override
-            public void onResponse(Object response) {
-                apiListener.onSuccess(response.toString());
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-                apiListener.onFail(error.getMessage());
-            }
-        });
-
-        request.setRetryPolicy(getHttpRetryPolicy());
-
-        return request;
+        return getDefaultClient().constructImageUploadRequest(url, bitmap, apiListener);
     }
 
     public static ImageUploadRequest constructImageUploadRequest(String url,
                                                                  File fileImage,
                                                                  final OnAPIListener apiListener) {
-        ImageUploadRequest request = new ImageUploadRequest(
-                url,
-                fileImage,
-                new Response.Listener() {
-            @Override
-            public void onResponse(Object response) {
-                apiListener.onSuccess(response.toString());
-            }
-        }, new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-                apiListener.onFail(error.getMessage());
-            }
-        });
+        return getDefaultClient().constructImageUploadRequest(url, fileImage, apiListener);
+    }
 
-        request.setRetryPolicy(getHttpRetryPolicy());
+    /**
+     * Constructs a multipart/form-data upload request that returns a String format response. Add
+     * the files, bitmaps and form fields to the returned request before adding it to the queue.
+     *
+     * @param url URL of the API on where to upload
+     * @param apiListener Listener whether network request is successful or not
+     * @return Upload request without parts
+     */
+    public static MultipartUploadRequest constructMultipartUploadRequest(String url,
+                                                                         final OnAPIListener apiListener) {
+        return getDefaultClient().constructMultipartUploadRequest(url, apiListener);
+    }
 
-        return request;
+    /**
+     * Constructs a GET network request that saves the response body to a file. The body is
+     * streamed to disk and never held in memory, an interrupted download resumes where it stopped.
+     *
+     * @param url URL of the file to download
+     * @param file Where the download is saved
+     * @param apiListener Listener whether the download is successful or not
+     * @return Download request
+     */
+    public static DownloadRequest constructDownloadRequest(String url,
+                                                           File file,
+                                                           final OnDownloadListener apiListener) {
+        return getDefaultClient().constructDownloadRequest(url, file, apiListener);
     }
 
     /**
-     * Returns a successful network response listener. Listener returns a response in String format.
+     * Constructs a resumable upload for large files. The file is sent in chunks and the progress is
+     * saved in the given directory, call {@link ResumableUpload#start()} to begin or resume it.
      *
-     * @param apiListener Listener to indicate that network request is successful.
-     * @return Listener for network response
-     */
-    private static Response.Listener<String> getStringResponseListener(final OnAPIListener apiListener) {
-        return new Response.Listener<String>() {
-            @Override
-            public void onResponse(String response) {
-                apiListener.onSuccess(response);
-            }
-        };
+     * @param url URL of the API where uploads are created
+     * @param file File to be uploaded
+     * @param stateDir Directory where the upload progress is saved
+     * @param apiListener Listener called with the URL of the completed upload, or on failure
+     * @return Upload that is not started yet
+     */
+    public static ResumableUpload constructResumableUpload(String url,
+                                                           File file,
+                                                           File stateDir,
+                                                           final OnAPIListener apiListener) {
+        return getDefaultClient().constructResumableUpload(url, file, stateDir, apiListener);
     }
 
     /**
-     * Returns a fail network response listener. Listener returns a {@link VolleyError} response.
+     * Performs a GET network request and returns a future of its String response. Use it from
+     * worker threads with {@link ValleyFuture#execute()}, or chain several requests with
+     * {@link ValleyFuture#then} and {@link ValleyFuture#zip}. The response is delivered on the
+     * network thread, so callbacks added to the future do not run on the main thread.
      *
-     * @param apiListener Listener to indicate that network request failed.
-     * @return Error listener for network response
-     */
-    private static Response.ErrorListener getErrorListener(final OnAPIListener apiListener) {
-        return new Response.ErrorListener() {
-            @Override
-            public void onErrorResponse(VolleyError error) {
-                apiListener.onFail(error.getClass().getSimpleName());
-            }
-        };
+     * @param url URL of the API
+     * @return Future of the String response from the API
+     */
+    public static ValleyFuture<String> submitGetRequest(String url) {
+        return getDefaultClient().submitGetRequest(url);
     }
 
     /**
-     * Returns an updated/extended timeout policy.
+     * Performs a POST network request and returns a future of its String response.
      *
-     * @return Updated timeout policy
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @return Future of the String response from the API
      */
-    private static DefaultRetryPolicy getHttpRetryPolicy() {
-        return new DefaultRetryPolicy(DEFAULT_TIMEOUT_MS,
-                DefaultRetryPolicy.DEFAULT_MAX_RETRIES,
-                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT);
+    public static ValleyFuture<String> submitPostRequest(String url, Map<String, String> bodyArg) {
+        return getDefaultClient().submitPostRequest(url, bodyArg);
     }
 
     /**
-     * Returns a default header parameters to be included in the network request.
+     * Performs a PUT network request and returns a future of its String response.
      *
-     * @return Header parameters to be included in the network request.
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @return Future of the String response from the API
      */
-    private static Map<String, String> getHeaderParams() {
-        Map<String,String> headers = new HashMap<>();
-        headers.put("Accept","application/json");
-        headers.put("Content-Type", "application/x-www-form-urlencoded");
-        headers.put("Authorization", "Bearer " + mAccessToken);
+    public static ValleyFuture<String> submitPutRequest(String url, Map<String, String> bodyArg) {
+        return getDefaultClient().submitPutRequest(url, bodyArg);
+    }
 
-        return headers;
+    /**
+     * Performs a DELETE network request and returns a future of its String response.
+     *
+     * @param url URL of the API
+     * @return Future of the String response from the API
+     */
+    public static ValleyFuture<String> submitDeleteRequest(String url) {
+        return getDefaultClient().submitDeleteRequest(url);
     }
 }
@@ -0,0 +1,526 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.content.ComponentCallbacks2;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HurlStack;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.Protocol;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Uses OkHttp as the transport layer for Volley. HTTP/2 is negotiated through ALPN on HTTPS
+ * connections so that concurrent requests to the same host are multiplexed over one connection,
+ * falling back to HTTP/1.1 when the server or the platform does not support it.
+ */
+public class OkHttpStack extends HurlStack implements MemoryTrimmable {
+
+    /**
+     * Default number of concurrent streams allowed per host, 0 means unlimited.
+     */
+    public static final int DEFAULT_MAX_STREAMS_PER_HOST = 0;
+
+    private static final String HEADER_CONTENT_TYPE = "Content-Type";
+
+    /**
+     * Receives the connection opened on the current thread, so {@link HedgingHttpStack} can
+     * disconnect an attempt that lost.
+     */
+    static final ThreadLocal<AtomicReference<HttpURLConnection>> CURRENT_CONNECTION = new ThreadLocal<>();
+
+    /**
+     * Shared OkHttp client, holds the connection pool where HTTP/2 connections are reused.
+     */
+    private OkHttpClient mOkHttpClient;
+
+    /**
+     * Handles the HTTP/HTTPS request.
+     */
+    private OkUrlFactory mOkUrlFactory;
+
+    /**
+     * Maximum concurrent streams per host, 0 means unlimited.
+     */
+    private int mMaxStreamsPerHost = DEFAULT_MAX_STREAMS_PER_HOST;
+
+    /**
+     * Stream permits keyed by host name.
+     */
+    private final ConcurrentHashMap<String, Semaphore> mHostPermits;
+
+    /**
+     * Fed with every response and limits the requests running at once, null if not used.
+     */
+    private volatile NetworkQualityEstimator mQualityEstimator;
+
+    public OkHttpStack() {
+        this(new OkHttpClient());
+    }
+
+    public OkHttpStack(OkHttpClient okHttpClient) {
+        this(okHttpClient, DEFAULT_MAX_STREAMS_PER_HOST, new ConcurrentHashMap<String, Semaphore>());
+    }
+
+    /**
+     * Creates a stack that shares the per-host stream permits of another one, see
+     * {@link #getHostPermitMap()}.
+     */
+    OkHttpStack(OkHttpClient okHttpClient, int maxStreamsPerHost, ConcurrentHashMap<String, Semaphore> hostPermits) {
+        mOkHttpClient = okHttpClient;
+        mOkUrlFactory = new OkUrlFactory(okHttpClient);
+        mMaxStreamsPerHost = maxStreamsPerHost;
+        mHostPermits = hostPermits;
+
+        setHttp2Enabled(true);
+    }
+
+    @Override
+    public HttpURLConnection createConnection(URL url) throws IOException {
+        HttpURLConnection connection = mOkUrlFactory.open(url);
+
+        AtomicReference<HttpURLConnection> holder = CURRENT_CONNECTION.get();
+        if(holder != null) {
+            holder.set(connection);
+        }
+
+        return connection;
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        NetworkQualityEstimator estimator = mQualityEstimator;
+        if(mMaxStreamsPerHost <= 0 && estimator == null) {
+            return performRequestOnConnection(request, additionalHeaders);
+        }
+
+        // The link-wide limit is taken first, so a request never holds a host stream while waiting.
+        Semaphore qualityPermits = estimator != null ? estimator.getPermits() : null;
+        Semaphore hostPermits = mMaxStreamsPerHost > 0 ? getHostPermits(new URL(request.getUrl()).getHost()) : null;
+        acquire(qualityPermits, request);
+        try {
+            acquire(hostPermits, request);
+        } catch (IOException e) {
+            release(qualityPermits);
+            throw e;
+        }
+
+        long start = System.nanoTime();
+        HttpResponse response;
+        try {
+            response = performRequestOnConnection(request, additionalHeaders);
+        } catch (IOException | AuthFailureError | RuntimeException e) {
+            release(hostPermits);
+            release(qualityPermits);
+            throw e;
+        }
+
+        // With a streamed upload the headers arrive after the whole body, not one round trip later.
+        if(estimator != null && !(request instanceof StreamingBodyRequest && hasStreamingBody(request.getMethod()))) {
+            estimator.addRttSample(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+
+        // Hold the permits until Volley is done reading the body, unless there is nothing to read.
+        HttpEntity entity = response.getEntity();
+        if(entity == null || response.getStatusLine().getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            release(hostPermits);
+            release(qualityPermits);
+        } else {
+            if(hostPermits != null) {
+                entity = new PermitReleasingEntity(entity, hostPermits);
+            }
+            if(qualityPermits != null) {
+                entity = new PermitReleasingEntity(entity, qualityPermits);
+                entity = new ThroughputEntity(entity, estimator);
+            }
+            response.setEntity(entity);
+        }
+
+        return response;
+    }
+
+    private static void acquire(Semaphore permits, Request<?> request) throws IOException {
+        if(permits == null) {
+            return;
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a stream to " + request.getUrl());
+        }
+    }
+
+    private static void release(Semaphore permits) {
+        if(permits != null) {
+            permits.release();
+        }
+    }
+
+    private HttpResponse performRequestOnConnection(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        HttpResponse response;
+        if(request instanceof StreamingBodyRequest && hasStreamingBody(request.getMethod())) {
+            response = performStreamingBodyRequest(request, additionalHeaders);
+        } else {
+            response = super.performRequest(request, additionalHeaders);
+        }
+
+        if(request instanceof ProgressRequest && response.getEntity() != null) {
+            ProgressReporter reporter = ((ProgressRequest) request).getDownloadProgressReporter();
+            if(reporter != null) {
+                response.setEntity(new ProgressEntity(response.getEntity(), reporter));
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Same as {@link HurlStack#performRequest(Request, Map)} but the body is written to the
+     * connection by the request itself, see {@link StreamingBodyRequest}.
+     */
+    private HttpResponse performStreamingBodyRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        HashMap<String, String> map = new HashMap<>();
+        map.putAll(request.getHeaders());
+        map.putAll(additionalHeaders);
+
+        HttpURLConnection connection = createConnection(new URL(request.getUrl()));
+        int timeoutMs = request.getTimeoutMs();
+        connection.setConnectTimeout(timeoutMs);
+        connection.setReadTimeout(timeoutMs);
+        connection.setUseCaches(false);
+        connection.setDoInput(true);
+        for(Map.Entry<String, String> header : map.entrySet()) {
+            connection.addRequestProperty(header.getKey(), header.getValue());
+        }
+
+        connection.setRequestMethod(getMethodName(request.getMethod()));
+        connection.setDoOutput(true);
+        connection.addRequestProperty(HEADER_CONTENT_TYPE, request.getBodyContentType());
+
+        StreamingBodyRequest bodyRequest = (StreamingBodyRequest) request;
+        long bodyLength = bodyRequest.getBodyLength();
+        if(bodyLength >= 0 && bodyLength <= Integer.MAX_VALUE) {
+            connection.setFixedLengthStreamingMode((int) bodyLength);
+        } else {
+            connection.setChunkedStreamingMode(0);
+        }
+
+        OutputStream out = connection.getOutputStream();
+        ProgressReporter reporter = request instanceof ProgressRequest
+                ? ((ProgressRequest) request).getUploadProgressReporter() : null;
+        if(reporter != null) {
+            reporter.start(0, bodyLength);
+            out = reporter.wrap(out);
+        }
+
+        try {
+            bodyRequest.writeBody(out);
+        } finally {
+            out.close();
+        }
+
+        int responseCode = connection.getResponseCode();
+        if(responseCode == -1) {
+            throw new IOException("Could not retrieve response code from HttpUrlConnection.");
+        }
+
+        StatusLine responseStatus = new BasicStatusLine(new ProtocolVersion("HTTP", 1, 1),
+                responseCode, connection.getResponseMessage());
+        BasicHttpResponse response = new BasicHttpResponse(responseStatus);
+        if(request.getMethod() != Request.Method.HEAD && responseCode >= HttpStatus.SC_OK
+                && responseCode != HttpStatus.SC_NO_CONTENT && responseCode != HttpStatus.SC_NOT_MODIFIED) {
+            response.setEntity(entityFromConnection(connection));
+        }
+
+        for(Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+            if(header.getKey() != null) {
+                response.addHeader(new BasicHeader(header.getKey(), header.getValue().get(0)));
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Enables or disables HTTP/2. When enabled, HTTP/2 is offered during the TLS handshake and
+     * HTTP/1.1 is used whenever the server does not pick it.
+     *
+     * @param enabled True to offer HTTP/2, false to always use HTTP/1.1
+     */
+    public void setHttp2Enabled(boolean enabled) {
+        if(enabled) {
+            mOkHttpClient.setProtocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
+        } else {
+            mOkHttpClient.setProtocols(Collections.singletonList(Protocol.HTTP_1_1));
+        }
+    }
+
+    /**
+     * Limits the number of requests running at the same time against a single host. With HTTP/2
+     * this is the number of concurrent streams on the shared connection.
+     *
+     * @param maxStreamsPerHost Maximum concurrent requests per host, 0 for unlimited
+     */
+    public void setMaxStreamsPerHost(int maxStreamsPerHost) {
+        mMaxStreamsPerHost = maxStreamsPerHost;
+        mHostPermits.clear();
+    }
+
+    public int getMaxStreamsPerHost() {
+        return mMaxStreamsPerHost;
+    }
+
+    /**
+     * Returns the stream permits keyed by host name, shared with the stack that sends the hedges.
+     */
+    ConcurrentHashMap<String, Semaphore> getHostPermitMap() {
+        return mHostPermits;
+    }
+
+    public OkHttpClient getOkHttpClient() {
+        return mOkHttpClient;
+    }
+
+    /**
+     * Measures every response with the estimator and runs no more requests at once than its
+     * {@link NetworkQuality} allows.
+     *
+     * @param qualityEstimator Estimator of the link quality, null to stop measuring
+     */
+    public void setNetworkQualityEstimator(NetworkQualityEstimator qualityEstimator) {
+        mQualityEstimator = qualityEstimator;
+    }
+
+    public NetworkQualityEstimator getNetworkQualityEstimator() {
+        return mQualityEstimator;
+    }
+
+    /**
+     * Closes the idle connections once the app is in the background and likely to be killed, each
+     * keeps its socket and TLS buffers alive. Connections in use are left alone.
+     */
+    @Override
+    public long trimMemory(int level) {
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            ConnectionPool pool = mOkHttpClient.getConnectionPool();
+            if(pool == null) {
+                // Clients without their own pool share the default one.
+                pool = ConnectionPool.getDefault();
+            }
+            pool.evictAll();
+        }
+
+        return 0;
+    }
+
+    private static boolean hasStreamingBody(int method) {
+        return method == Request.Method.POST || method == Request.Method.PUT
+                || method == Request.Method.PATCH;
+    }
+
+    private static String getMethodName(int method) {
+        switch(method) {
+            case Request.Method.PUT:
+                return "PUT";
+            case Request.Method.PATCH:
+                return "PATCH";
+            default:
+                return "POST";
+        }
+    }
+
+    private static HttpEntity entityFromConnection(HttpURLConnection connection) {
+        BasicHttpEntity entity = new BasicHttpEntity();
+        InputStream inputStream;
+        try {
+            inputStream = connection.getInputStream();
+        } catch (IOException e) {
+            inputStream = connection.getErrorStream();
+        }
+
+        entity.setContent(inputStream);
+        entity.setContentLength(connection.getContentLength());
+        entity.setContentEncoding(connection.getContentEncoding());
+        entity.setContentType(connection.getContentType());
+
+        return entity;
+    }
+
+    private Semaphore getHostPermits(String host) {
+        Semaphore permits = mHostPermits.get(host);
+        if(permits == null) {
+            Semaphore created = new Semaphore(mMaxStreamsPerHost, true);
+            permits = mHostPermits.putIfAbsent(host, created);
+            if(permits == null) {
+                permits = created;
+            }
+        }
+
+        return permits;
+    }
+
+    /**
+     * Releases the host permit once Volley has consumed the response body.
+     */
+    private static class PermitReleasingEntity extends HttpEntityWrapper {
+
+        private final Semaphore mPermits;
+
+        private final AtomicBoolean mReleased = new AtomicBoolean();
+
+        PermitReleasingEntity(HttpEntity entity, Semaphore permits) {
+            super(entity);
+            mPermits = permits;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void consumeContent() throws IOException {
+            try {
+                super.consumeContent();
+            } finally {
+                if(mReleased.compareAndSet(false, true)) {
+                    mPermits.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Times the response body as it is read and reports the throughput once it is consumed.
+     */
+    private static class ThroughputEntity extends HttpEntityWrapper {
+
+        private final NetworkQualityEstimator mEstimator;
+
+        private final AtomicBoolean mReported = new AtomicBoolean();
+
+        private long mStartNanos;
+
+        private CountingInputStream mContent;
+
+        ThroughputEntity(HttpEntity entity, NetworkQualityEstimator estimator) {
+            super(entity);
+            mEstimator = estimator;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            mStartNanos = System.nanoTime();
+            mContent = new CountingInputStream(super.getContent());
+
+            return mContent;
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void consumeContent() throws IOException {
+            try {
+                super.consumeContent();
+            } finally {
+                if(mContent != null && mReported.compareAndSet(false, true)) {
+                    mEstimator.addThroughputSample(mContent.mCount,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStartNanos));
+                }
+            }
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        long mCount;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if(b != -1) {
+                mCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if(read > 0) {
+                mCount += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Counts the response body as Volley reads it.
+     */
+    private static class ProgressEntity extends HttpEntityWrapper {
+
+        private final ProgressReporter mReporter;
+
+        ProgressEntity(HttpEntity entity, ProgressReporter reporter) {
+            super(entity);
+            mReporter = reporter;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            mReporter.start(0, getContentLength());
+
+            return mReporter.wrap(super.getContent());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.io.File;
+
+/**
+ * Listener for download requests if successful or failed.
+ */
+public interface OnDownloadListener {
+
+    /**
+     * Callback when the download is complete.
+     *
+     * @param file Downloaded file
+     * @param bytes Size of the downloaded file
+     */
+    void onSuccess(File file, long bytes);
+
+    /**
+     * Callback when the download is a failure.
+     * @param response API response
+     */
+    void onFail(String response);
+}
@@ -0,0 +1,49 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.util.List;
+
+/**
+ * Listener for requests that stream a JSON array, the items are delivered in batches while the
+ * response is still being read.
+ *
+ * @param <T> Type of the items
+ */
+public interface OnItemsListener<T> {
+
+    /**
+     * Callback for each batch of items, in the order they appear in the response.
+     *
+     * @param items Items decoded so far, never empty
+     */
+    void onItems(List<T> items);
+
+    /**
+     * Callback when the whole array was read and its last batch delivered.
+     *
+     * @param nextPageUrl URL of the next page from the Link header, null if this was the last page
+     */
+    void onComplete(String nextPageUrl);
+
+    /**
+     * Callback when call to API is a failure. Batches delivered before the failure are kept.
+     * @param response API response
+     */
+    void onFail(String response);
+}
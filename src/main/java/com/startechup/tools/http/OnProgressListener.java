@@ -0,0 +1,32 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+/**
+ * Listener for the progress of a request or response body.
+ */
+public interface OnProgressListener {
+
+    /**
+     * Callback when more of the body was transferred.
+     *
+     * @param bytes Number of bytes transferred so far
+     * @param totalBytes Size of the body, -1 if unknown
+     */
+    void onProgress(long bytes, long totalBytes);
+}
@@ -0,0 +1,39 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+/**
+ * Listener for network requests that deliver a decoded model object.
+ *
+ * @param <T> Type of the model object
+ */
+public interface OnResultListener<T> {
+
+    /**
+     * Callback when call to API is successful.
+     *
+     * @param result Model object decoded from the API response.
+     */
+    void onSuccess(T result);
+
+    /**
+     * Callback when call to API is a failure.
+     * @param response API response
+     */
+    void onFail(String response);
+}
@@ -0,0 +1,258 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+import com.android.volley.Cache;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.startechup.tools.http.custom.PrefetchRequest;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the response cache with the URLs the next screen will need. Prefetches are only sent while
+ * the client has no other request running and the network is unmetered, at the lowest priority,
+ * and are cancelled as soon as a request of the app is added. Cancelled URLs are tried again the
+ * next time the client is idle. No listener is called, the responses only land in the cache.
+ *
+ * <pre>
+ * NetworkingValley.prefetch("users/{id}/posts", userId);
+ * </pre>
+ */
+public class Prefetcher {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "Prefetcher";
+
+    /**
+     * Default time a prefetched response stays fresh if the server did not say, 5 minutes.
+     */
+    public static final long DEFAULT_MAX_AGE_MS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * How long the client must stay idle before prefetching starts.
+     */
+    private static final long IDLE_DELAY_MS = 1000;
+
+    private static final int MAX_CONCURRENT_PREFETCHES = 2;
+
+    /**
+     * Most URLs kept waiting, the oldest are dropped past that.
+     */
+    private static final int MAX_PENDING = 100;
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final ValleyClient mClient;
+
+    private final Context mContext;
+
+    private RequestQueue mRequestQueue;
+
+    /**
+     * URLs waiting for the client to be idle, in order
+     */
+    private final ArrayDeque<String> mPending = new ArrayDeque<>();
+
+    private final List<PrefetchRequest> mRunning = new ArrayList<>();
+
+    /**
+     * Requests of the app that are in the queue, prefetching waits until there are none
+     */
+    private final Set<Request<?>> mForeground =
+            Collections.newSetFromMap(new ConcurrentHashMap<Request<?>, Boolean>());
+
+    private long mMaxAgeMs = DEFAULT_MAX_AGE_MS;
+
+    private boolean mScheduled;
+
+    Prefetcher(ValleyClient client, Context context) {
+        mClient = client;
+        mContext = context;
+    }
+
+    synchronized void attach(RequestQueue requestQueue) {
+        mRequestQueue = requestQueue;
+        mRequestQueue.addRequestFinishedListener(new RequestQueue.RequestFinishedListener<Object>() {
+            @Override
+            public void onRequestFinished(Request<Object> request) {
+                Request<?> finished = request;
+                if(finished instanceof PrefetchRequest) {
+                    onPrefetchFinished((PrefetchRequest) finished);
+                } else if(mForeground.remove(finished) && mForeground.isEmpty()) {
+                    scheduleNext(IDLE_DELAY_MS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets how long a prefetched response stays fresh when the server sent no cache headers.
+     */
+    public synchronized void setMaxAgeMs(long maxAgeMs) {
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    /**
+     * Adds a URL to prefetch once the client is idle. A URL already waiting is not added twice.
+     */
+    public synchronized void prefetch(String url) {
+        if(mPending.contains(url)) {
+            return;
+        }
+
+        if(mPending.size() >= MAX_PENDING) {
+            mPending.pollFirst();
+        }
+        mPending.addLast(url);
+
+        scheduleNext(mForeground.isEmpty() ? 0 : IDLE_DELAY_MS);
+    }
+
+    /**
+     * Drops the waiting URLs and cancels the running prefetches.
+     */
+    public synchronized void cancelAll() {
+        mPending.clear();
+        for(PrefetchRequest request : mRunning) {
+            request.cancel();
+        }
+        mRunning.clear();
+    }
+
+    /**
+     * Called for every request of the app before it is added to the queue, running prefetches
+     * make way for it.
+     */
+    synchronized void onRequestAdded(Request<?> request) {
+        if(request instanceof PrefetchRequest) {
+            return;
+        }
+
+        mForeground.add(request);
+        if(mRunning.isEmpty()) {
+            return;
+        }
+
+        Log.d(TAG, "Cancelling " + mRunning.size() + " prefetches for " + request.getUrl());
+        for(int i = mRunning.size() - 1; i >= 0; i--) {
+            PrefetchRequest prefetch = mRunning.get(i);
+            prefetch.cancel();
+            mPending.addFirst(prefetch.getUrl());
+        }
+        mRunning.clear();
+    }
+
+    private synchronized void onPrefetchFinished(PrefetchRequest request) {
+        if(mRunning.remove(request)) {
+            scheduleNext(0);
+        }
+    }
+
+    private void scheduleNext(long delayMs) {
+        synchronized (this) {
+            if(mScheduled || mPending.isEmpty()) {
+                return;
+            }
+            mScheduled = true;
+        }
+
+        SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                startPrefetches();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void startPrefetches() {
+        synchronized (this) {
+            mScheduled = false;
+            if(mRequestQueue == null || !mForeground.isEmpty() || !isUnmetered()) {
+                // Tried again when the last request of the app finishes or a URL is added.
+                return;
+            }
+        }
+
+        Cache cache = mRequestQueue.getCache();
+        if(cache instanceof TracingCache) {
+            // Looking up a URL is not a cache hit of a request, keep it out of the trace.
+            cache = ((TracingCache) cache).getWrappedCache();
+        }
+        Set<String> started = new HashSet<>();
+        while(true) {
+            String url;
+            synchronized (this) {
+                if(!mForeground.isEmpty() || mRunning.size() >= MAX_CONCURRENT_PREFETCHES || mPending.isEmpty()) {
+                    return;
+                }
+                url = mPending.pollFirst();
+            }
+
+            // Already fresh in the cache, nothing to do.
+            Cache.Entry entry = cache.get(url);
+            if(entry != null && !entry.refreshNeeded() || !started.add(url)) {
+                continue;
+            }
+
+            synchronized (this) {
+                if(!mForeground.isEmpty()) {
+                    mPending.addFirst(url);
+                    return;
+                }
+
+                PrefetchRequest request = mClient.constructPrefetchRequest(url, mMaxAgeMs);
+                mRunning.add(request);
+                mRequestQueue.add(request);
+            }
+        }
+    }
+
+    private boolean isUnmetered() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+
+        return networkInfo != null && networkInfo.isConnected() && !connectivityManager.isActiveNetworkMetered();
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.SystemClock;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Counts the bytes of a body and reports them to an {@link OnProgressListener} at a bounded rate.
+ * A report is made at most once per interval and only when the progress moved by at least the
+ * given percentage, the final count is always reported. If a report is still waiting on the
+ * executor, no new one is posted; the waiting one picks up the latest count when it runs.
+ */
+public class ProgressReporter {
+
+    /**
+     * Default minimum time between two reports.
+     */
+    public static final long DEFAULT_INTERVAL_MS = 100;
+
+    /**
+     * Default minimum progress between two reports, in percent of the total.
+     */
+    public static final int DEFAULT_PERCENT_STEP = 1;
+
+    private final OnProgressListener mListener;
+
+    private final Executor mExecutor;
+
+    private final long mIntervalMs;
+
+    private final int mPercentStep;
+
+    private volatile long mBytes;
+
+    private volatile long mTotalBytes = -1;
+
+    /**
+     * Time and count of the last report, only touched by the thread doing the I/O.
+     */
+    private long mLastReportTime;
+    private long mLastReportBytes;
+
+    /**
+     * Last count given to the listener, guarded by the delivery lock.
+     */
+    private long mDeliveredBytes = -1;
+
+    private final Object mDeliveryLock = new Object();
+
+    private final AtomicBoolean mPending = new AtomicBoolean();
+
+    private final Runnable mDelivery = new Runnable() {
+        @Override
+        public void run() {
+            // Clear first, a count written after this point posts a new delivery.
+            mPending.set(false);
+
+            synchronized(mDeliveryLock) {
+                long bytes = mBytes;
+                if(bytes != mDeliveredBytes) {
+                    mDeliveredBytes = bytes;
+                    mListener.onProgress(bytes, mTotalBytes);
+                }
+            }
+        }
+    };
+
+    /**
+     * Reports on the main thread with the default interval and step.
+     *
+     * @param listener Listener to report to
+     */
+    public ProgressReporter(OnProgressListener listener) {
+        this(listener, MainThreadExecutor.getInstance(), DEFAULT_INTERVAL_MS, DEFAULT_PERCENT_STEP);
+    }
+
+    /**
+     * @param listener Listener to report to
+     * @param executor Executor the listener is called on
+     * @param intervalMs Minimum time between two reports
+     * @param percentStep Minimum progress between two reports in percent, 0 to ignore
+     */
+    public ProgressReporter(OnProgressListener listener, Executor executor, long intervalMs, int percentStep) {
+        mListener = listener;
+        mExecutor = executor;
+        mIntervalMs = intervalMs;
+        mPercentStep = percentStep;
+    }
+
+    /**
+     * Starts counting a body, called again when the request is retried.
+     *
+     * @param initialBytes Bytes already transferred before this body, e.g. when resuming
+     * @param totalBytes Size of the whole body, -1 if unknown
+     */
+    public void start(long initialBytes, long totalBytes) {
+        mTotalBytes = totalBytes;
+        mBytes = initialBytes;
+        mLastReportBytes = initialBytes;
+        mLastReportTime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * Reports the final count regardless of interval and step.
+     */
+    public void finish() {
+        post();
+    }
+
+    /**
+     * Wraps a stream so bytes read from it are counted.
+     */
+    public InputStream wrap(InputStream in) {
+        return new CountingInputStream(in);
+    }
+
+    /**
+     * Wraps a stream so bytes written to it are counted.
+     */
+    public OutputStream wrap(OutputStream out) {
+        return new CountingOutputStream(out);
+    }
+
+    private void onBytes(long count) {
+        long bytes = mBytes + count;
+        mBytes = bytes;
+
+        long now = SystemClock.uptimeMillis();
+        if(now - mLastReportTime < mIntervalMs && bytes != mTotalBytes) {
+            return;
+        }
+
+        long total = mTotalBytes;
+        if(total > 0 && mPercentStep > 0 && bytes != total
+                && (bytes - mLastReportBytes) * 100 < total * mPercentStep) {
+            return;
+        }
+
+        mLastReportTime = now;
+        mLastReportBytes = bytes;
+        post();
+    }
+
+    private void post() {
+        if(mPending.compareAndSet(false, true)) {
+            mExecutor.execute(mDelivery);
+        }
+    }
+
+    private class CountingInputStream extends FilterInputStream {
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if(value != -1) {
+                onBytes(1);
+            } else {
+                finish();
+            }
+
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int read = super.read(buffer, offset, count);
+            if(read > 0) {
+                onBytes(read);
+            } else if(read == -1) {
+                finish();
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = super.skip(count);
+            if(skipped > 0) {
+                onBytes(skipped);
+            }
+
+            return skipped;
+        }
+    }
+
+    private class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            onBytes(1);
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int count) throws IOException {
+            // FilterOutputStream would write one byte at a time.
+            out.write(buffer, offset, count);
+            onBytes(count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            super.close();
+            finish();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+/**
+ * Implemented by requests that report the progress of their request and response bodies. The
+ * {@link OkHttpStack} counts the bytes as they go through the connection.
+ */
+public interface ProgressRequest {
+
+    /**
+     * Returns the reporter for the request body, null if upload progress is not needed.
+     */
+    ProgressReporter getUploadProgressReporter();
+
+    /**
+     * Returns the reporter for the response body, null if download progress is not needed.
+     */
+    ProgressReporter getDownloadProgressReporter();
+}
@@ -0,0 +1,459 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.util.Log;
+
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the request rate to a host or an endpoint under a limit with token buckets, before the
+ * requests reach the network. A bucket holds up to burst tokens and refills at the given rate,
+ * each request takes one token from the bucket of its host and one from the bucket of its path.
+ * Requests arriving while a bucket is empty are handled by the {@link Policy} of the limit.
+ *
+ * <pre>
+ * RateLimiter rateLimiter = new RateLimiter()
+ *         .setHostLimit("api.example.com", 20, 40, RateLimiter.Policy.QUEUE)
+ *         .setPathLimit("api.example.com", "/v1/thumbnails", 5, 10, RateLimiter.Policy.MERGE);
+ * </pre>
+ */
+public class RateLimiter {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "RateLimiter";
+
+    /**
+     * Default number of requests that may wait for a token per limit.
+     */
+    public static final int DEFAULT_MAX_QUEUED = 64;
+
+    /**
+     * What happens to a request that finds the bucket empty.
+     */
+    public enum Policy {
+
+        /**
+         * Waits for a token, in order of arrival.
+         */
+        QUEUE,
+
+        /**
+         * Waits like {@link #QUEUE}, but a GET identical to one already waiting is not sent again,
+         * it gets the response of the waiting one.
+         */
+        MERGE,
+
+        /**
+         * Fails right away with a {@link RateLimitError}.
+         */
+        DROP
+    }
+
+    private static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /**
+     * Limits keyed by host.
+     */
+    private final Map<String, Limit> mHostLimits = new HashMap<>();
+
+    /**
+     * Path limits keyed by host, longest prefix first.
+     */
+    private final Map<String, List<Limit>> mPathLimits = new HashMap<>();
+
+    private int mMaxQueued = DEFAULT_MAX_QUEUED;
+
+    private RequestQueue mRequestQueue;
+
+    private RoutingResponseDelivery mResponseDelivery;
+
+    private ScheduledFuture<?> mScheduledDrain;
+
+    private long mScheduledDrainNanos;
+
+    /**
+     * Limits all requests to a host.
+     *
+     * @param host Host name, e.g. "api.example.com"
+     * @param requestsPerSecond Sustained rate
+     * @param burst Requests that may be sent at once after a quiet period
+     * @param policy What happens to requests over the limit
+     */
+    public synchronized RateLimiter setHostLimit(String host, double requestsPerSecond, int burst,
+                                                 Policy policy) {
+        mHostLimits.put(host, new Limit(host, requestsPerSecond, burst, policy));
+
+        return this;
+    }
+
+    /**
+     * Limits the requests to the paths of a host starting with the given prefix. When several
+     * prefixes match, the longest one applies. The host limit, if any, applies as well.
+     *
+     * @param host Host name, e.g. "api.example.com"
+     * @param pathPrefix Path prefix, e.g. "/v1/search"
+     * @param requestsPerSecond Sustained rate
+     * @param burst Requests that may be sent at once after a quiet period
+     * @param policy What happens to requests over the limit
+     */
+    public synchronized RateLimiter setPathLimit(String host, String pathPrefix, double requestsPerSecond,
+                                                 int burst, Policy policy) {
+        List<Limit> limits = mPathLimits.get(host);
+        if(limits == null) {
+            limits = new ArrayList<>();
+            mPathLimits.put(host, limits);
+        }
+
+        Limit limit = new Limit(pathPrefix, requestsPerSecond, burst, policy);
+        int index = 0;
+        while(index < limits.size() && limits.get(index).mKey.length() >= pathPrefix.length()) {
+            index++;
+        }
+        limits.add(index, limit);
+
+        return this;
+    }
+
+    /**
+     * Sets how many requests may wait for a token per limit, more fail with a
+     * {@link RateLimitError}. Keeps the waiting time of queued requests bounded.
+     */
+    public synchronized RateLimiter setMaxQueued(int maxQueued) {
+        mMaxQueued = maxQueued;
+
+        return this;
+    }
+
+    /**
+     * Called by {@link ValleyClient.Builder#build()}.
+     */
+    synchronized void attach(RequestQueue requestQueue, RoutingResponseDelivery responseDelivery) {
+        mRequestQueue = requestQueue;
+        mResponseDelivery = responseDelivery;
+    }
+
+    /**
+     * Adds the request to the queue now, later or not at all, depending on the limits.
+     */
+    void add(Request<?> request) {
+        String host;
+        String path;
+        try {
+            URL url = new URL(request.getUrl());
+            host = url.getHost();
+            path = url.getPath();
+        } catch (MalformedURLException e) {
+            // Volley fails it with a proper error.
+            mRequestQueue.add(request);
+            return;
+        }
+
+        RateLimitError error = null;
+        synchronized(this) {
+            Limit hostLimit = mHostLimits.get(host);
+            Limit pathLimit = findPathLimit(host, path);
+            Limit lane = pathLimit != null ? pathLimit : hostLimit;
+
+            if(lane == null) {
+                mRequestQueue.add(request);
+                return;
+            }
+
+            long now = System.nanoTime();
+            if(lane.mWaiting.isEmpty() && waitNanos(hostLimit, pathLimit, now) == 0) {
+                take(hostLimit, pathLimit);
+                mRequestQueue.add(request);
+                return;
+            }
+
+            if(lane.mPolicy == Policy.DROP) {
+                error = new RateLimitError("Rate limit reached for " + host + path);
+            } else if(lane.mPolicy == Policy.MERGE && mergeWithWaiting(lane, request)) {
+                return;
+            } else if(lane.mWaiting.size() >= mMaxQueued) {
+                error = new RateLimitError("Too many requests waiting for " + host + path);
+            } else {
+                lane.mWaiting.add(new Waiting(request, hostLimit, pathLimit));
+                scheduleDrain(now);
+                return;
+            }
+        }
+
+        Log.d(TAG, error.getMessage());
+        mResponseDelivery.postError(request, error);
+    }
+
+    private Limit findPathLimit(String host, String path) {
+        List<Limit> limits = mPathLimits.get(host);
+        if(limits == null) {
+            return null;
+        }
+
+        for(Limit limit : limits) {
+            if(path.startsWith(limit.mKey)) {
+                return limit;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Attaches the request to an identical GET waiting in the lane, it is delivered the same
+     * response. Only requests of the same class are merged, so the response type matches.
+     */
+    private boolean mergeWithWaiting(Limit lane, Request<?> request) {
+        if(request.getMethod() != Request.Method.GET) {
+            return false;
+        }
+
+        for(Waiting waiting : lane.mWaiting) {
+            Request<?> leader = waiting.mRequest;
+            if(!leader.isCanceled() && leader.getClass() == request.getClass()
+                    && leader.getCacheKey().equals(request.getCacheKey())) {
+                mResponseDelivery.merge(leader, request);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void drain() {
+        synchronized(this) {
+            mScheduledDrain = null;
+
+            long now = System.nanoTime();
+            for(Limit lane : allLanes()) {
+                Iterator<Waiting> iterator = lane.mWaiting.iterator();
+                while(iterator.hasNext()) {
+                    Waiting waiting = iterator.next();
+                    if(waiting.mRequest.isCanceled()) {
+                        // Requests merged into it are still waiting, the next one takes its place.
+                        Request<?> leader = nextLeader(waiting.mRequest);
+                        if(leader == null) {
+                            iterator.remove();
+                            continue;
+                        }
+                        waiting.mRequest = leader;
+                    }
+
+                    if(waitNanos(waiting.mHostLimit, waiting.mPathLimit, now) > 0) {
+                        break;
+                    }
+
+                    iterator.remove();
+                    take(waiting.mHostLimit, waiting.mPathLimit);
+                    mRequestQueue.add(waiting.mRequest);
+                }
+            }
+
+            scheduleDrain(now);
+        }
+    }
+
+    /**
+     * Returns the first merged request of a cancelled one that is not cancelled itself, with the
+     * other merged requests moved to it.
+     */
+    private Request<?> nextLeader(Request<?> cancelled) {
+        Request<?> leader = null;
+        for(Request<?> follower : mResponseDelivery.removeMerged(cancelled)) {
+            if(follower.isCanceled()) {
+                continue;
+            }
+
+            if(leader == null) {
+                leader = follower;
+            } else {
+                mResponseDelivery.merge(leader, follower);
+            }
+        }
+
+        return leader;
+    }
+
+    /**
+     * Schedules the next drain for when the first waiting request can get its tokens.
+     */
+    private void scheduleDrain(long now) {
+        long next = Long.MAX_VALUE;
+        for(Limit lane : allLanes()) {
+            Waiting head = lane.mWaiting.peek();
+            if(head != null) {
+                next = Math.min(next, waitNanos(head.mHostLimit, head.mPathLimit, now));
+            }
+        }
+
+        if(next == Long.MAX_VALUE) {
+            return;
+        }
+
+        long at = now + next;
+        if(mScheduledDrain != null) {
+            if(mScheduledDrainNanos <= at) {
+                return;
+            }
+            mScheduledDrain.cancel(false);
+        }
+
+        mScheduledDrainNanos = at;
+        mScheduledDrain = SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, next, TimeUnit.NANOSECONDS);
+    }
+
+    private List<Limit> allLanes() {
+        List<Limit> lanes = new ArrayList<>(mHostLimits.values());
+        for(List<Limit> limits : mPathLimits.values()) {
+            lanes.addAll(limits);
+        }
+
+        return lanes;
+    }
+
+    private static long waitNanos(Limit hostLimit, Limit pathLimit, long now) {
+        long wait = 0;
+        if(hostLimit != null) {
+            wait = hostLimit.mBucket.waitNanos(now);
+        }
+        if(pathLimit != null) {
+            wait = Math.max(wait, pathLimit.mBucket.waitNanos(now));
+        }
+
+        return wait;
+    }
+
+    private static void take(Limit hostLimit, Limit pathLimit) {
+        if(hostLimit != null) {
+            hostLimit.mBucket.take();
+        }
+        if(pathLimit != null) {
+            pathLimit.mBucket.take();
+        }
+    }
+
+    /**
+     * A host or path limit with its bucket and the requests waiting for it.
+     */
+    private static class Limit {
+
+        final String mKey;
+
+        final Policy mPolicy;
+
+        final TokenBucket mBucket;
+
+        final ArrayDeque<Waiting> mWaiting = new ArrayDeque<>();
+
+        Limit(String key, double requestsPerSecond, int burst, Policy policy) {
+            if(requestsPerSecond <= 0) {
+                throw new IllegalArgumentException("Rate must be positive: " + requestsPerSecond);
+            }
+
+            mKey = key;
+            mPolicy = policy;
+            mBucket = new TokenBucket(requestsPerSecond, Math.max(1, burst));
+        }
+    }
+
+    private static class Waiting {
+
+        Request<?> mRequest;
+
+        final Limit mHostLimit;
+
+        final Limit mPathLimit;
+
+        Waiting(Request<?> request, Limit hostLimit, Limit pathLimit) {
+            mRequest = request;
+            mHostLimit = hostLimit;
+            mPathLimit = pathLimit;
+        }
+    }
+
+    /**
+     * Token bucket, guarded by the lock of the limiter.
+     */
+    private static class TokenBucket {
+
+        private final double mTokensPerNano;
+
+        private final double mCapacity;
+
+        private double mTokens;
+
+        private long mLastRefillNanos;
+
+        TokenBucket(double tokensPerSecond, int capacity) {
+            mTokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+            mCapacity = capacity;
+            mTokens = capacity;
+            mLastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * Returns how long until a token is available, 0 if there is one now.
+         */
+        long waitNanos(long now) {
+            if(now > mLastRefillNanos) {
+                mTokens = Math.min(mCapacity, mTokens + (now - mLastRefillNanos) * mTokensPerNano);
+                mLastRefillNanos = now;
+            }
+
+            if(mTokens >= 1) {
+                return 0;
+            }
+
+            return (long) Math.ceil((1 - mTokens) / mTokensPerNano);
+        }
+
+        void take() {
+            mTokens -= 1;
+        }
+    }
+}
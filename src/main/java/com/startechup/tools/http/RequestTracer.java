@@ -0,0 +1,290 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.util.JsonWriter;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NoConnectionError;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps a compact trace of the last requests of a client in a fixed size ring buffer: method,
+ * host, status, bytes, timings, retries and cache result. Recording takes no lock and allocates
+ * nothing, every trace is a few longs in preallocated arrays, so a support build can keep the
+ * last thousands of requests at little cost. Call {@link #dumpJson()} or
+ * {@link #dumpToFile(File)} when a user reports slowness.
+ *
+ * <p>Writers claim a slot with an atomic counter. A slot carries a sequence number that is odd
+ * while it is written, so a dump skips the traces that are being overwritten.</p>
+ */
+public class RequestTracer {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * Cache results
+     */
+    public static final int CACHE_NONE = 0;
+    public static final int CACHE_MISS = 1;
+    public static final int CACHE_HIT = 2;
+    public static final int CACHE_SOFT_HIT = 3;
+    public static final int CACHE_REVALIDATED = 4;
+    public static final int CACHE_EXPIRED = 5;
+
+    private static final String[] CACHE_NAMES = {"none", "miss", "hit", "soft-hit", "revalidated", "expired"};
+
+    /**
+     * Error kinds, from the class of the {@link VolleyError}
+     */
+    private static final int ERROR_NONE = 0;
+    private static final int ERROR_TIMEOUT = 1;
+    private static final int ERROR_NO_CONNECTION = 2;
+    private static final int ERROR_AUTH = 3;
+    private static final int ERROR_SERVER = 4;
+    private static final int ERROR_PARSE = 5;
+    private static final int ERROR_OTHER = 6;
+
+    private static final String[] ERROR_NAMES = {null, "timeout", "no-connection", "auth", "server", "parse", "other"};
+
+    private static final String[] METHOD_NAMES = {"GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "TRACE", "PATCH"};
+
+    /**
+     * Longs per trace: sequence, start, duration, last attempt, bytes, status and flags
+     */
+    private static final int STRIDE = 6;
+
+    private final int mCapacity;
+
+    private final int mMask;
+
+    private final AtomicLong mNext = new AtomicLong();
+
+    private final AtomicLongArray mData;
+
+    private final AtomicReferenceArray<String> mUrls;
+
+    public RequestTracer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Public constructor
+     *
+     * @param capacity Number of traces kept, rounded up to a power of two
+     */
+    public RequestTracer(int capacity) {
+        if(capacity < 1 || capacity > (1 << 24)) {
+            throw new IllegalArgumentException("Capacity out of range: " + capacity);
+        }
+
+        int rounded = Integer.highestOneBit(capacity);
+        mCapacity = rounded == capacity ? capacity : rounded << 1;
+        mMask = mCapacity - 1;
+        mData = new AtomicLongArray(mCapacity * STRIDE);
+        mUrls = new AtomicReferenceArray<>(mCapacity);
+    }
+
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * Returns how many traces were recorded since the tracer was created, including the ones
+     * already overwritten.
+     */
+    public long getRecordedCount() {
+        return mNext.get();
+    }
+
+    /**
+     * Records a request that went to the network.
+     *
+     * @param request Finished request
+     * @param statusCode HTTP status code, 0 if no response was received
+     * @param bytes Size of the response body, -1 if unknown
+     * @param startMillis Wall clock time the request was sent at
+     * @param durationMs Time spent on the network, retries included
+     * @param lastAttemptMs Time of the last attempt alone, 0 if unknown
+     * @param cacheResult One of the CACHE constants
+     * @param error Error the request failed with, null if it succeeded
+     */
+    public void record(Request<?> request, int statusCode, long bytes, long startMillis, long durationMs,
+                       long lastAttemptMs, int cacheResult, VolleyError error) {
+        int retries = request.getRetryPolicy() != null ? request.getRetryPolicy().getCurrentRetryCount() : 0;
+
+        record(request.getMethod(), request.getUrl(), statusCode, bytes, startMillis, durationMs, lastAttemptMs,
+                retries, cacheResult, errorKind(error));
+    }
+
+    /**
+     * Records a GET answered from the cache.
+     */
+    void recordCacheHit(String url, long bytes, long startMillis, long durationMs, int cacheResult) {
+        record(Request.Method.GET, url, 200, bytes, startMillis, durationMs, durationMs, 0, cacheResult, ERROR_NONE);
+    }
+
+    private void record(int method, String url, int statusCode, long bytes, long startMillis, long durationMs,
+                        long lastAttemptMs, int retries, int cacheResult, int error) {
+        long sequence = mNext.getAndIncrement();
+        int slot = (int) (sequence & mMask);
+        int base = slot * STRIDE;
+
+        // Odd while the slot is written, a dump running at the same time skips it.
+        mData.set(base, 2 * sequence + 1);
+        mData.set(base + 1, startMillis);
+        mData.set(base + 2, durationMs);
+        mData.set(base + 3, lastAttemptMs);
+        mData.set(base + 4, bytes);
+        mData.set(base + 5, ((long) statusCode << 32) | ((long) (method & 0xFF) << 24) | ((cacheResult & 0xF) << 20)
+                | ((error & 0xF) << 16) | (Math.min(retries, 0xFFFF)));
+        mUrls.set(slot, url);
+        mData.set(base, 2 * sequence + 2);
+    }
+
+    /**
+     * Returns the traces still in the buffer as JSON, oldest first.
+     */
+    public String dumpJson() {
+        StringWriter out = new StringWriter();
+        try {
+            dumpJson(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Writes the traces to a file as JSON, replacing its content.
+     */
+    public void dumpToFile(File file) throws IOException {
+        Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            dumpJson(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Writes the traces as JSON, oldest first. Only the host and the path of the URLs are written,
+     * query strings often carry tokens.
+     */
+    public void dumpJson(Writer out) throws IOException {
+        long end = mNext.get();
+        long start = Math.max(0, end - mCapacity);
+
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginObject();
+        writer.name("capacity").value(mCapacity);
+        writer.name("recorded").value(end);
+        writer.name("traces").beginArray();
+        for(long sequence = start; sequence < end; sequence++) {
+            int slot = (int) (sequence & mMask);
+            int base = slot * STRIDE;
+
+            long stamp = mData.get(base);
+            if(stamp != 2 * sequence + 2) {
+                // Still being written or already overwritten.
+                continue;
+            }
+            long startMillis = mData.get(base + 1);
+            long durationMs = mData.get(base + 2);
+            long lastAttemptMs = mData.get(base + 3);
+            long bytes = mData.get(base + 4);
+            long packed = mData.get(base + 5);
+            String url = mUrls.get(slot);
+            if(mData.get(base) != stamp) {
+                continue;
+            }
+
+            writeTrace(writer, url, startMillis, durationMs, lastAttemptMs, bytes, packed);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writeTrace(JsonWriter writer, String url, long startMillis, long durationMs,
+                                   long lastAttemptMs, long bytes, long packed) throws IOException {
+        int method = (int) (packed >>> 24) & 0xFF;
+        int cacheResult = (int) (packed >>> 20) & 0xF;
+        int error = (int) (packed >>> 16) & 0xF;
+
+        writer.beginObject();
+        writer.name("start").value(startMillis);
+        writer.name("method").value(method < METHOD_NAMES.length ? METHOD_NAMES[method] : "DEPRECATED_GET_OR_POST");
+        try {
+            URL parsed = new URL(url);
+            writer.name("host").value(parsed.getHost());
+            writer.name("path").value(parsed.getPath());
+        } catch (MalformedURLException e) {
+            writer.name("host").nullValue();
+            writer.name("path").nullValue();
+        }
+        writer.name("status").value(packed >>> 32);
+        writer.name("bytes").value(bytes);
+        writer.name("durationMs").value(durationMs);
+        writer.name("lastAttemptMs").value(lastAttemptMs);
+        writer.name("retries").value(packed & 0xFFFF);
+        writer.name("cache").value(cacheResult < CACHE_NAMES.length ? CACHE_NAMES[cacheResult] : null);
+        writer.name("error").value(error < ERROR_NAMES.length ? ERROR_NAMES[error] : null);
+        writer.endObject();
+    }
+
+    private static int errorKind(VolleyError error) {
+        if(error == null) {
+            return ERROR_NONE;
+        }
+        if(error instanceof TimeoutError) {
+            return ERROR_TIMEOUT;
+        }
+        if(error instanceof NoConnectionError) {
+            return ERROR_NO_CONNECTION;
+        }
+        if(error instanceof AuthFailureError) {
+            return ERROR_AUTH;
+        }
+        if(error instanceof ServerError) {
+            return ERROR_SERVER;
+        }
+        if(error instanceof ParseError) {
+            return ERROR_PARSE;
+        }
+
+        return ERROR_OTHER;
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Converts a response body into a model object. Called on the network thread, so parsing never
+ * happens on the main thread.
+ *
+ * @param <T> Type of the model object
+ */
+public interface ResponseConverter<T> {
+
+    /**
+     * Reads the model object from the response body.
+     *
+     * @param body Response body
+     * @param charset Charset of the body from the Content-Type header, UTF-8 if not given
+     * @return Model object delivered to the listener
+     * @throws IOException If the body could not be read or parsed
+     */
+    T convert(InputStream body, String charset) throws IOException;
+}
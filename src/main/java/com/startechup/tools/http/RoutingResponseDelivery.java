@@ -0,0 +1,160 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import com.android.volley.ExecutorDelivery;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Delivers responses on a configurable executor instead of always posting them to the main
+ * thread. Each request may have its own executor, other requests use the default one.
+ */
+public class RoutingResponseDelivery implements ResponseDelivery {
+
+    private final Executor mDefaultExecutor;
+
+    /**
+     * Executors set for single requests. Weak keys, so cancelled requests that are never
+     * delivered do not leak.
+     */
+    private final Map<Request<?>, Executor> mRequestExecutors =
+            Collections.synchronizedMap(new WeakHashMap<Request<?>, Executor>());
+
+    /**
+     * Requests that get the response of another request instead of being sent, keyed by the
+     * request that is sent. See {@link RateLimiter.Policy#MERGE}.
+     */
+    private final Map<Request<?>, List<Request<?>>> mMergedRequests = new HashMap<>();
+
+    /**
+     * Volley's delivery for each executor in use.
+     */
+    private final ConcurrentHashMap<Executor, ExecutorDelivery> mDeliveries = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultExecutor Executor for requests without their own, e.g.
+     *                        {@link MainThreadExecutor#getInstance()}
+     */
+    public RoutingResponseDelivery(Executor defaultExecutor) {
+        mDefaultExecutor = defaultExecutor;
+    }
+
+    /**
+     * Delivers the response of the given request on the given executor.
+     */
+    public void setExecutor(Request<?> request, Executor executor) {
+        mRequestExecutors.put(request, executor);
+    }
+
+    /**
+     * Delivers the response or error of the leader to the follower as well. The follower is never
+     * added to the queue and must produce the same response type as the leader.
+     */
+    void merge(Request<?> leader, Request<?> follower) {
+        synchronized(mMergedRequests) {
+            List<Request<?>> followers = mMergedRequests.get(leader);
+            if(followers == null) {
+                followers = new ArrayList<>();
+                mMergedRequests.put(leader, followers);
+            }
+            followers.add(follower);
+        }
+    }
+
+    /**
+     * Removes and returns the requests merged into the leader.
+     */
+    List<Request<?>> removeMerged(Request<?> leader) {
+        synchronized(mMergedRequests) {
+            List<Request<?>> followers = mMergedRequests.remove(leader);
+            return followers != null ? followers : Collections.<Request<?>>emptyList();
+        }
+    }
+
+    private List<Request<?>> getMerged(Request<?> leader, boolean last) {
+        synchronized(mMergedRequests) {
+            if(mMergedRequests.isEmpty()) {
+                return Collections.emptyList();
+            }
+
+            List<Request<?>> followers = last ? mMergedRequests.remove(leader) : mMergedRequests.get(leader);
+            return followers != null ? new ArrayList<>(followers) : Collections.<Request<?>>emptyList();
+        }
+    }
+
+    public Executor getDefaultExecutor() {
+        return mDefaultExecutor;
+    }
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response) {
+        getDelivery(request, !response.intermediate).postResponse(request, response);
+        postMergedResponse(request, response);
+    }
+
+    @Override
+    public void postResponse(Request<?> request, Response<?> response, Runnable runnable) {
+        getDelivery(request, !response.intermediate).postResponse(request, response, runnable);
+        postMergedResponse(request, response);
+    }
+
+    @Override
+    public void postError(Request<?> request, VolleyError error) {
+        getDelivery(request, true).postError(request, error);
+
+        for(Request<?> follower : getMerged(request, true)) {
+            getDelivery(follower, true).postError(follower, error);
+        }
+    }
+
+    private void postMergedResponse(Request<?> request, Response<?> response) {
+        for(Request<?> follower : getMerged(request, !response.intermediate)) {
+            getDelivery(follower, !response.intermediate).postResponse(follower, response);
+        }
+    }
+
+    private ExecutorDelivery getDelivery(Request<?> request, boolean last) {
+        Executor executor = last ? mRequestExecutors.remove(request) : mRequestExecutors.get(request);
+        if(executor == null) {
+            executor = mDefaultExecutor;
+        }
+
+        ExecutorDelivery delivery = mDeliveries.get(executor);
+        if(delivery == null) {
+            ExecutorDelivery created = new ExecutorDelivery(executor);
+            delivery = mDeliveries.putIfAbsent(executor, created);
+            if(delivery == null) {
+                delivery = created;
+            }
+        }
+
+        return delivery;
+    }
+}
@@ -17,15 +17,11 @@
 
 package com.startechup.tools.http;
 
-import com.android.volley.toolbox.HurlStack;
 import com.squareup.okhttp.OkHttpClient;
-import com.squareup.okhttp.OkUrlFactory;
 
 import javax.net.ssl.*;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.security.KeyStore;
 import java.security.SecureRandom;
@@ -34,7 +30,7 @@ import java.security.SecureRandom;
  * Helper class for using OkHttp library as the transport layer for Volley. In this class, we
  * added support for using SSL/HTTPS by providing this with the byte format of the cert files needed.
  */
-public class SSLHttpStack extends HurlStack {
+public class SSLHttpStack extends OkHttpStack {
 
     /**
      * Byte stream that represents our .p12 file.
@@ -51,11 +47,6 @@ public class SSLHttpStack extends HurlStack {
      */
     private SSLContext mSSLContext;
 
-    /**
-     * Handles the HTTP/HTTPS request.
-     */
-    private OkUrlFactory mOkUrlFactory;
-
     private String mKeyStorePassword = "";
 
     private String mClientStorePassword = "";
@@ -64,7 +55,7 @@ public class SSLHttpStack extends HurlStack {
         mInputClientKey = inputClientKey;
         mInputTrustKey = inputTrustKey;
 
-        OkHttpClient okHttpClient = new OkHttpClient();
+        OkHttpClient okHttpClient = getOkHttpClient();
         okHttpClient.setSslSocketFactory(createSSLContext().getSocketFactory());
         okHttpClient.setHostnameVerifier(new HostnameVerifier() {
 
@@ -74,13 +65,6 @@ public class SSLHttpStack extends HurlStack {
                 return true;
             }
         });
-
-        mOkUrlFactory = new OkUrlFactory(okHttpClient);
-    }
-
-    @Override
-    public HttpURLConnection createConnection(URL url) throws IOException {
-        return mOkUrlFactory.open(url);
     }
 
     /**
@@ -0,0 +1,42 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Implemented by requests that write their body straight to the connection instead of returning
+ * it as a byte array from {@link com.android.volley.Request#getBody()}. Used by {@link OkHttpStack}
+ * for POST, PUT and PATCH requests.
+ */
+public interface StreamingBodyRequest {
+
+    /**
+     * Returns the size of the body in bytes, or -1 if unknown in which case the body is sent
+     * with chunked transfer encoding.
+     */
+    long getBodyLength();
+
+    /**
+     * Writes the body. Called from a worker thread, may be called again when the request is retried.
+     *
+     * @param out Stream to the connection, closed by the caller
+     */
+    void writeBody(OutputStream out) throws IOException;
+}
@@ -0,0 +1,264 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Network;
+import com.android.volley.NetworkError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.NoConnectionError;
+import com.android.volley.Request;
+import com.android.volley.RetryPolicy;
+import com.android.volley.ServerError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.ByteArrayPool;
+import com.android.volley.toolbox.HttpStack;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Volley network that passes the response body of a {@link StreamingRequest} to the request as a
+ * stream, so large bodies never have to fit in memory. Every other request goes through Volley's
+ * {@link BasicNetwork} as usual.
+ */
+public class StreamingNetwork implements Network {
+
+    private static final String TAG = "StreamingNetwork";
+
+    /**
+     * Same pool size as {@link BasicNetwork}.
+     */
+    private static final int DEFAULT_POOL_SIZE = 4096;
+
+    /**
+     * Size of the buffer a streaming body is read with.
+     */
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private final HttpStack mHttpStack;
+
+    private final ByteArrayPool mPool;
+
+    private final BasicNetwork mBasicNetwork;
+
+    /**
+     * Records a trace of every request, null if not used.
+     */
+    private volatile RequestTracer mRequestTracer;
+
+    public StreamingNetwork(HttpStack httpStack) {
+        this(httpStack, new ByteArrayPool(DEFAULT_POOL_SIZE));
+    }
+
+    public StreamingNetwork(HttpStack httpStack, ByteArrayPool pool) {
+        mHttpStack = httpStack;
+        mPool = pool;
+        mBasicNetwork = new BasicNetwork(httpStack, pool);
+    }
+
+    /**
+     * Records every request in the tracer, null to stop recording.
+     */
+    public void setRequestTracer(RequestTracer requestTracer) {
+        mRequestTracer = requestTracer;
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        RequestTracer tracer = mRequestTracer;
+        if(tracer == null) {
+            return performUntracedRequest(request);
+        }
+
+        long startMillis = System.currentTimeMillis();
+        long start = SystemClock.elapsedRealtime();
+        try {
+            NetworkResponse response = performUntracedRequest(request);
+            tracer.record(request, response.statusCode, getBodyLength(request, response), startMillis,
+                    SystemClock.elapsedRealtime() - start, response.networkTimeMs, getCacheResult(request, response),
+                    null);
+            return response;
+        } catch (VolleyError e) {
+            NetworkResponse response = e.networkResponse;
+            tracer.record(request, response != null ? response.statusCode : 0,
+                    response != null && response.data != null ? response.data.length : -1, startMillis,
+                    SystemClock.elapsedRealtime() - start, e.getNetworkTimeMs(), getCacheResult(request, null), e);
+            throw e;
+        }
+    }
+
+    private NetworkResponse performUntracedRequest(Request<?> request) throws VolleyError {
+        if(!(request instanceof StreamingRequest)) {
+            return mBasicNetwork.performRequest(request);
+        }
+
+        while(true) {
+            HttpResponse httpResponse = null;
+            long attemptStart = SystemClock.elapsedRealtime();
+            try {
+                httpResponse = mHttpStack.performRequest(request, Collections.<String, String>emptyMap());
+
+                int statusCode = httpResponse.getStatusLine().getStatusCode();
+                Map<String, String> headers = convertHeaders(httpResponse.getAllHeaders());
+                HttpEntity entity = httpResponse.getEntity();
+
+                if((statusCode < HttpStatus.SC_OK || statusCode > 299) && !isRangeNotSatisfiable(request, statusCode)) {
+                    byte[] data = new byte[0];
+                    if(entity != null) {
+                        try {
+                            data = EntityUtils.toByteArray(entity);
+                        } finally {
+                            // Releases the permits OkHttpStack holds until the body is consumed.
+                            entity.consumeContent();
+                        }
+                    }
+                    NetworkResponse errorResponse = new NetworkResponse(statusCode, data, headers, false,
+                            SystemClock.elapsedRealtime() - attemptStart);
+
+                    if(statusCode == HttpStatus.SC_UNAUTHORIZED || statusCode == HttpStatus.SC_FORBIDDEN) {
+                        throw new AuthFailureError(errorResponse);
+                    }
+                    throw new ServerError(errorResponse);
+                }
+
+                if(entity != null) {
+                    readStream((StreamingRequest) request, statusCode, headers, entity);
+                }
+
+                return new NetworkResponse(statusCode, new byte[0], headers, false,
+                        SystemClock.elapsedRealtime() - attemptStart);
+            } catch (SocketTimeoutException e) {
+                attemptRetry(request, "socket", new TimeoutError());
+            } catch (MalformedURLException e) {
+                throw new RuntimeException("Bad URL " + request.getUrl(), e);
+            } catch (IOException e) {
+                if(httpResponse == null) {
+                    throw new NoConnectionError(e);
+                }
+
+                // The connection dropped while reading the body, the request may resume on retry.
+                attemptRetry(request, "stream", new NetworkError(e));
+            }
+        }
+    }
+
+    private void readStream(StreamingRequest request, int statusCode, Map<String, String> headers,
+                            HttpEntity entity) throws IOException {
+        byte[] buffer = mPool.getBuf(STREAM_BUFFER_SIZE);
+        InputStream body = entity.getContent();
+        try {
+            request.onResponseStream(statusCode, headers, body, buffer);
+        } finally {
+            mPool.returnBuf(buffer);
+            try {
+                body.close();
+            } catch (IOException e) {
+                Log.v(TAG, "Error occurred when closing the response stream");
+            } finally {
+                // Releases the permits OkHttpStack holds until the body is consumed, even if the
+                // stream of a cancelled or disconnected response fails to close.
+                try {
+                    entity.consumeContent();
+                } catch (IOException e) {
+                    Log.v(TAG, "Error occurred when consuming the response entity");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true for a 416 answer to a request with a Range header, which is handed to the
+     * request: the range may only start where the resource already ends.
+     */
+    private static boolean isRangeNotSatisfiable(Request<?> request, int statusCode) throws AuthFailureError {
+        return statusCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE && request.getHeaders().containsKey("Range");
+    }
+
+    private static void attemptRetry(Request<?> request, String reason, VolleyError error) throws VolleyError {
+        if(request.isCanceled()) {
+            throw error;
+        }
+
+        RetryPolicy retryPolicy = request.getRetryPolicy();
+        int oldTimeout = request.getTimeoutMs();
+
+        try {
+            retryPolicy.retry(error);
+        } catch (VolleyError e) {
+            request.addMarker(String.format("%s-timeout-giveup [timeout=%s]", reason, oldTimeout));
+            throw e;
+        }
+
+        request.addMarker(String.format("%s-retry [timeout=%s]", reason, oldTimeout));
+    }
+
+    /**
+     * Returns the size of the body, from the Content-Length header for a body that was streamed.
+     */
+    private static long getBodyLength(Request<?> request, NetworkResponse response) {
+        if(!(request instanceof StreamingRequest) || response.data.length > 0) {
+            return response.data.length;
+        }
+
+        String contentLength = response.headers != null ? response.headers.get("Content-Length") : null;
+        if(contentLength == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int getCacheResult(Request<?> request, NetworkResponse response) {
+        if(request.getCacheEntry() == null) {
+            return request.shouldCache() ? RequestTracer.CACHE_MISS : RequestTracer.CACHE_NONE;
+        }
+
+        return response != null && response.notModified
+                ? RequestTracer.CACHE_REVALIDATED : RequestTracer.CACHE_EXPIRED;
+    }
+
+    private static Map<String, String> convertHeaders(Header[] headers) {
+        Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for(Header header : headers) {
+            result.put(header.getName(), header.getValue());
+        }
+
+        return result;
+    }
+}
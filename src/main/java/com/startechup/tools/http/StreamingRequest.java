@@ -0,0 +1,43 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Implemented by requests that read their response body as a stream instead of receiving it
+ * as a byte array in {@link com.android.volley.NetworkResponse#data}. The {@link StreamingNetwork}
+ * hands the body to the request on the network thread, the {@link com.android.volley.NetworkResponse}
+ * passed to {@code parseNetworkResponse()} afterwards has an empty body.
+ */
+public interface StreamingRequest {
+
+    /**
+     * Reads the body of a successful response. Called from a worker thread.
+     *
+     * @param statusCode HTTP status code of the response
+     * @param headers Response headers
+     * @param body Response body, closed by the caller
+     * @param buffer Pooled buffer to read the body with, must not be kept
+     * @throws IOException If reading the body failed, the request is retried by its retry policy
+     */
+    void onResponseStream(int statusCode, Map<String, String> headers, InputStream body, byte[] buffer)
+            throws IOException;
+}
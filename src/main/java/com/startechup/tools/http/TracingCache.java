@@ -0,0 +1,87 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.SystemClock;
+
+import com.android.volley.Cache;
+
+/**
+ * Cache that records the responses served without going to the network in a
+ * {@link RequestTracer}. Requests that do reach the network are recorded by the
+ * {@link StreamingNetwork}.
+ */
+class TracingCache implements Cache {
+
+    private final Cache mCache;
+
+    private final RequestTracer mTracer;
+
+    TracingCache(Cache cache, RequestTracer tracer) {
+        mCache = cache;
+        mTracer = tracer;
+    }
+
+    /**
+     * Returns the cache this one records for, lookups on it are not traced.
+     */
+    Cache getWrappedCache() {
+        return mCache;
+    }
+
+    @Override
+    public Entry get(String key) {
+        long startMillis = System.currentTimeMillis();
+        long start = SystemClock.elapsedRealtime();
+        Entry entry = mCache.get(key);
+
+        // Expired entries go to the network, which records them there.
+        if(entry != null && !entry.isExpired()) {
+            mTracer.recordCacheHit(key, entry.data != null ? entry.data.length : -1, startMillis,
+                    SystemClock.elapsedRealtime() - start,
+                    entry.refreshNeeded() ? RequestTracer.CACHE_SOFT_HIT : RequestTracer.CACHE_HIT);
+        }
+
+        return entry;
+    }
+
+    @Override
+    public void put(String key, Entry entry) {
+        mCache.put(key, entry);
+    }
+
+    @Override
+    public void initialize() {
+        mCache.initialize();
+    }
+
+    @Override
+    public void invalidate(String key, boolean fullExpire) {
+        mCache.invalidate(key, fullExpire);
+    }
+
+    @Override
+    public void remove(String key) {
+        mCache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        mCache.clear();
+    }
+}
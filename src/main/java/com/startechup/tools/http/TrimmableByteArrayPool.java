@@ -0,0 +1,161 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import com.android.volley.toolbox.ByteArrayPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * {@link ByteArrayPool} that shrinks when the system runs low on memory and counts its hits.
+ * Volley's pool keeps its private buffers whatever happens, this one has the same behaviour
+ * otherwise: buffers are handed out smallest first and the least recently used are dropped once
+ * the pool is over its size limit.
+ */
+public class TrimmableByteArrayPool extends ByteArrayPool implements MemoryTrimmable {
+
+    private static final Comparator<byte[]> BUF_COMPARATOR = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] lhs, byte[] rhs) {
+            return lhs.length - rhs.length;
+        }
+    };
+
+    private final List<byte[]> mBuffersByLastUse = new LinkedList<>();
+
+    private final List<byte[]> mBuffersBySize = new ArrayList<>(64);
+
+    private final int mSizeLimit;
+
+    private int mCurrentSize;
+
+    private long mHitCount;
+
+    private long mMissCount;
+
+    /**
+     * Bytes dropped because of memory pressure
+     */
+    private long mTrimmedBytes;
+
+    /**
+     * Public constructor
+     *
+     * @param sizeLimit Maximum number of bytes kept in the pool
+     */
+    public TrimmableByteArrayPool(int sizeLimit) {
+        super(0);
+
+        mSizeLimit = sizeLimit;
+    }
+
+    @Override
+    public synchronized byte[] getBuf(int len) {
+        for(int i = 0; i < mBuffersBySize.size(); i++) {
+            byte[] buf = mBuffersBySize.get(i);
+            if(buf.length >= len) {
+                mCurrentSize -= buf.length;
+                mBuffersBySize.remove(i);
+                mBuffersByLastUse.remove(buf);
+                mHitCount++;
+                return buf;
+            }
+        }
+
+        mMissCount++;
+        return new byte[len];
+    }
+
+    @Override
+    public synchronized void returnBuf(byte[] buf) {
+        if(buf == null || buf.length > mSizeLimit) {
+            return;
+        }
+
+        mBuffersByLastUse.add(buf);
+        int position = Collections.binarySearch(mBuffersBySize, buf, BUF_COMPARATOR);
+        if(position < 0) {
+            position = -position - 1;
+        }
+        mBuffersBySize.add(position, buf);
+        mCurrentSize += buf.length;
+
+        trimToSize(mSizeLimit);
+    }
+
+    @Override
+    public synchronized long trimMemory(int level) {
+        int released = trimToSize((int) (mSizeLimit * MemoryTrimmer.getRetainedFraction(level)));
+        mTrimmedBytes += released;
+
+        return released;
+    }
+
+    public int getSizeLimit() {
+        return mSizeLimit;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the pool.
+     */
+    public synchronized int getPooledBytes() {
+        return mCurrentSize;
+    }
+
+    /**
+     * Returns how many buffers were taken from the pool instead of being allocated.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the share of buffers taken from the pool, 0 if none was asked for yet.
+     */
+    public synchronized float getHitRate() {
+        long total = mHitCount + mMissCount;
+        return total > 0 ? (float) mHitCount / total : 0f;
+    }
+
+    /**
+     * Returns the number of bytes dropped so far because of memory pressure.
+     */
+    public synchronized long getTrimmedBytes() {
+        return mTrimmedBytes;
+    }
+
+    private int trimToSize(int size) {
+        int released = 0;
+        while(mCurrentSize > size) {
+            byte[] buf = mBuffersByLastUse.remove(0);
+            mBuffersBySize.remove(buf);
+            mCurrentSize -= buf.length;
+            released += buf.length;
+        }
+
+        return released;
+    }
+}
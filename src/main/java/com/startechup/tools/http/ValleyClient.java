@@ -0,0 +1,1608 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.Network;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.ResponseDelivery;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HttpStack;
+import com.android.volley.toolbox.StringRequest;
+import com.android.volley.toolbox.Volley;
+import com.startechup.tools.http.body.FormBody;
+import com.startechup.tools.http.body.JsonBody;
+import com.startechup.tools.http.body.RequestBody;
+import com.startechup.tools.http.codec.BinaryCodec;
+import com.startechup.tools.http.codec.CborCodec;
+import com.startechup.tools.http.codec.ProtobufCodec;
+import com.startechup.tools.http.custom.BodyRequest;
+import com.startechup.tools.http.custom.DownloadRequest;
+import com.startechup.tools.http.custom.ImageUploadRequest;
+import com.startechup.tools.http.custom.JsonArrayStreamRequest;
+import com.startechup.tools.http.custom.MultipartUploadRequest;
+import com.startechup.tools.http.custom.PrefetchRequest;
+import com.startechup.tools.http.custom.RawRequest;
+import com.startechup.tools.http.custom.TypedRequest;
+import com.startechup.tools.http.image.ImageLoader;
+import com.startechup.tools.http.image.OnImageListener;
+import com.startechup.tools.http.outbox.Outbox;
+import com.startechup.tools.http.push.EventChannel;
+import com.startechup.tools.http.push.OnEventListener;
+import com.startechup.tools.http.push.SseChannel;
+import com.startechup.tools.http.push.WebSocketChannel;
+import com.startechup.tools.http.upload.ResumableUpload;
+import com.startechup.tools.http.url.UrlBuilder;
+import com.startechup.tools.http.url.UrlTemplate;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Client for one backend, with its own request queue, transport, access token and base URL.
+ * Several clients can be used at the same time, e.g. for backends with different certificates or
+ * tokens. A client is immutable once built apart from its access token, and safe to use from any
+ * thread. {@link NetworkingValley}'s static methods use a default client.
+ *
+ * <pre>
+ * ValleyClient billing = new ValleyClient.Builder(context, "https://billing.example.com/")
+ *         .loadCerts(clientStore, keyStore)
+ *         .loadAccessToken(billingToken)
+ *         .build();
+ *
+ * billing.addRequestQueue(billing.constructGetRequest(url, listener));
+ * </pre>
+ */
+public class ValleyClient {
+
+    /**
+     * Identifier for debugging or logging.
+     */
+    private static final String TAG = "ValleyClient";
+
+    /**
+     * Directory inside the app's cache directory where Volley caches responses
+     */
+    private static final String DEFAULT_CACHE_DIR = "volley";
+
+    /**
+     * Number of network dispatcher threads, same as Volley's default
+     */
+    private static final int DEFAULT_NETWORK_THREAD_POOL_SIZE = 4;
+
+    /**
+     * Enough to keep a streaming buffer for each network thread, the pool shrinks when memory
+     * runs low.
+     */
+    private static final int DEFAULT_BYTE_POOL_SIZE = 32 * 1024;
+
+    /**
+     * Access token sent in the Authorization header
+     */
+    private volatile String mAccessToken;
+
+    /**
+     * Base URL for API endpoint
+     */
+    private final String mBaseUrl;
+
+    /**
+     * Transport of this client
+     */
+    private final OkHttpStack mHttpStack;
+
+    /**
+     * Volley's request queue
+     */
+    private final RequestQueue mRequestQueue;
+
+    /**
+     * Delivers responses on the executor chosen for each request
+     */
+    private final RoutingResponseDelivery mResponseDelivery;
+
+    /**
+     * Limits the request rate per host and path, null if not limited
+     */
+    private final RateLimiter mRateLimiter;
+
+    /**
+     * Keeps writes until they reach the API, null if not used
+     */
+    private final Outbox mOutbox;
+
+    /**
+     * Buffers shared by the network threads
+     */
+    private final TrimmableByteArrayPool mBytePool;
+
+    /**
+     * Receives the system's memory signals, null if not registered
+     */
+    private final MemoryTrimmer mMemoryTrimmer;
+
+    private final Context mContext;
+
+    /**
+     * Estimates the link quality from completed requests, null if not used
+     */
+    private final NetworkQualityEstimator mQualityEstimator;
+
+    /**
+     * Keeps a trace of the last requests, null if not used
+     */
+    private final RequestTracer mRequestTracer;
+
+    /**
+     * Decides when GETs are hedged, null if they are not
+     */
+    private final HedgingPolicy mHedgingPolicy;
+
+    /**
+     * Warms the cache while the queue is idle
+     */
+    private final Prefetcher mPrefetcher;
+
+    /**
+     * Directory of the image loader's disk cache
+     */
+    private final File mImageCacheDir;
+
+    /**
+     * Created on first use
+     */
+    private ImageLoader mImageLoader;
+
+    /**
+     * Push channels of this client, closed by {@link #stop()}
+     */
+    private final Set<EventChannel> mChannels =
+            Collections.newSetFromMap(new WeakHashMap<EventChannel, Boolean>());
+
+    ValleyClient(Builder builder) {
+        setAccessToken(builder.mAccessToken);
+        mBaseUrl = builder.mBaseUrl;
+
+        mHttpStack = builder.mSSLHttpStack != null ? builder.mSSLHttpStack : new OkHttpStack();
+        mHttpStack.setHttp2Enabled(builder.mHttp2Enabled);
+        mHttpStack.setMaxStreamsPerHost(builder.mMaxStreamsPerHost);
+        mQualityEstimator = builder.mQualityEstimator;
+        mHttpStack.setNetworkQualityEstimator(mQualityEstimator);
+
+        mBytePool = new TrimmableByteArrayPool(DEFAULT_BYTE_POOL_SIZE);
+
+        // Hedges sit below the authenticator, so a refreshed token is used by both attempts.
+        HttpStack httpStack = mHttpStack;
+        if(builder.mHedgingPolicy != null) {
+            httpStack = new HedgingHttpStack(mHttpStack, builder.mHedgingPolicy);
+        }
+        mHedgingPolicy = builder.mHedgingPolicy;
+
+        StreamingNetwork network;
+        if(builder.mAuthenticator != null) {
+            network = new StreamingNetwork(new AuthenticatingHttpStack(httpStack, builder.mAuthenticator, this),
+                    mBytePool);
+            builder.mAuthenticator.attach(network);
+        } else {
+            network = new StreamingNetwork(httpStack, mBytePool);
+        }
+        mRequestTracer = builder.mRequestTracer;
+        network.setRequestTracer(mRequestTracer);
+
+        // Clients must not share a cache directory, DiskBasedCache does not expect other writers.
+        String cacheDir = builder.mCacheName != null ? DEFAULT_CACHE_DIR + "-" + builder.mCacheName : DEFAULT_CACHE_DIR;
+        mImageCacheDir = new File(builder.mContext.getCacheDir(), cacheDir + "-images");
+
+        mResponseDelivery = new RoutingResponseDelivery(builder.mDeliveryExecutor);
+        mContext = builder.mContext.getApplicationContext();
+        mPrefetcher = new Prefetcher(this, mContext);
+        // With an estimator the network threads are sized for the best link, its permits hold them
+        // back on worse ones.
+        int threadPoolSize = mQualityEstimator != null
+                ? NetworkQuality.EXCELLENT.getMaxConcurrentRequests() : DEFAULT_NETWORK_THREAD_POOL_SIZE;
+        mRequestQueue = newRequestQueue(builder.mContext, cacheDir, network, mResponseDelivery, threadPoolSize,
+                mRequestTracer, mPrefetcher);
+        mPrefetcher.attach(mRequestQueue);
+
+        mRateLimiter = builder.mRateLimiter;
+        if(mRateLimiter != null) {
+            mRateLimiter.attach(mRequestQueue, mResponseDelivery);
+        }
+
+        mOutbox = builder.mOutbox;
+        if(mOutbox != null) {
+            mOutbox.setClient(this);
+            mOutbox.start();
+        }
+
+        if(builder.mMemoryTrimEnabled) {
+            mMemoryTrimmer = new MemoryTrimmer();
+            mMemoryTrimmer.register(mBytePool);
+            mMemoryTrimmer.register(mHttpStack);
+            mContext.registerComponentCallbacks(mMemoryTrimmer);
+        } else {
+            mMemoryTrimmer = null;
+        }
+    }
+
+    public static class Builder {
+
+        private Context mContext;
+        private String mAccessToken = "";
+        private String mBaseUrl;
+        private String mCacheName;
+        private Executor mDeliveryExecutor = MainThreadExecutor.getInstance();
+        private SSLHttpStack mSSLHttpStack;
+        private boolean mHttp2Enabled = true;
+        private int mMaxStreamsPerHost = OkHttpStack.DEFAULT_MAX_STREAMS_PER_HOST;
+        private RateLimiter mRateLimiter;
+        private Outbox mOutbox;
+        private Authenticator mAuthenticator;
+        private boolean mMemoryTrimEnabled = true;
+        private NetworkQualityEstimator mQualityEstimator;
+        private RequestTracer mRequestTracer;
+        private HedgingPolicy mHedgingPolicy;
+
+        public Builder(Context context) {
+            mContext = context;
+        }
+
+        public Builder(Context context, String baseUrl) {
+            this(context);
+
+            mBaseUrl = baseUrl;
+        }
+
+        public Builder loadBaseUrl(String baseUrl) {
+            mBaseUrl = baseUrl;
+
+            return this;
+        }
+
+        public Builder loadSSLHttpStack(SSLHttpStack sslHttpStack) {
+            mSSLHttpStack = sslHttpStack;
+
+            return this;
+        }
+
+        public Builder loadCerts(InputStream inputClientStore, InputStream inputKeyStore) {
+            mSSLHttpStack = new SSLHttpStack(inputClientStore, inputKeyStore);
+
+            return this;
+        }
+
+        public Builder loadAccessToken(String accessToken) {
+            mAccessToken = accessToken;
+
+            return this;
+        }
+
+        /**
+         * Gives the client its own response cache. Needed when more than one client is built,
+         * clients without a name share the default cache directory.
+         *
+         * @param cacheName Name of the cache, e.g. the name of the backend
+         */
+        public Builder setCacheName(String cacheName) {
+            mCacheName = cacheName;
+
+            return this;
+        }
+
+        /**
+         * Offers HTTP/2 during the TLS handshake so concurrent requests to the same host share one
+         * connection. Enabled by default, servers without HTTP/2 fall back to HTTP/1.1.
+         *
+         * @param http2Enabled False to always use HTTP/1.1
+         */
+        public Builder setHttp2Enabled(boolean http2Enabled) {
+            mHttp2Enabled = http2Enabled;
+
+            return this;
+        }
+
+        /**
+         * Limits how many requests may run at the same time against a single host.
+         *
+         * @param maxStreamsPerHost Maximum concurrent requests per host, 0 for unlimited
+         */
+        public Builder setMaxStreamsPerHost(int maxStreamsPerHost) {
+            mMaxStreamsPerHost = maxStreamsPerHost;
+
+            return this;
+        }
+
+        /**
+         * Sets the executor responses are delivered on, the main thread by default. Use
+         * {@link DirectExecutor#getInstance()} to deliver on the network thread, or a pool of your own.
+         *
+         * @param deliveryExecutor Executor for the listeners of every request
+         */
+        public Builder setDeliveryExecutor(Executor deliveryExecutor) {
+            mDeliveryExecutor = deliveryExecutor;
+
+            return this;
+        }
+
+        /**
+         * Sends every request through the given rate limiter before it reaches the network. A rate
+         * limiter belongs to one client.
+         *
+         * @param rateLimiter Limits per host and per path
+         */
+        public Builder setRateLimiter(RateLimiter rateLimiter) {
+            mRateLimiter = rateLimiter;
+
+            return this;
+        }
+
+        /**
+         * Keeps requests added with {@link ValleyClient#addOutboxRequest(Request, String)} on disk
+         * until they reach the API. The outbox is started when built and belongs to one client.
+         *
+         * @param outbox Outbox for the app's writes
+         */
+        public Builder setOutbox(Outbox outbox) {
+            mOutbox = outbox;
+
+            return this;
+        }
+
+        /**
+         * Refreshes the access token once when requests fail with 401 Unauthorized, and sends the
+         * failed requests again with the new token.
+         *
+         * @param authenticator Gets a new access token
+         */
+        public Builder setAuthenticator(Authenticator authenticator) {
+            mAuthenticator = authenticator;
+
+            return this;
+        }
+
+        /**
+         * Shrinks the client's pools when the system asks apps to release memory. On by default.
+         */
+        public Builder setMemoryTrimEnabled(boolean memoryTrimEnabled) {
+            mMemoryTrimEnabled = memoryTrimEnabled;
+
+            return this;
+        }
+
+        /**
+         * Adapts the client to the link quality measured by the estimator: how many requests run
+         * at once, the timeout of new requests and the compression of uploaded images. Not used
+         * by default.
+         */
+        public Builder setNetworkQualityEstimator(NetworkQualityEstimator qualityEstimator) {
+            mQualityEstimator = qualityEstimator;
+
+            return this;
+        }
+
+        /**
+         * Records a trace of every request, including the ones answered from the cache, e.g. in
+         * support builds. Not used by default.
+         */
+        public Builder setRequestTracer(RequestTracer requestTracer) {
+            mRequestTracer = requestTracer;
+
+            return this;
+        }
+
+        /**
+         * Sends a GET a second time on another connection when it takes longer than usual, see
+         * {@link HedgingHttpStack}. Not used by default.
+         */
+        public Builder setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+            mHedgingPolicy = hedgingPolicy;
+
+            return this;
+        }
+
+        public ValleyClient build() {
+            return new ValleyClient(this);
+        }
+    }
+
+    /**
+     * Same as {@link Volley#newRequestQueue(Context, com.android.volley.toolbox.HttpStack)} but
+     * with our own network, a {@link StreamingNetwork} so {@link StreamingRequest}s can read their
+     * body as a stream, and with a delivery that is not tied to the main thread. Every request
+     * added to the queue is reported to the prefetcher, so prefetches make way for it.
+     */
+    private static RequestQueue newRequestQueue(Context context, String cacheDirName, Network network,
+                                                ResponseDelivery delivery, int threadPoolSize,
+                                                RequestTracer tracer, final Prefetcher prefetcher) {
+        File cacheDir = new File(context.getCacheDir(), cacheDirName);
+
+        Cache cache = new DiskBasedCache(cacheDir);
+        if(tracer != null) {
+            cache = new TracingCache(cache, tracer);
+        }
+
+        RequestQueue queue = new RequestQueue(cache, network, threadPoolSize, delivery) {
+            @Override
+            public <T> Request<T> add(Request<T> request) {
+                prefetcher.onRequestAdded(request);
+                return super.add(request);
+            }
+        };
+        queue.start();
+
+        return queue;
+    }
+
+    public String getAccessToken() {
+        return mAccessToken;
+    }
+
+    /**
+     * Replaces the access token, requests sent from now on use the new one.
+     */
+    public void setAccessToken(String accessToken) {
+        mAccessToken = accessToken;
+    }
+
+    public String getBaseUrl() {
+        return mBaseUrl;
+    }
+
+    public RequestQueue getRequestQueue() {
+        return mRequestQueue;
+    }
+
+    public OkHttpStack getHttpStack() {
+        return mHttpStack;
+    }
+
+    /**
+     * Returns the pool of buffers used by the network threads, with its hit rate and the bytes
+     * released under memory pressure.
+     */
+    public TrimmableByteArrayPool getBytePool() {
+        return mBytePool;
+    }
+
+    /**
+     * Returns the receiver of the system's memory signals, to add caches that should shrink along
+     * with the client's. Null if disabled with {@link Builder#setMemoryTrimEnabled(boolean)}.
+     */
+    public MemoryTrimmer getMemoryTrimmer() {
+        return mMemoryTrimmer;
+    }
+
+    /**
+     * Returns the estimator set with {@link Builder#setNetworkQualityEstimator(NetworkQualityEstimator)},
+     * null if none.
+     */
+    public NetworkQualityEstimator getNetworkQualityEstimator() {
+        return mQualityEstimator;
+    }
+
+    /**
+     * Returns the tracer set with {@link Builder#setRequestTracer(RequestTracer)}, null if none.
+     */
+    public RequestTracer getRequestTracer() {
+        return mRequestTracer;
+    }
+
+    /**
+     * Returns the policy set with {@link Builder#setHedgingPolicy(HedgingPolicy)}, with the number
+     * of hedges sent and won, null if none.
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return mHedgingPolicy;
+    }
+
+    /**
+     * Returns the image loader of this client, created on first use. Its memory cache and bitmap
+     * pool shrink along with the client's other caches.
+     */
+    public synchronized ImageLoader getImageLoader() {
+        if(mImageLoader == null) {
+            mImageLoader = new ImageLoader(this, mImageCacheDir, mResponseDelivery.getDefaultExecutor());
+            if(mMemoryTrimmer != null) {
+                mMemoryTrimmer.register(mImageLoader.getMemoryCache());
+                mMemoryTrimmer.register(mImageLoader.getBitmapPool());
+            }
+        }
+
+        return mImageLoader;
+    }
+
+    /**
+     * Returns the prefetcher of this client, to cancel the waiting prefetches or change how long
+     * prefetched responses stay fresh.
+     */
+    public Prefetcher getPrefetcher() {
+        return mPrefetcher;
+    }
+
+    /**
+     * Returns the quality of the link, {@link NetworkQuality#UNKNOWN} without an estimator.
+     */
+    public NetworkQuality getNetworkQuality() {
+        return mQualityEstimator != null ? mQualityEstimator.getQuality() : NetworkQuality.UNKNOWN;
+    }
+
+    /**
+     * Stops the request queue and the outbox of this client. Requests added afterwards are never
+     * sent.
+     */
+    public void stop() {
+        if(mOutbox != null) {
+            mOutbox.stop();
+        }
+        if(mMemoryTrimmer != null) {
+            mContext.unregisterComponentCallbacks(mMemoryTrimmer);
+        }
+        mPrefetcher.cancelAll();
+        closeChannels();
+        mRequestQueue.stop();
+    }
+
+    /**
+     * Returns the URL of a path template relative to the base URL, e.g.
+     * {@code url("users/{id}/posts", userId)}. Values are encoded once, pass them unencoded.
+     *
+     * @param template Template such as "users/{id}/posts", parsed once and cached
+     * @param values One value per variable, in the order they appear
+     */
+    public String url(String template, Object... values) {
+        return UrlTemplate.compile(template).expand(mBaseUrl, values);
+    }
+
+    /**
+     * Same as {@link #url(String, Object...)}, returning a builder to add query parameters.
+     */
+    public UrlBuilder newUrl(String template, Object... values) {
+        return UrlTemplate.compile(template).newBuilder(mBaseUrl, values);
+    }
+
+    /**
+     * Fetches a URL into the response cache once the client is idle on an unmetered network, so a
+     * later GET of the same URL is answered from the cache. No listener is called. Prefetches are
+     * cancelled when a request is added and tried again once the client is idle.
+     *
+     * @param template Template such as "users/{id}/posts", or an absolute URL
+     * @param values One value per variable, in the order they appear
+     */
+    public void prefetch(String template, Object... values) {
+        mPrefetcher.prefetch(url(template, values));
+    }
+
+    /**
+     * Loads an image decoded to at least the given size, see
+     * {@link ImageLoader#load(String, int, int, OnImageListener)}.
+     *
+     * @param url URL of the image
+     * @param maxWidth Width the image is displayed at, 0 for any
+     * @param maxHeight Height the image is displayed at, 0 for any
+     * @param listener Listener called with the image or the error
+     * @return Handle to cancel the load, e.g. when the view is recycled
+     */
+    public ImageLoader.Handle loadImage(String url, int maxWidth, int maxHeight, OnImageListener listener) {
+        return getImageLoader().load(url, maxWidth, maxHeight, listener);
+    }
+
+    /**
+     * Creates a Server-Sent Events channel on this client's transport, in place of polling an
+     * endpoint. Call {@link EventChannel#connect()} to open it; it reconnects with a backoff until
+     * {@link EventChannel#close()}.
+     *
+     * @param url URL of the event stream
+     * @param listener Listener for the events, called on the default delivery executor
+     * @return Channel that is not connected yet
+     */
+    public SseChannel newEventSource(String url, OnEventListener listener) {
+        SseChannel channel = new SseChannel(this, mContext, url, mResponseDelivery.getDefaultExecutor(), listener);
+        synchronized (mChannels) {
+            mChannels.add(channel);
+        }
+
+        return channel;
+    }
+
+    /**
+     * Creates a WebSocket channel on this client's transport. Call {@link EventChannel#connect()}
+     * to open it; it reconnects with a backoff until {@link EventChannel#close()}.
+     *
+     * @param url URL of the WebSocket, ws:// or wss://
+     * @param listener Listener for the messages, called on the default delivery executor
+     * @return Channel that is not connected yet
+     */
+    public WebSocketChannel newWebSocket(String url, OnEventListener listener) {
+        WebSocketChannel channel = new WebSocketChannel(this, mContext, url, mResponseDelivery.getDefaultExecutor(),
+                listener);
+        synchronized (mChannels) {
+            mChannels.add(channel);
+        }
+
+        return channel;
+    }
+
+    private void closeChannels() {
+        List<EventChannel> channels;
+        synchronized (mChannels) {
+            channels = new ArrayList<>(mChannels);
+            mChannels.clear();
+        }
+
+        for(EventChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Constructs the request sent by {@link Prefetcher}, with this client's headers.
+     *
+     * @param url URL to prefetch
+     * @param maxAgeMs How long the response is fresh if it has no cache headers
+     */
+    PrefetchRequest constructPrefetchRequest(String url, long maxAgeMs) {
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Content-Type");
+
+        PrefetchRequest request = new PrefetchRequest(url, headers, maxAgeMs);
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Performs and add the network request with tag to identify this network request.
+     *
+     * @param request Network request
+     * @param tag Tag identifier for this request
+     */
+    public <T> void addRequestQueue(Request<T> request, String tag) {
+        // Set the default tag to our request
+        request.setTag(tag);
+
+        // Add our request to the queue
+        enqueue(request);
+    }
+
+    /**
+     * Performs and add the network request.
+     *
+     * @param request Network request
+     */
+    public <T> void addRequestQueue(Request<T> request) {
+        // Add our request to the queue
+        enqueue(request);
+    }
+
+    /**
+     * Performs and add the network request, its response is delivered on the given executor
+     * instead of the default one.
+     *
+     * @param request Network request
+     * @param deliveryExecutor Executor the request's listeners are called on
+     */
+    public <T> void addRequestQueue(Request<T> request, Executor deliveryExecutor) {
+        mResponseDelivery.setExecutor(request, deliveryExecutor);
+
+        // Add our request to the queue
+        enqueue(request);
+    }
+
+    /**
+     * Adds a POST, PUT, PATCH or DELETE request to the outbox set on the {@link Builder}. It is
+     * saved to disk and sent once the device is connected, even after the app was restarted.
+     * Results are reported to the outbox's {@link com.startechup.tools.http.outbox.OnOutboxListener},
+     * the request's own listeners are not called.
+     *
+     * @param request Network request, e.g. from {@link #constructPostRequest(String, HashMap, OnAPIListener)}
+     * @param idempotencyKey Identifies the request, a request with a key already seen is dropped
+     */
+    public void addOutboxRequest(Request<?> request, String idempotencyKey) {
+        if(mOutbox == null) {
+            throw new IllegalStateException("No outbox set, see Builder.setOutbox()");
+        }
+
+        mOutbox.add(request, idempotencyKey);
+    }
+
+    /**
+     * Adds the request to the queue, through the rate limiter if one is set.
+     */
+    private void enqueue(Request<?> request) {
+        if(mRateLimiter != null) {
+            mRateLimiter.add(request);
+        } else {
+            mRequestQueue.add(request);
+        }
+    }
+
+    /**
+     * Constructs a GET network request that returns String object as a response.
+     *
+     * @param url URL of the API
+     * @param apiListener Listener whether network request is successful or not.
+     * @return String object response from the API
+     */
+    public StringRequest constructGetRequest(String url,
+                                             final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.GET,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)
+        ){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.i(TAG, "Headers: " + getHeaderParams().toString());
+                return getHeaderParams();
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a GET network request that decodes the response into a model object. The body is
+     * decoded on the network thread, the listener receives the finished object.
+     *
+     * @param url URL of the API
+     * @param converter Decodes the response body, e.g. a {@link JsonStreamConverter}
+     * @param resultListener Listener whether network request is successful or not
+     * @return Request delivering the decoded response
+     */
+    public <T> TypedRequest<T> constructGetRequest(String url,
+                                                   ResponseConverter<T> converter,
+                                                   final OnResultListener<T> resultListener) {
+        TypedRequest<T> request = new TypedRequest<>(
+                Request.Method.GET,
+                url,
+                getHeaderParams(converter),
+                null,
+                converter,
+                getResultListener(resultListener),
+                getErrorListener(resultListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a GET network request for a JSON array, delivering its items in batches while
+     * the response is still being read. Useful for long feeds, see {@link JsonArrayPager} to load
+     * them page by page.
+     *
+     * @param url URL of the API
+     * @param converter Decodes one element of the array
+     * @param itemsListener Listener for the batches and the end of the array
+     * @return Streaming request, add it with {@link #addRequestQueue(Request)}
+     */
+    public <T> JsonArrayStreamRequest<T> constructJsonArrayRequest(String url,
+                                                                   JsonStreamConverter<T> converter,
+                                                                   final OnItemsListener<T> itemsListener) {
+        JsonArrayStreamRequest<T> request = new JsonArrayStreamRequest<>(
+                url,
+                getHeaderParams(converter),
+                converter,
+                itemsListener,
+                getErrorListener(itemsListener));
+
+        // Batches must run on the executor the final response is delivered on to keep their order.
+        request.setBatchExecutor(mResponseDelivery.getDefaultExecutor());
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a GET network request that returns the raw response body, for binary endpoints.
+     *
+     * @param url URL of the API
+     * @param bytesListener Listener whether network request is successful or not
+     * @return Request delivering the response body as received
+     */
+    public RawRequest constructRawGetRequest(String url, final OnBytesListener bytesListener) {
+        RawRequest request = new RawRequest(
+                Request.Method.GET,
+                url,
+                getRawHeaderParams(),
+                null,
+                getBytesListener(bytesListener),
+                getErrorListener(bytesListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a POST network request that returns a String format response.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructPostRequest(String url,
+                                              final HashMap<String, String> bodyArg,
+                                              final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.POST,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)) {
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + getHeaderParams().toString());
+
+                return getHeaderParams();
+            }
+
+            @Override
+            protected Map<String, String> getParams() throws AuthFailureError {
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a POST network request that returns a String format response. With this method you
+     * can specify your own header parameters.
+     *
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructPostRequest(String url,
+                                              final HashMap<String, String> headers,
+                                              final HashMap<String, String> bodyArg,
+                                              final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.POST,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)) {
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + headers);
+
+                return headers;
+            }
+
+            @Override
+            protected Map<String, String> getParams() throws AuthFailureError {
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a POST network request with the given body that returns a String format response.
+     * Unlike the map of body arguments, the body is encoded once and reused when the request is
+     * retried, see {@link FormBody} and {@link JsonBody}.
+     *
+     * @param url URL of the API
+     * @param body Body of the request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public BodyRequest constructPostRequest(String url,
+                                            final RequestBody body,
+                                            final OnAPIListener apiListener) {
+        return constructBodyRequest(Request.Method.POST, url, body, apiListener);
+    }
+
+    /**
+     * Constructs a POST network request that sends the value in a binary format, e.g. with a
+     * {@link CborCodec} or {@link ProtobufCodec}. The value is encoded once, up front.
+     *
+     * @param url URL of the API
+     * @param value Value sent as the body
+     * @param codec Encodes the value
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public <T> BodyRequest constructPostRequest(String url,
+                                                T value,
+                                                BinaryCodec<T> codec,
+                                                final OnAPIListener apiListener) {
+        return constructBodyRequest(Request.Method.POST, url, codec.toBody(value), apiListener);
+    }
+
+    /**
+     * Constructs a POST network request that decodes the response into a model object. The body
+     * is decoded on the network thread, the listener receives the finished object.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param converter Decodes the response body, e.g. a {@link JsonStreamConverter}
+     * @param resultListener Listener whether network request is successful or not
+     * @return Request delivering the decoded response
+     */
+    public <T> TypedRequest<T> constructPostRequest(String url,
+                                                    final Map<String, String> bodyArg,
+                                                    ResponseConverter<T> converter,
+                                                    final OnResultListener<T> resultListener) {
+        TypedRequest<T> request = new TypedRequest<>(
+                Request.Method.POST,
+                url,
+                getHeaderParams(converter),
+                bodyArg,
+                converter,
+                getResultListener(resultListener),
+                getErrorListener(resultListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a POST network request that returns the raw response body, for binary endpoints.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param bytesListener Listener whether network request is successful or not
+     * @return Request delivering the response body as received
+     */
+    public RawRequest constructRawPostRequest(String url,
+                                              final Map<String, String> bodyArg,
+                                              final OnBytesListener bytesListener) {
+        RawRequest request = new RawRequest(
+                Request.Method.POST,
+                url,
+                getRawHeaderParams(),
+                bodyArg,
+                getBytesListener(bytesListener),
+                getErrorListener(bytesListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a PUT network request that returns a String format response.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructPutRequest(String url,
+                                             final Map<String, String> bodyArg,
+                                             final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.PUT,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)
+        ){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + getHeaderParams().toString());
+                return getHeaderParams();
+            }
+
+            @Override
+            protected Map<String, String> getParams() throws AuthFailureError {
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a PUT network request that returns a String format response. With this method you
+     * can specify your own header parameters.
+     *
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructPutRequest(String url,
+                                             final HashMap<String, String> headers,
+                                             final Map<String, String> bodyArg,
+                                             final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.PUT,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)
+        ){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + headers);
+                return headers;
+            }
+
+            @Override
+            protected Map<String, String> getParams() throws AuthFailureError {
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a PUT network request with the given body that returns a String format response.
+     * Unlike the map of body arguments, the body is encoded once and reused when the request is
+     * retried, see {@link FormBody} and {@link JsonBody}.
+     *
+     * @param url URL of the API
+     * @param body Body of the request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public BodyRequest constructPutRequest(String url,
+                                           final RequestBody body,
+                                           final OnAPIListener apiListener) {
+        return constructBodyRequest(Request.Method.PUT, url, body, apiListener);
+    }
+
+    /**
+     * Constructs a PUT network request that sends the value in a binary format, e.g. with a
+     * {@link CborCodec} or {@link ProtobufCodec}. The value is encoded once, up front.
+     *
+     * @param url URL of the API
+     * @param value Value sent as the body
+     * @param codec Encodes the value
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public <T> BodyRequest constructPutRequest(String url,
+                                               T value,
+                                               BinaryCodec<T> codec,
+                                               final OnAPIListener apiListener) {
+        return constructBodyRequest(Request.Method.PUT, url, codec.toBody(value), apiListener);
+    }
+
+    /**
+     * Constructs a DELETE network request that returns a String format response.
+     *
+     * @param url URL of the API
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructDeleteRequest(String url,
+                                                final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.DELETE,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + getHeaderParams().toString());
+                return getHeaderParams();
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a DELETE network request that returns a String format response. With this method you
+     * can specify your own header parameters.
+     *
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructDeleteRequest(String url,
+                                                final HashMap<String, String> headers,
+                                                final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.DELETE,
+                url,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener)){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + headers);
+                return headers;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs an authentication request that returns a String format response.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @param apiListener Listener whether network request is successful or not
+     * @return String response from the API
+     */
+    public StringRequest constructAuthRequest(String url,
+                                              final Map<String, String> bodyArg,
+                                              final OnAPIListener apiListener) {
+        StringRequest request = new StringRequest(
+                Request.Method.POST,
+                url, new Response.Listener<String>() {
+            @Override
+            public void onResponse(String response) {
+                apiListener.onSuccess(response);
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                apiListener.onFail(error.getClass().getSimpleName());
+            }
+        }){
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Map<String,String> headers = new HashMap<>();
+                headers.put("Accept","application/json");
+                headers.put("Content-Type", "application/x-www-form-urlencoded");
+
+                Log.d(TAG, "Headers: " + headers.toString());
+
+                return headers;
+            }
+
+            @Override
+            protected Map<String, String> getParams() {
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    public ImageUploadRequest constructImageUploadRequest(String url,
+                                                          Bitmap bitmap,
+                                                          final OnAPIListener apiListener) {
+        ImageUploadRequest request = new ImageUploadRequest(
+                url,
+                bitmap,
+                new Response.Listener() {
+            @Override
+            public void onResponse(Object response) {
+                apiListener.onSuccess(response.toString());
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                apiListener.onFail(error.getMessage());
+            }
+        });
+
+        if(mQualityEstimator != null) {
+            NetworkQuality quality = mQualityEstimator.getQuality();
+            request.setImageCompression(quality.getUploadQuality(), quality.getMaxUploadImageSize());
+        }
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    public ImageUploadRequest constructImageUploadRequest(String url,
+                                                          File fileImage,
+                                                          final OnAPIListener apiListener) {
+        ImageUploadRequest request = new ImageUploadRequest(
+                url,
+                fileImage,
+                new Response.Listener() {
+            @Override
+            public void onResponse(Object response) {
+                apiListener.onSuccess(response.toString());
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                apiListener.onFail(error.getMessage());
+            }
+        });
+
+        if(mQualityEstimator != null) {
+            // Files are only shrunk on slow links, otherwise they are sent untouched with their EXIF data.
+            NetworkQuality quality = mQualityEstimator.getQuality();
+            if(quality.getMaxUploadImageSize() > 0) {
+                request.setImageCompression(quality.getUploadQuality(), quality.getMaxUploadImageSize());
+            }
+        }
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a multipart/form-data upload request that returns a String format response. Add
+     * the files, bitmaps and form fields to the returned request before adding it to the queue.
+     *
+     * @param url URL of the API on where to upload
+     * @param apiListener Listener whether network request is successful or not
+     * @return Upload request without parts
+     */
+    public MultipartUploadRequest constructMultipartUploadRequest(String url,
+                                                                  final OnAPIListener apiListener) {
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Content-Type");
+
+        MultipartUploadRequest request = new MultipartUploadRequest(
+                url,
+                headers,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a GET network request that saves the response body to a file. The body is
+     * streamed to disk and never held in memory, an interrupted download resumes where it stopped.
+     *
+     * @param url URL of the file to download
+     * @param file Where the download is saved
+     * @param apiListener Listener whether the download is successful or not
+     * @return Download request
+     */
+    public DownloadRequest constructDownloadRequest(String url,
+                                                    File file,
+                                                    final OnDownloadListener apiListener) {
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Content-Type");
+
+        DownloadRequest request = new DownloadRequest(
+                url,
+                file,
+                headers,
+                new Response.Listener<File>() {
+            @Override
+            public void onResponse(File response) {
+                apiListener.onSuccess(response, response.length());
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                apiListener.onFail(error.getClass().getSimpleName());
+            }
+        });
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Constructs a resumable upload for large files. The file is sent in chunks and the progress is
+     * saved in the given directory, call {@link ResumableUpload#start()} to begin or resume it.
+     *
+     * @param url URL of the API where uploads are created
+     * @param file File to be uploaded
+     * @param stateDir Directory where the upload progress is saved
+     * @param apiListener Listener called with the URL of the completed upload, or on failure
+     * @return Upload that is not started yet
+     */
+    public ResumableUpload constructResumableUpload(String url,
+                                                    File file,
+                                                    File stateDir,
+                                                    final OnAPIListener apiListener) {
+        // Each protocol call sets its own content type.
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Content-Type");
+
+        return new ResumableUpload(this, url, file, stateDir, headers, apiListener);
+    }
+
+    /**
+     * Performs a GET network request and returns a future of its String response. Use it from
+     * worker threads with {@link ValleyFuture#execute()}, or chain several requests with
+     * {@link ValleyFuture#then} and {@link ValleyFuture#zip}. The response is delivered on the
+     * network thread, so callbacks added to the future do not run on the main thread.
+     *
+     * @param url URL of the API
+     * @return Future of the String response from the API
+     */
+    public ValleyFuture<String> submitGetRequest(String url) {
+        return submitStringRequest(Request.Method.GET, url, null);
+    }
+
+    /**
+     * Performs a POST network request and returns a future of its String response.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @return Future of the String response from the API
+     */
+    public ValleyFuture<String> submitPostRequest(String url, Map<String, String> bodyArg) {
+        return submitStringRequest(Request.Method.POST, url, bodyArg);
+    }
+
+    /**
+     * Performs a PUT network request and returns a future of its String response.
+     *
+     * @param url URL of the API
+     * @param bodyArg Body argument parameters to be included in the network request
+     * @return Future of the String response from the API
+     */
+    public ValleyFuture<String> submitPutRequest(String url, Map<String, String> bodyArg) {
+        return submitStringRequest(Request.Method.PUT, url, bodyArg);
+    }
+
+    /**
+     * Performs a DELETE network request and returns a future of its String response.
+     *
+     * @param url URL of the API
+     * @return Future of the String response from the API
+     */
+    public ValleyFuture<String> submitDeleteRequest(String url) {
+        return submitStringRequest(Request.Method.DELETE, url, null);
+    }
+
+    private ValleyFuture<String> submitStringRequest(int method, String url,
+                                                            final Map<String, String> bodyArg) {
+        ValleyFuture<String> future = ValleyFuture.newFuture();
+
+        StringRequest request = new StringRequest(method, url, future, future) {
+            @Override
+            public Map<String, String> getHeaders() throws AuthFailureError {
+                Log.d(TAG, "Headers: " + getHeaderParams().toString());
+                return getHeaderParams();
+            }
+
+            @Override
+            protected Map<String, String> getParams() throws AuthFailureError {
+                if(bodyArg == null) {
+                    return super.getParams();
+                }
+
+                Log.d(TAG, "Params: " + bodyArg.toString());
+                return bodyArg;
+            }
+        };
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+        future.setRequest(request);
+
+        addRequestQueue(request, DirectExecutor.getInstance());
+
+        return future;
+    }
+
+    private BodyRequest constructBodyRequest(int method, String url, RequestBody body,
+                                             OnAPIListener apiListener) {
+        // The body brings its own Content-Type.
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Content-Type");
+
+        BodyRequest request = new BodyRequest(
+                method,
+                url,
+                headers,
+                body,
+                getStringResponseListener(apiListener),
+                getErrorListener(apiListener));
+
+        request.setRetryPolicy(getHttpRetryPolicy());
+
+        return request;
+    }
+
+    /**
+     * Returns a successful network response listener. Listener returns a response in String format.
+     *
+     * @param apiListener Listener to indicate that network request is successful.
+     * @return Listener for network response
+     */
+    private Response.Listener<String> getStringResponseListener(final OnAPIListener apiListener) {
+        return new Response.Listener<String>() {
+            @Override
+            public void onResponse(String response) {
+                apiListener.onSuccess(response);
+            }
+        };
+    }
+
+    /**
+     * Returns a fail network response listener. Listener returns a {@link VolleyError} response.
+     *
+     * @param apiListener Listener to indicate that network request failed.
+     * @return Error listener for network response
+     */
+    private Response.ErrorListener getErrorListener(final OnAPIListener apiListener) {
+        return new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                apiListener.onFail(error.getClass().getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Returns a successful network response listener for decoded responses.
+     *
+     * @param resultListener Listener to indicate that network request is successful.
+     * @return Listener for network response
+     */
+    private <T> Response.Listener<T> getResultListener(final OnResultListener<T> resultListener) {
+        return new Response.Listener<T>() {
+            @Override
+            public void onResponse(T response) {
+                resultListener.onSuccess(response);
+            }
+        };
+    }
+
+    /**
+     * Returns a fail network response listener for decoded responses.
+     *
+     * @param resultListener Listener to indicate that network request failed.
+     * @return Error listener for network response
+     */
+    private Response.ErrorListener getErrorListener(final OnResultListener<?> resultListener) {
+        return new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                resultListener.onFail(error.getClass().getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Returns a successful network response listener for raw responses. The body is wrapped, not
+     * copied.
+     *
+     * @param bytesListener Listener to indicate that network request is successful.
+     * @return Listener for network response
+     */
+    private Response.Listener<byte[]> getBytesListener(final OnBytesListener bytesListener) {
+        return new Response.Listener<byte[]>() {
+            @Override
+            public void onResponse(byte[] response) {
+                bytesListener.onSuccess(ByteBuffer.wrap(response).asReadOnlyBuffer());
+            }
+        };
+    }
+
+    /**
+     * Returns a fail network response listener for streamed JSON arrays.
+     *
+     * @param itemsListener Listener to indicate that network request failed.
+     * @return Error listener for network response
+     */
+    private Response.ErrorListener getErrorListener(final OnItemsListener<?> itemsListener) {
+        return new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                itemsListener.onFail(error.getClass().getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Returns a fail network response listener for raw responses.
+     *
+     * @param bytesListener Listener to indicate that network request failed.
+     * @return Error listener for network response
+     */
+    private Response.ErrorListener getErrorListener(final OnBytesListener bytesListener) {
+        return new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                bytesListener.onFail(error.getClass().getSimpleName());
+            }
+        };
+    }
+
+    /**
+     * Returns an updated/extended timeout policy.
+     *
+     * @return Updated timeout policy
+     */
+    private DefaultRetryPolicy getHttpRetryPolicy() {
+        return new DefaultRetryPolicy(getNetworkQuality().getTimeoutMs(),
+                DefaultRetryPolicy.DEFAULT_MAX_RETRIES,
+                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT);
+    }
+
+    /**
+     * Returns a default header parameters to be included in the network request.
+     *
+     * @return Header parameters to be included in the network request.
+     */
+    private Map<String, String> getHeaderParams() {
+        Map<String,String> headers = new HashMap<>();
+        headers.put("Accept","application/json");
+        headers.put("Content-Type", "application/x-www-form-urlencoded");
+        headers.put("Authorization", "Bearer " + getAccessToken());
+
+        return headers;
+    }
+
+    /**
+     * Returns the header parameters for typed requests. Binary codecs ask for their own format.
+     *
+     * @param converter Decodes the response body
+     * @return Map of the header parameters
+     */
+    private Map<String, String> getHeaderParams(ResponseConverter<?> converter) {
+        Map<String, String> headers = getHeaderParams();
+        if(converter instanceof BinaryCodec) {
+            headers.put("Accept", ((BinaryCodec<?>) converter).getContentType());
+        }
+
+        return headers;
+    }
+
+    /**
+     * Returns the header parameters for raw requests, which accept any content type.
+     *
+     * @return Map of the header parameters
+     */
+    private Map<String, String> getRawHeaderParams() {
+        Map<String, String> headers = getHeaderParams();
+        headers.remove("Accept");
+
+        return headers;
+    }
+}
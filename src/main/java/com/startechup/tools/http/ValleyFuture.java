@@ -0,0 +1,571 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http;
+
+import android.os.Looper;
+
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of a network request that completes later. It can be waited on from a worker thread with
+ * {@link #execute()}, or combined with other results with {@link #map}, {@link #then},
+ * {@link #zip} and {@link #timeout} without blocking any thread.
+ *
+ * <p>Callbacks and combinators run on the thread that completes the future, which is the thread
+ * the request's response is delivered on.</p>
+ *
+ * @param <T> Type of the result
+ */
+public class ValleyFuture<T> implements Future<T>, Response.Listener<T>, Response.ErrorListener {
+
+    /**
+     * Fires the timeouts of {@link #timeout(long)}.
+     */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER;
+
+    static {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ValleyFuture-timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        TIMEOUT_SCHEDULER = scheduler;
+    }
+
+    /**
+     * Receives the outcome of a future.
+     */
+    public interface Callback<T> {
+
+        void onSuccess(T result);
+
+        void onFail(VolleyError error);
+    }
+
+    /**
+     * Converts a result into another value.
+     */
+    public interface Transform<T, R> {
+
+        R apply(T result) throws Exception;
+    }
+
+    /**
+     * Starts the next request from the result of the previous one.
+     */
+    public interface Chain<T, R> {
+
+        ValleyFuture<R> apply(T result) throws Exception;
+    }
+
+    /**
+     * Combines the results of two futures.
+     */
+    public interface Combiner<A, B, R> {
+
+        R apply(A first, B second) throws Exception;
+    }
+
+    private boolean mDone;
+
+    private boolean mCancelled;
+
+    private T mResult;
+
+    private VolleyError mError;
+
+    /**
+     * Request or upstream future cancelled together with this future.
+     */
+    private Request<?> mRequest;
+    private Future<?> mUpstream;
+
+    private List<Callback<? super T>> mCallbacks = new ArrayList<>();
+
+    public static <T> ValleyFuture<T> newFuture() {
+        return new ValleyFuture<>();
+    }
+
+    /**
+     * Returns a future that is already completed with the given result.
+     */
+    public static <T> ValleyFuture<T> completed(T result) {
+        ValleyFuture<T> future = new ValleyFuture<>();
+        future.complete(result);
+
+        return future;
+    }
+
+    /**
+     * Returns a future that already failed with the given error.
+     */
+    public static <T> ValleyFuture<T> failed(VolleyError error) {
+        ValleyFuture<T> future = new ValleyFuture<>();
+        future.fail(error);
+
+        return future;
+    }
+
+    /**
+     * Sets the request that produces this result, it is cancelled when the future is cancelled.
+     */
+    public synchronized void setRequest(Request<?> request) {
+        mRequest = request;
+        if(mCancelled) {
+            request.cancel();
+        }
+    }
+
+    private synchronized void setUpstream(Future<?> upstream) {
+        mUpstream = upstream;
+        if(mCancelled) {
+            upstream.cancel(false);
+        }
+    }
+
+    @Override
+    public void onResponse(T response) {
+        complete(response);
+    }
+
+    @Override
+    public void onErrorResponse(VolleyError error) {
+        fail(error);
+    }
+
+    /**
+     * Completes the future, does nothing if it is already done.
+     *
+     * @return True if this call completed the future
+     */
+    public boolean complete(T result) {
+        List<Callback<? super T>> callbacks;
+        synchronized(this) {
+            if(mDone) {
+                return false;
+            }
+            mDone = true;
+            mResult = result;
+            callbacks = takeCallbacks();
+        }
+
+        for(Callback<? super T> callback : callbacks) {
+            callback.onSuccess(result);
+        }
+
+        return true;
+    }
+
+    /**
+     * Fails the future, does nothing if it is already done.
+     *
+     * @return True if this call completed the future
+     */
+    public boolean fail(VolleyError error) {
+        List<Callback<? super T>> callbacks;
+        synchronized(this) {
+            if(mDone) {
+                return false;
+            }
+            mDone = true;
+            mError = error;
+            callbacks = takeCallbacks();
+        }
+
+        for(Callback<? super T> callback : callbacks) {
+            callback.onFail(error);
+        }
+
+        return true;
+    }
+
+    private List<Callback<? super T>> takeCallbacks() {
+        List<Callback<? super T>> callbacks = mCallbacks;
+        mCallbacks = null;
+        notifyAll();
+
+        return callbacks;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        VolleyError error = new VolleyError("Request cancelled");
+        Request<?> request;
+        Future<?> upstream;
+        List<Callback<? super T>> callbacks;
+        synchronized(this) {
+            if(mDone) {
+                return false;
+            }
+            mDone = true;
+            mCancelled = true;
+            mError = error;
+            request = mRequest;
+            upstream = mUpstream;
+            callbacks = takeCallbacks();
+        }
+
+        if(request != null) {
+            request.cancel();
+        }
+        if(upstream != null) {
+            upstream.cancel(mayInterruptIfRunning);
+        }
+
+        for(Callback<? super T> callback : callbacks) {
+            callback.onFail(error);
+        }
+
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+        try {
+            return await(-1);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return await(unit.toMillis(timeout));
+    }
+
+    /**
+     * Waits for the result.
+     *
+     * @param timeoutMs Maximum time to wait, negative to wait forever
+     */
+    private synchronized T await(long timeoutMs)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while(!mDone) {
+            if(timeoutMs < 0) {
+                wait();
+            } else {
+                long remaining = deadline - System.currentTimeMillis();
+                if(remaining <= 0) {
+                    throw new TimeoutException();
+                }
+                wait(remaining);
+            }
+        }
+
+        if(mCancelled) {
+            throw new CancellationException();
+        }
+        if(mError != null) {
+            throw new ExecutionException(mError);
+        }
+
+        return mResult;
+    }
+
+    /**
+     * Blocks until the result arrives. Must be called from a worker thread.
+     *
+     * @return Result of the request
+     * @throws VolleyError If the request failed, was cancelled or the thread was interrupted
+     */
+    public T execute() throws VolleyError {
+        if(Looper.myLooper() == Looper.getMainLooper()) {
+            throw new IllegalStateException("execute() must not be called on the main thread");
+        }
+
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(false);
+            throw new VolleyError(e);
+        } catch (CancellationException e) {
+            throw new VolleyError("Request cancelled");
+        } catch (ExecutionException e) {
+            throw (VolleyError) e.getCause();
+        }
+    }
+
+    /**
+     * Adds a callback, called right away if the future is already done.
+     */
+    public ValleyFuture<T> addCallback(Callback<? super T> callback) {
+        synchronized(this) {
+            if(!mDone) {
+                mCallbacks.add(callback);
+                return this;
+            }
+        }
+
+        if(mError != null) {
+            callback.onFail(mError);
+        } else {
+            callback.onSuccess(mResult);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds an {@link OnAPIListener}, its onFail() receives the name of the error like the
+     * listeners of the construct*Request() methods.
+     */
+    public ValleyFuture<T> addListener(final OnAPIListener apiListener) {
+        return addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                apiListener.onSuccess(String.valueOf(result));
+            }
+
+            @Override
+            public void onFail(VolleyError error) {
+                apiListener.onFail(error.getClass().getSimpleName());
+            }
+        });
+    }
+
+    /**
+     * Returns a future with the converted result. If the conversion throws, the returned future
+     * fails with a {@link VolleyError} wrapping the exception.
+     */
+    public <R> ValleyFuture<R> map(final Transform<? super T, ? extends R> transform) {
+        final ValleyFuture<R> mapped = new ValleyFuture<>();
+        mapped.setUpstream(this);
+
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                R value;
+                try {
+                    value = transform.apply(result);
+                } catch (Exception e) {
+                    mapped.fail(e instanceof VolleyError ? (VolleyError) e : new VolleyError(e));
+                    return;
+                }
+                mapped.complete(value);
+            }
+
+            @Override
+            public void onFail(VolleyError error) {
+                mapped.fail(error);
+            }
+        });
+
+        return mapped;
+    }
+
+    /**
+     * Starts the next request once this one succeeded, for sequential API calls.
+     */
+    public <R> ValleyFuture<R> then(final Chain<? super T, R> chain) {
+        final ValleyFuture<R> chained = new ValleyFuture<>();
+        chained.setUpstream(this);
+
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                ValleyFuture<R> next;
+                try {
+                    next = chain.apply(result);
+                } catch (Exception e) {
+                    chained.fail(e instanceof VolleyError ? (VolleyError) e : new VolleyError(e));
+                    return;
+                }
+
+                chained.setUpstream(next);
+                next.addCallback(chained.forwarder());
+            }
+
+            @Override
+            public void onFail(VolleyError error) {
+                chained.fail(error);
+            }
+        });
+
+        return chained;
+    }
+
+    /**
+     * Returns a future that fails with a {@link TimeoutError} if this one is not done within the
+     * given time. This future is cancelled on timeout.
+     */
+    public ValleyFuture<T> timeout(long timeoutMs) {
+        final ValleyFuture<T> timed = new ValleyFuture<>();
+        timed.setUpstream(this);
+
+        final ScheduledFuture<?> timer = TIMEOUT_SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if(timed.fail(new TimeoutError())) {
+                    cancel(false);
+                }
+            }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+
+        addCallback(new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                timer.cancel(false);
+                timed.complete(result);
+            }
+
+            @Override
+            public void onFail(VolleyError error) {
+                timer.cancel(false);
+                timed.fail(error);
+            }
+        });
+
+        return timed;
+    }
+
+    /**
+     * Combines two futures running in parallel. Fails as soon as one of them fails, the other one
+     * is cancelled.
+     */
+    public static <A, B, R> ValleyFuture<R> zip(final ValleyFuture<A> first, final ValleyFuture<B> second,
+                                                final Combiner<? super A, ? super B, ? extends R> combiner) {
+        List<ValleyFuture<?>> futures = new ArrayList<>();
+        futures.add(first);
+        futures.add(second);
+
+        return zipAll(futures).map(new Transform<List<Object>, R>() {
+            @Override
+            public R apply(List<Object> results) throws Exception {
+                return combiner.apply(first.mResult, second.mResult);
+            }
+        });
+    }
+
+    /**
+     * Waits for all the futures, running in parallel. The results are in the same order as the
+     * futures. Fails as soon as one of them fails, the others are cancelled.
+     */
+    @SafeVarargs
+    public static <T> ValleyFuture<List<T>> zipAll(ValleyFuture<? extends T>... futures) {
+        return zipAll(Arrays.<ValleyFuture<? extends T>>asList(futures));
+    }
+
+    /**
+     * Waits for all the futures, running in parallel. The results are in the same order as the
+     * futures. Fails as soon as one of them fails, the others are cancelled.
+     */
+    public static <T> ValleyFuture<List<T>> zipAll(final List<? extends ValleyFuture<? extends T>> futures) {
+        final ValleyFuture<List<T>> zipped = new ValleyFuture<>();
+        if(futures.isEmpty()) {
+            zipped.complete(new ArrayList<T>());
+            return zipped;
+        }
+
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        for(ValleyFuture<? extends T> future : futures) {
+            future.addCallback(new Callback<T>() {
+                @Override
+                public void onSuccess(T result) {
+                    if(remaining.decrementAndGet() == 0) {
+                        List<T> results = new ArrayList<>(futures.size());
+                        for(ValleyFuture<? extends T> done : futures) {
+                            results.add(done.mResult);
+                        }
+                        zipped.complete(results);
+                    }
+                }
+
+                @Override
+                public void onFail(VolleyError error) {
+                    if(zipped.fail(error)) {
+                        for(ValleyFuture<? extends T> other : futures) {
+                            other.cancel(false);
+                        }
+                    }
+                }
+            });
+        }
+
+        zipped.setUpstream(new ZipCanceller(futures));
+
+        return zipped;
+    }
+
+    private Callback<T> forwarder() {
+        return new Callback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                complete(result);
+            }
+
+            @Override
+            public void onFail(VolleyError error) {
+                fail(error);
+            }
+        };
+    }
+
+    /**
+     * Cancels every future of a zip when the zipped future is cancelled.
+     */
+    private static class ZipCanceller extends ValleyFuture<Void> {
+
+        private final List<? extends ValleyFuture<?>> mFutures;
+
+        ZipCanceller(List<? extends ValleyFuture<?>> futures) {
+            mFutures = futures;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            for(ValleyFuture<?> future : mFutures) {
+                future.cancel(mayInterruptIfRunning);
+            }
+
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.body;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * URL encoded form body. Fields are encoded as they are added, so the body is encoded once and the
+ * same bytes are written on every attempt.
+ *
+ * <pre>
+ * RequestBody body = new FormBody.Builder()
+ *         .add("email", email)
+ *         .add("password", password)
+ *         .build();
+ * </pre>
+ */
+public class FormBody extends RequestBody {
+
+    private static final String CONTENT_TYPE = "application/x-www-form-urlencoded; charset=UTF-8";
+
+    private final byte[] mContent;
+
+    private FormBody(byte[] content) {
+        mContent = content;
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public long getContentLength() {
+        return mContent.length;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(mContent);
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return mContent;
+    }
+
+    public static class Builder {
+
+        /**
+         * Receives the encoded fields, no map of the fields is kept.
+         */
+        private final ByteArrayOutputStream mContent = new ByteArrayOutputStream();
+
+        /**
+         * Adds a form field. Fields with the same name are all sent, in the order they were added.
+         *
+         * @param name Field name
+         * @param value Field value
+         */
+        public Builder add(String name, String value) {
+            if(mContent.size() > 0) {
+                mContent.write('&');
+            }
+            writeEncoded(name);
+            mContent.write('=');
+            writeEncoded(value);
+
+            return this;
+        }
+
+        public FormBody build() {
+            return new FormBody(mContent.toByteArray());
+        }
+
+        private void writeEncoded(String value) {
+            try {
+                byte[] encoded = URLEncoder.encode(value, "UTF-8").getBytes("US-ASCII");
+                mContent.write(encoded, 0, encoded.length);
+            } catch (UnsupportedEncodingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
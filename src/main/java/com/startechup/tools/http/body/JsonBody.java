@@ -0,0 +1,78 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.body;
+
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+/**
+ * JSON body written token by token straight to the connection, for payloads too large to build as
+ * a JSONObject or String first. {@link #write(JsonWriter)} runs again when the request is retried.
+ *
+ * <pre>
+ * RequestBody body = new JsonBody() {
+ *     protected void write(JsonWriter writer) throws IOException {
+ *         writer.beginArray();
+ *         for(Event event : events) {
+ *             writer.beginObject();
+ *             writer.name("type").value(event.type);
+ *             writer.name("time").value(event.time);
+ *             writer.endObject();
+ *         }
+ *         writer.endArray();
+ *     }
+ * };
+ * </pre>
+ */
+public abstract class JsonBody extends RequestBody {
+
+    private static final String CONTENT_TYPE = "application/json; charset=UTF-8";
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    /**
+     * The size is only known once written, the body is sent with chunked transfer encoding.
+     */
+    @Override
+    public long getContentLength() {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, "UTF-8")));
+        write(writer);
+
+        // Flush only, the stream belongs to the caller.
+        writer.flush();
+    }
+
+    /**
+     * Writes the JSON value of the body.
+     *
+     * @param writer Writer for the body
+     */
+    protected abstract void write(JsonWriter writer) throws IOException;
+}
@@ -0,0 +1,120 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.body;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Body of a POST or PUT request. The body is written straight to the connection, and written again
+ * when the request is retried, so implementations must be able to write it more than once.
+ */
+public abstract class RequestBody {
+
+    /**
+     * Returns the Content-Type header value of the body.
+     */
+    public abstract String getContentType();
+
+    /**
+     * Returns the size of the body in bytes, or -1 if unknown in which case the body is sent with
+     * chunked transfer encoding.
+     */
+    public abstract long getContentLength();
+
+    /**
+     * Writes the body. Called from a worker thread.
+     *
+     * @param out Stream to the connection, closed by the caller
+     */
+    public abstract void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * Returns the body as a byte array, for HTTP stacks that cannot stream the body.
+     */
+    public byte[] toByteArray() throws IOException {
+        long length = getContentLength();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                length > 0 && length <= Integer.MAX_VALUE ? (int) length : 32);
+        writeTo(out);
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a body from bytes that are already encoded. The same array is written on every
+     * attempt.
+     *
+     * @param contentType Content-Type header value
+     * @param content Encoded body
+     */
+    public static RequestBody create(String contentType, byte[] content) {
+        return new BytesBody(contentType, content);
+    }
+
+    /**
+     * Creates a body from a String, encoded to UTF-8 once.
+     *
+     * @param contentType Content-Type header value, without charset
+     * @param content Body text
+     */
+    public static RequestBody create(String contentType, String content) {
+        try {
+            return new BytesBody(contentType + "; charset=UTF-8", content.getBytes("UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Body encoded up front, written as is on every attempt.
+     */
+    static class BytesBody extends RequestBody {
+
+        private final String mContentType;
+
+        private final byte[] mContent;
+
+        BytesBody(String contentType, byte[] content) {
+            mContentType = contentType;
+            mContent = content;
+        }
+
+        @Override
+        public String getContentType() {
+            return mContentType;
+        }
+
+        @Override
+        public long getContentLength() {
+            return mContent.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(mContent);
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return mContent;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.codec;
+
+import com.startechup.tools.http.ResponseConverter;
+import com.startechup.tools.http.body.RequestBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes request bodies and decodes response bodies in a binary format. A codec is also a
+ * {@link ResponseConverter}, so it can be passed to the typed construct methods of
+ * {@link com.startechup.tools.http.NetworkingValley}, which then ask for its content type in the
+ * Accept header.
+ *
+ * @param <T> Type of the encoded values
+ */
+public abstract class BinaryCodec<T> implements ResponseConverter<T> {
+
+    /**
+     * Returns the content type of the format, used for the Content-Type and Accept headers.
+     */
+    public abstract String getContentType();
+
+    /**
+     * Writes the value in the binary format.
+     *
+     * @param value Value to encode
+     * @param out Stream receiving the encoded value
+     */
+    public abstract void encode(T value, OutputStream out) throws IOException;
+
+    /**
+     * Reads a value in the binary format.
+     *
+     * @param in Encoded value
+     * @return Decoded value
+     */
+    public abstract T decode(InputStream in) throws IOException;
+
+    /**
+     * Binary formats carry no charset, the charset is ignored.
+     */
+    @Override
+    public T convert(InputStream body, String charset) throws IOException {
+        return decode(body);
+    }
+
+    /**
+     * Encodes the value once into a request body, the same bytes are sent on every attempt.
+     *
+     * @param value Value to encode
+     * @return Body of the request
+     * @throws IllegalArgumentException If the value cannot be encoded
+     */
+    public RequestBody toBody(T value) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            encode(value, out);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to encode " + value, e);
+        }
+
+        return RequestBody.create(getContentType(), out.toByteArray());
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR (RFC 7049) codec for plain Java values, no schema or generated classes needed.
+ *
+ * <p>Encodes {@link Map}, {@link Collection}, Object arrays, {@link String}, byte arrays,
+ * integer and floating point {@link Number}s, {@link Boolean} and null. Decodes to
+ * {@link LinkedHashMap}, {@link ArrayList}, {@link String}, byte arrays, {@link Long},
+ * {@link Double}, {@link Boolean} and null. Tags are skipped and their content returned.</p>
+ */
+public class CborCodec extends BinaryCodec<Object> {
+
+    public static final String CONTENT_TYPE = "application/cbor";
+
+    private static final int MAJOR_UNSIGNED = 0;
+    private static final int MAJOR_NEGATIVE = 1;
+    private static final int MAJOR_BYTES = 2;
+    private static final int MAJOR_TEXT = 3;
+    private static final int MAJOR_ARRAY = 4;
+    private static final int MAJOR_MAP = 5;
+    private static final int MAJOR_TAG = 6;
+    private static final int MAJOR_SIMPLE = 7;
+
+    private static final int FALSE = 0xf4;
+    private static final int TRUE = 0xf5;
+    private static final int NULL = 0xf6;
+    private static final int FLOAT32 = 0xfa;
+    private static final int FLOAT64 = 0xfb;
+    private static final int BREAK = 0xff;
+
+    private static final int INDEFINITE = 31;
+
+    /**
+     * Strings longer than this are read in chunks of this size
+     */
+    private static final int READ_CHUNK_SIZE = 8192;
+
+    /**
+     * Returned by {@link #readItem(DataInputStream)} for the end of an indefinite length item.
+     */
+    private static final Object BREAK_MARKER = new Object();
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void encode(Object value, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        writeItem(data, value);
+        data.flush();
+    }
+
+    @Override
+    public Object decode(InputStream in) throws IOException {
+        Object value = readItem(new DataInputStream(in));
+        if(value == BREAK_MARKER) {
+            throw new IOException("Unexpected break");
+        }
+
+        return value;
+    }
+
+    private static void writeItem(DataOutputStream out, Object value) throws IOException {
+        if(value == null) {
+            out.write(NULL);
+        } else if(value instanceof Boolean) {
+            out.write((Boolean) value ? TRUE : FALSE);
+        } else if(value instanceof Long || value instanceof Integer
+                || value instanceof Short || value instanceof Byte) {
+            long number = ((Number) value).longValue();
+            if(number >= 0) {
+                writeHeader(out, MAJOR_UNSIGNED, number);
+            } else {
+                writeHeader(out, MAJOR_NEGATIVE, -1 - number);
+            }
+        } else if(value instanceof Float) {
+            out.write(FLOAT32);
+            out.writeInt(Float.floatToIntBits((Float) value));
+        } else if(value instanceof Number) {
+            out.write(FLOAT64);
+            out.writeLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if(value instanceof String) {
+            byte[] text = ((String) value).getBytes("UTF-8");
+            writeHeader(out, MAJOR_TEXT, text.length);
+            out.write(text);
+        } else if(value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            writeHeader(out, MAJOR_BYTES, bytes.length);
+            out.write(bytes);
+        } else if(value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            writeHeader(out, MAJOR_MAP, map.size());
+            for(Map.Entry<?, ?> entry : map.entrySet()) {
+                writeItem(out, entry.getKey());
+                writeItem(out, entry.getValue());
+            }
+        } else if(value instanceof Collection) {
+            Collection<?> items = (Collection<?>) value;
+            writeHeader(out, MAJOR_ARRAY, items.size());
+            for(Object item : items) {
+                writeItem(out, item);
+            }
+        } else if(value instanceof Object[]) {
+            Object[] items = (Object[]) value;
+            writeHeader(out, MAJOR_ARRAY, items.length);
+            for(Object item : items) {
+                writeItem(out, item);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes the major type with the value or length in the shortest form.
+     */
+    private static void writeHeader(DataOutputStream out, int majorType, long value) throws IOException {
+        int major = majorType << 5;
+        if(value < 24) {
+            out.write(major | (int) value);
+        } else if(value <= 0xff) {
+            out.write(major | 24);
+            out.write((int) value);
+        } else if(value <= 0xffff) {
+            out.write(major | 25);
+            out.writeShort((int) value);
+        } else if(value <= 0xffffffffL) {
+            out.write(major | 26);
+            out.writeInt((int) value);
+        } else {
+            out.write(major | 27);
+            out.writeLong(value);
+        }
+    }
+
+    private static Object readItem(DataInputStream in) throws IOException {
+        int initial = in.readUnsignedByte();
+        int major = initial >>> 5;
+        int info = initial & 0x1f;
+
+        switch(major) {
+            case MAJOR_UNSIGNED:
+                return readUnsigned(in, info);
+            case MAJOR_NEGATIVE:
+                return -1 - readUnsigned(in, info);
+            case MAJOR_BYTES:
+                return readBytes(in, MAJOR_BYTES, info);
+            case MAJOR_TEXT:
+                return new String(readBytes(in, MAJOR_TEXT, info), "UTF-8");
+            case MAJOR_ARRAY:
+                return readArray(in, info);
+            case MAJOR_MAP:
+                return readMap(in, info);
+            case MAJOR_TAG:
+                readLength(in, info);
+                return readItem(in);
+            case MAJOR_SIMPLE:
+            default:
+                return readSimple(in, initial, info);
+        }
+    }
+
+    private static long readUnsigned(DataInputStream in, int info) throws IOException {
+        long value = readLength(in, info);
+        if(value < 0) {
+            throw new IOException("Integer out of range");
+        }
+
+        return value;
+    }
+
+    /**
+     * Reads the value or length following the initial byte, -1 for indefinite length.
+     */
+    private static long readLength(DataInputStream in, int info) throws IOException {
+        if(info < 24) {
+            return info;
+        }
+
+        switch(info) {
+            case 24:
+                return in.readUnsignedByte();
+            case 25:
+                return in.readUnsignedShort();
+            case 26:
+                return in.readInt() & 0xffffffffL;
+            case 27:
+                return in.readLong();
+            case INDEFINITE:
+                return -1;
+            default:
+                throw new IOException("Invalid additional information " + info);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in, int major, int info) throws IOException {
+        if(info != INDEFINITE) {
+            int length = toSize(readUnsigned(in, info));
+            if(length <= READ_CHUNK_SIZE) {
+                byte[] bytes = new byte[length];
+                in.readFully(bytes);
+                return bytes;
+            }
+
+            // The length comes from the server, memory grows with the bytes actually received.
+            ByteArrayOutputStream out = new ByteArrayOutputStream(READ_CHUNK_SIZE);
+            byte[] chunk = new byte[READ_CHUNK_SIZE];
+            for(int remaining = length; remaining > 0; ) {
+                int count = Math.min(remaining, READ_CHUNK_SIZE);
+                in.readFully(chunk, 0, count);
+                out.write(chunk, 0, count);
+                remaining -= count;
+            }
+            return out.toByteArray();
+        }
+
+        // Indefinite length strings are a sequence of definite length chunks of the same type.
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        while(true) {
+            int initial = in.readUnsignedByte();
+            if(initial == BREAK) {
+                return chunks.toByteArray();
+            }
+            if(initial >>> 5 != major || (initial & 0x1f) == INDEFINITE) {
+                throw new IOException("Invalid chunk in indefinite length string");
+            }
+            byte[] chunk = readBytes(in, major, initial & 0x1f);
+            chunks.write(chunk, 0, chunk.length);
+        }
+    }
+
+    private static List<Object> readArray(DataInputStream in, int info) throws IOException {
+        long length = readLength(in, info);
+        // The length comes from the server, do not trust it for the initial capacity.
+        List<Object> items = new ArrayList<>(length < 0 ? 10 : (int) Math.min(length, 1024));
+
+        for(long i=0; length < 0 || i < length; i++) {
+            Object item = readItem(in);
+            if(item == BREAK_MARKER) {
+                if(length >= 0) {
+                    throw new IOException("Unexpected break");
+                }
+                break;
+            }
+            items.add(item);
+        }
+
+        return items;
+    }
+
+    private static Map<Object, Object> readMap(DataInputStream in, int info) throws IOException {
+        long length = readLength(in, info);
+        Map<Object, Object> map = new LinkedHashMap<>();
+
+        for(long i=0; length < 0 || i < length; i++) {
+            Object key = readItem(in);
+            if(key == BREAK_MARKER) {
+                if(length >= 0) {
+                    throw new IOException("Unexpected break");
+                }
+                break;
+            }
+
+            Object value = readItem(in);
+            if(value == BREAK_MARKER) {
+                throw new IOException("Unexpected break");
+            }
+            map.put(key, value);
+        }
+
+        return map;
+    }
+
+    private static Object readSimple(DataInputStream in, int initial, int info) throws IOException {
+        switch(initial) {
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case NULL:
+            case 0xf7: // undefined
+                return null;
+            case 0xf9:
+                return halfToDouble(in.readUnsignedShort());
+            case FLOAT32:
+                return (double) Float.intBitsToFloat(in.readInt());
+            case FLOAT64:
+                return Double.longBitsToDouble(in.readLong());
+            case BREAK:
+                return BREAK_MARKER;
+            default:
+                throw new IOException("Unsupported simple value " + info);
+        }
+    }
+
+    private static double halfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+
+        double value;
+        if(exponent == 0) {
+            value = mantissa * Math.pow(2, -24);
+        } else if(exponent != 31) {
+            value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        } else {
+            value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        }
+
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    private static int toSize(long length) throws IOException {
+        if(length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Item too large: " + length);
+        }
+
+        return (int) length;
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Protocol Buffers codec for classes generated by protoc, with either the full or the lite
+ * runtime. The library does not depend on the protobuf runtime, the generated
+ * {@code writeTo(OutputStream)} and static {@code parseFrom(InputStream)} methods are looked up
+ * once when the codec is created. Keep them when shrinking the app with ProGuard.
+ *
+ * <pre>
+ * ProtobufCodec&lt;Event&gt; codec = new ProtobufCodec&lt;&gt;(Event.class);
+ * </pre>
+ *
+ * @param <T> Generated message class
+ */
+public class ProtobufCodec<T> extends BinaryCodec<T> {
+
+    public static final String CONTENT_TYPE = "application/x-protobuf";
+
+    private final Method mWriteTo;
+
+    private final Method mParseFrom;
+
+    /**
+     * Public constructor
+     *
+     * @param messageClass Generated message class
+     * @throws IllegalArgumentException If the class is not a generated message
+     */
+    public ProtobufCodec(Class<T> messageClass) {
+        try {
+            mWriteTo = messageClass.getMethod("writeTo", OutputStream.class);
+            mParseFrom = messageClass.getMethod("parseFrom", InputStream.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException(messageClass.getName() + " is not a protobuf message", e);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public void encode(T value, OutputStream out) throws IOException {
+        invoke(mWriteTo, value, out);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T decode(InputStream in) throws IOException {
+        return (T) invoke(mParseFrom, null, in);
+    }
+
+    private static Object invoke(Method method, Object target, Object stream) throws IOException {
+        try {
+            return method.invoke(target, stream);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.StreamingBodyRequest;
+import com.startechup.tools.http.body.RequestBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request that sends a {@link RequestBody} and returns a String format response. The body is
+ * written to the connection by the body itself instead of being re-encoded from a map of params
+ * on every attempt.
+ */
+public class BodyRequest extends Request<String> implements StreamingBodyRequest {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "BodyRequest";
+
+    /**
+     * Callback interface for delivering parsed responses.
+     */
+    private final Response.Listener<String> mListener;
+
+    private final Map<String, String> mHeaders;
+
+    private final RequestBody mBody;
+
+    /**
+     * Public constructor
+     *
+     * @param method One of {@link com.android.volley.Request.Method}
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request, may be null
+     * @param body Body of the request
+     * @param listener Listener if the request was a success
+     * @param errorListener Listener if the request was a failure
+     */
+    public BodyRequest(int method, String url, Map<String, String> headers, RequestBody body,
+                       Response.Listener<String> listener, Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+
+        mHeaders = headers;
+        mBody = body;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : new HashMap<String, String>();
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return mBody.getContentType();
+    }
+
+    @Override
+    public long getBodyLength() {
+        return mBody.getContentLength();
+    }
+
+    @Override
+    public void writeBody(OutputStream out) throws IOException {
+        mBody.writeTo(out);
+    }
+
+    /**
+     * Not used by {@link com.startechup.tools.http.OkHttpStack}, which streams the body with
+     * {@link #writeBody(OutputStream)}. Kept for other HTTP stacks.
+     */
+    @Override
+    public byte[] getBody() throws AuthFailureError {
+        try {
+            return mBody.toByteArray();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    protected Response<String> parseNetworkResponse(NetworkResponse response) {
+        String responseBody;
+        try {
+            responseBody = new String(response.data, HttpHeaderParser.parseCharset(response.headers));
+        } catch (UnsupportedEncodingException e) {
+            responseBody = new String(response.data);
+        }
+
+        Log.i(TAG, "Network response status: " + response.statusCode);
+
+        return Response.success(responseBody, HttpHeaderParser.parseCacheHeaders(response));
+    }
+
+    @Override
+    protected void deliverResponse(String response) {
+        mListener.onResponse(response);
+    }
+}
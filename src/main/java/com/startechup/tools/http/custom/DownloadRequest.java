@@ -0,0 +1,329 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.startechup.tools.http.OnProgressListener;
+import com.startechup.tools.http.ProgressReporter;
+import com.startechup.tools.http.ProgressRequest;
+import com.startechup.tools.http.StreamingRequest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Downloads the response body straight to a file through a fixed size buffer, the body is never
+ * held in memory. Bytes are written to a ".part" file next to the target and moved to the target
+ * once complete. If a partial file is left from an earlier attempt, only the missing range is
+ * requested from the server.
+ */
+public class DownloadRequest extends Request<File> implements StreamingRequest, ProgressRequest {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "DownloadRequest";
+
+    private static final int HTTP_PARTIAL_CONTENT = 206;
+
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+    /**
+     * Callback interface for delivering the downloaded file.
+     */
+    private final Response.Listener<File> mListener;
+
+    /**
+     * Where the download ends up once complete.
+     */
+    private final File mFile;
+
+    /**
+     * Receives the bytes while the download is running.
+     */
+    private final File mPartFile;
+
+    /**
+     * Holds the ETag or Last-Modified value of the partial file, used to resume only if the
+     * resource did not change in between.
+     */
+    private final File mValidatorFile;
+
+    private final Map<String, String> mHeaders;
+
+    /**
+     * Reports the download progress, null if not needed.
+     */
+    private ProgressReporter mProgressReporter;
+
+    /**
+     * Public constructor
+     *
+     * @param url URL of the file to download
+     * @param file Where the download is saved
+     * @param headers Headers to be included in the request, may be null
+     * @param listener Listener if the download was a success
+     * @param errorListener Listener if the download was a failure
+     */
+    public DownloadRequest(String url, File file, Map<String, String> headers,
+                           Response.Listener<File> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+
+        mListener = listener;
+        mFile = file;
+        mPartFile = new File(file.getPath() + ".part");
+        mValidatorFile = new File(file.getPath() + ".part.validator");
+        mHeaders = headers;
+
+        // The body never reaches Volley, there is nothing to cache.
+        setShouldCache(false);
+    }
+
+    /**
+     * Reports the download progress on the main thread, at most every
+     * {@link ProgressReporter#DEFAULT_INTERVAL_MS} milliseconds.
+     *
+     * @param progressListener Listener for the download progress
+     */
+    public void setProgressListener(OnProgressListener progressListener) {
+        mProgressReporter = new ProgressReporter(progressListener);
+    }
+
+    /**
+     * Reports the download progress through the given reporter, which decides on the rate and the
+     * thread the listener is called on.
+     *
+     * @param progressReporter Reporter for the download progress
+     */
+    public void setProgressReporter(ProgressReporter progressReporter) {
+        mProgressReporter = progressReporter;
+    }
+
+    @Override
+    public ProgressReporter getUploadProgressReporter() {
+        return null;
+    }
+
+    @Override
+    public ProgressReporter getDownloadProgressReporter() {
+        return mProgressReporter;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        Map<String, String> headers = new HashMap<>();
+        if(mHeaders != null) {
+            headers.putAll(mHeaders);
+        }
+
+        // Byte ranges must refer to the stored bytes, not to a transparently decompressed body.
+        headers.put("Accept-Encoding", "identity");
+
+        // Called again on every retry, so a retry continues from what was written so far.
+        long resumeOffset = mPartFile.length();
+        String validator = readValidator();
+        if(resumeOffset > 0 && validator != null) {
+            headers.put("Range", "bytes=" + resumeOffset + "-");
+            headers.put("If-Range", validator);
+        }
+
+        return headers;
+    }
+
+    @Override
+    public void onResponseStream(int statusCode, Map<String, String> headers, InputStream body,
+                                 byte[] buffer) throws IOException {
+        if(statusCode == HTTP_RANGE_NOT_SATISFIABLE) {
+            // The partial file may already hold the whole resource, otherwise it is of no use.
+            if(!isComplete(headers.get("Content-Range"))) {
+                discardPartial();
+                throw new IOException("Partial download does not match " + getUrl() + ", restarting");
+            }
+            return;
+        }
+
+        boolean append = statusCode == HTTP_PARTIAL_CONTENT && isContinuation(headers.get("Content-Range"));
+        if(statusCode == HTTP_PARTIAL_CONTENT && !append) {
+            // Writing an unrelated range at offset 0 would corrupt the file, retry without a Range.
+            discardPartial();
+            throw new IOException("Unexpected Content-Range " + headers.get("Content-Range") + ", restarting");
+        }
+
+        if(!append) {
+            // Either a fresh download or the server sent the whole resource again.
+            saveValidator(headers);
+        } else if(mProgressReporter != null) {
+            // Count the bytes written by earlier attempts as well.
+            long offset = mPartFile.length();
+            long remaining = parseLength(headers.get("Content-Length"));
+            mProgressReporter.start(offset, remaining >= 0 ? offset + remaining : -1);
+        }
+
+        FileOutputStream out = new FileOutputStream(mPartFile, append);
+        try {
+            int count;
+            while((count = body.read(buffer)) != -1) {
+                if(isCanceled()) {
+                    throw new IOException("Download cancelled");
+                }
+                out.write(buffer, 0, count);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    @Override
+    protected Response<File> parseNetworkResponse(NetworkResponse response) {
+        if(response.statusCode == HTTP_RANGE_NOT_SATISFIABLE && !isComplete(response.headers.get("Content-Range"))) {
+            return Response.error(new VolleyError("Range not satisfiable for " + getUrl()));
+        }
+
+        if(mFile.exists() && !mFile.delete()) {
+            return Response.error(new VolleyError("Unable to replace " + mFile));
+        }
+
+        if(!mPartFile.renameTo(mFile)) {
+            return Response.error(new VolleyError("Unable to move download to " + mFile));
+        }
+
+        if(mValidatorFile.exists() && !mValidatorFile.delete()) {
+            Log.w(TAG, "Unable to delete " + mValidatorFile);
+        }
+
+        Log.i(TAG, "Downloaded " + mFile.length() + " bytes to " + mFile);
+
+        return Response.success(mFile, null);
+    }
+
+    @Override
+    protected void deliverResponse(File response) {
+        mListener.onResponse(response);
+    }
+
+    /**
+     * Returns true if a Content-Range header starts right after the bytes already written.
+     */
+    private boolean isContinuation(String contentRange) {
+        if(contentRange == null || !contentRange.startsWith("bytes ")) {
+            return false;
+        }
+
+        int dash = contentRange.indexOf('-');
+        if(dash < 0) {
+            return false;
+        }
+
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim()) == mPartFile.length();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the "bytes *&#47;length" Content-Range of a 416 response equals the bytes
+     * already written.
+     */
+    private boolean isComplete(String contentRange) {
+        if(contentRange == null || !contentRange.startsWith("bytes */")) {
+            return false;
+        }
+
+        long length = parseLength(contentRange.substring("bytes */".length()));
+        return length >= 0 && length == mPartFile.length();
+    }
+
+    /**
+     * Deletes the partial file and its validator, so the next attempt downloads from the start.
+     */
+    private void discardPartial() throws IOException {
+        if(mPartFile.exists() && !mPartFile.delete()) {
+            throw new IOException("Unable to delete " + mPartFile);
+        }
+        if(mValidatorFile.exists() && !mValidatorFile.delete()) {
+            throw new IOException("Unable to delete " + mValidatorFile);
+        }
+    }
+
+    private static long parseLength(String contentLength) {
+        if(contentLength == null) {
+            return -1;
+        }
+
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String readValidator() {
+        if(!mValidatorFile.exists()) {
+            return null;
+        }
+
+        try {
+            FileInputStream in = new FileInputStream(mValidatorFile);
+            try {
+                byte[] data = new byte[(int) mValidatorFile.length()];
+                int read = in.read(data);
+                return read > 0 ? new String(data, 0, read, "UTF-8") : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void saveValidator(Map<String, String> headers) throws IOException {
+        String validator = headers.get("ETag");
+        if(validator == null) {
+            validator = headers.get("Last-Modified");
+        }
+
+        if(validator == null) {
+            // Without a validator a later resume could mix two versions of the resource.
+            if(mValidatorFile.exists() && !mValidatorFile.delete()) {
+                throw new IOException("Unable to delete " + mValidatorFile);
+            }
+            return;
+        }
+
+        FileOutputStream out = new FileOutputStream(mValidatorFile);
+        try {
+            out.write(validator.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -27,6 +27,10 @@ import com.android.volley.NetworkResponse;
 import com.android.volley.Request;
 import com.android.volley.Response;
 import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.OnProgressListener;
+import com.startechup.tools.http.ProgressReporter;
+import com.startechup.tools.http.ProgressRequest;
+import com.startechup.tools.http.StreamingBodyRequest;
 
 import org.apache.http.HttpEntity;
 import org.apache.http.entity.mime.HttpMultipartMode;
@@ -37,6 +41,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.HashMap;
@@ -44,15 +49,18 @@ import java.util.Map;
 import java.util.UUID;
 
 /**
- * This class does the uploading of the image to the API.
+ * This class does the uploading of the image to the API. The whole file is sent in a single
+ * request, use {@link com.startechup.tools.http.upload.ResumableUpload} for large files.
  */
-public class ImageUploadRequest extends Request<String> {
+public class ImageUploadRequest extends Request<String> implements StreamingBodyRequest, ProgressRequest {
 
     /**
      * Label to identify this class when debugging/logging.
      */
     private static final String TAG = "ImageUploadRequest";
 
+    public static final int DEFAULT_IMAGE_QUALITY = 30;
+
     private HttpEntity mHttpEntity;
 
     /**
@@ -72,6 +80,26 @@ public class ImageUploadRequest extends Request<String> {
 
     private String mFolderPath;
 
+    /**
+     * JPEG quality images are compressed with, from 0 to 100.
+     */
+    private int mImageQuality = DEFAULT_IMAGE_QUALITY;
+
+    /**
+     * Longest side of the uploaded image in pixels, 0 to keep the size.
+     */
+    private int mMaxImageSize;
+
+    /**
+     * True once compression is set, image files are only re-encoded then.
+     */
+    private boolean mCompressFile;
+
+    /**
+     * Reports the upload progress, null if not needed.
+     */
+    private ProgressReporter mUploadProgressReporter;
+
     /**
      * Public constructor
      *
@@ -86,8 +114,6 @@ public class ImageUploadRequest extends Request<String> {
         mListener = listener;
 
         mFileImage = fileImage;
-
-        mHttpEntity = buildMultipartEntity();
     }
 
     /**
@@ -104,14 +130,78 @@ public class ImageUploadRequest extends Request<String> {
         mListener = listener;
 
         mBitmap = bitmap;
-
-        mHttpEntity = buildMultipartEntity();
     }
 
+    /**
+     * Sets the folder the compressed copy of the image is written to before the upload.
+     */
     public void setFolderPath(String folderPath) {
         mFolderPath = folderPath;
     }
 
+    /**
+     * Sets how the image is compressed before the upload. Bitmaps are always compressed, image
+     * files are re-encoded only after this is called and if a folder path is set for the
+     * compressed copy, otherwise they are sent as is.
+     *
+     * @param quality JPEG quality from 0 to 100, {@link #DEFAULT_IMAGE_QUALITY} by default
+     * @param maxImageSize Longest side of the uploaded image in pixels, 0 to keep the size
+     */
+    public void setImageCompression(int quality, int maxImageSize) {
+        mImageQuality = quality;
+        mMaxImageSize = maxImageSize;
+        mCompressFile = true;
+    }
+
+    /**
+     * Reports the upload progress on the main thread, at most every
+     * {@link ProgressReporter#DEFAULT_INTERVAL_MS} milliseconds.
+     *
+     * @param progressListener Listener for the upload progress
+     */
+    public void setProgressListener(OnProgressListener progressListener) {
+        mUploadProgressReporter = new ProgressReporter(progressListener);
+    }
+
+    /**
+     * Reports the upload progress through the given reporter, which decides on the rate and the
+     * thread the listener is called on.
+     *
+     * @param progressReporter Reporter for the upload progress
+     */
+    public void setProgressReporter(ProgressReporter progressReporter) {
+        mUploadProgressReporter = progressReporter;
+    }
+
+    @Override
+    public ProgressReporter getUploadProgressReporter() {
+        return mUploadProgressReporter;
+    }
+
+    @Override
+    public ProgressReporter getDownloadProgressReporter() {
+        return null;
+    }
+
+    /**
+     * Returns the size of the multipart body, or -1 if unknown.
+     */
+    @Override
+    public long getBodyLength() {
+        return getHttpEntity().getContentLength();
+    }
+
+    /**
+     * Writes the multipart body straight to the connection, so the image is never copied into
+     * a byte array.
+     *
+     * @param out Stream to the connection
+     */
+    @Override
+    public void writeBody(OutputStream out) throws IOException {
+        getHttpEntity().writeTo(out);
+    }
+
     /**
      * Subclasses must implement this to perform delivery of the parsed
      * response to their listeners.  The given response is guaranteed to
@@ -204,7 +294,7 @@ public class ImageUploadRequest extends Request<String> {
      */
     @Override
     public String getBodyContentType() {
-        return mHttpEntity.getContentType().getValue();
+        return getHttpEntity().getContentType().getValue();
     }
 
     /**
@@ -220,7 +310,7 @@ public class ImageUploadRequest extends Request<String> {
     public byte[] getBody() throws AuthFailureError {
         ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
         try {
-            mHttpEntity.writeTo(byteStream);
+            getHttpEntity().writeTo(byteStream);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -228,6 +318,18 @@ public class ImageUploadRequest extends Request<String> {
         return byteStream.toByteArray();
     }
 
+    /**
+     * Returns the multipart body, built on first use so the compression settings and the folder
+     * path set after construction are taken into account.
+     */
+    private synchronized HttpEntity getHttpEntity() {
+        if(mHttpEntity == null) {
+            mHttpEntity = buildMultipartEntity();
+        }
+
+        return mHttpEntity;
+    }
+
     /**
      * Create an HTTP multipart/form-data enctype format to be passed on to the API.
      *
@@ -236,7 +338,10 @@ public class ImageUploadRequest extends Request<String> {
     private HttpEntity buildMultipartEntity() {
         MultipartEntityBuilder multipartBuilder = MultipartEntityBuilder.create();
 
-        if(mFileImage != null) {
+        if(mFileImage != null && mCompressFile && mFolderPath != null) {
+            // Image from the gallery, sent as a compressed copy
+            multipartBuilder.addPart("media", new FileBody(bitmapToFile(decodeScaled(mFileImage), mFolderPath)));
+        } else if(mFileImage != null) {
             // If File is not null, it means image came from gallery
             multipartBuilder.addPart("media", new FileBody(mFileImage));
         } else {
@@ -278,6 +383,31 @@ public class ImageUploadRequest extends Request<String> {
         return baos.toByteArray();
     }
 
+    /**
+     * Decodes an image file, subsampled to about the maximum image size so a large photo is never
+     * decoded at full resolution.
+     *
+     * @param fileImage Image to be decoded in File format
+     * @return Decoded image, at least as large as the maximum image size if that is set
+     */
+    private Bitmap decodeScaled(File fileImage) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if(mMaxImageSize > 0) {
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeFile(fileImage.getPath(), options);
+
+            int longestSide = Math.max(options.outWidth, options.outHeight);
+            int sampleSize = 1;
+            while(longestSide / (sampleSize * 2) >= mMaxImageSize) {
+                sampleSize *= 2;
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = sampleSize;
+        }
+
+        return BitmapFactory.decodeFile(fileImage.getPath(), options);
+    }
+
     /**
      * Resize and compress the image taken from the camera.
      *
@@ -291,7 +421,14 @@ public class ImageUploadRequest extends Request<String> {
         int origWidth = bitmap.getWidth();
         int origHeight = bitmap.getHeight();
 
-        Bitmap bitmapOut = Bitmap.createScaledBitmap(bitmap, origWidth, origHeight, false);
+        int longestSide = Math.max(origWidth, origHeight);
+        if(mMaxImageSize > 0 && longestSide > mMaxImageSize) {
+            float scale = (float) mMaxImageSize / longestSide;
+            origWidth = Math.max(1, Math.round(origWidth * scale));
+            origHeight = Math.max(1, Math.round(origHeight * scale));
+        }
+
+        Bitmap bitmapOut = Bitmap.createScaledBitmap(bitmap, origWidth, origHeight, true);
 
         File fileResized = new File(dirResized, UUID.randomUUID().toString() + "-resized.png");
         Log.i("Yo", "Yo File size: " + bitmapOut.getByteCount());
@@ -304,7 +441,7 @@ public class ImageUploadRequest extends Request<String> {
         FileOutputStream out;
         try {
             out = new FileOutputStream(fileResized);
-            bitmapOut.compress(Bitmap.CompressFormat.JPEG, 30, out);
+            bitmapOut.compress(Bitmap.CompressFormat.JPEG, mImageQuality, out);
 
             out.flush();
             out.close();
@@ -0,0 +1,242 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import android.util.JsonReader;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.JsonStreamConverter;
+import com.startechup.tools.http.MainThreadExecutor;
+import com.startechup.tools.http.OnItemsListener;
+import com.startechup.tools.http.StreamingRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads a response whose body is a JSON array element by element as the bytes arrive. Items are
+ * delivered in batches while the rest of the array is still downloading, the body is never held
+ * in memory as a whole.
+ *
+ * <p>If reading fails after some batches were delivered, the retry skips the items that were
+ * already delivered instead of delivering them twice.</p>
+ *
+ * @param <T> Type of the items
+ */
+public class JsonArrayStreamRequest<T> extends Request<List<T>> implements StreamingRequest {
+
+    public static final int DEFAULT_BATCH_SIZE = 20;
+
+    private final JsonStreamConverter<T> mConverter;
+
+    private final OnItemsListener<T> mListener;
+
+    private final Map<String, String> mHeaders;
+
+    private int mBatchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Runs the batch callbacks, must be the executor the response is delivered on so batches
+     * arrive before {@link OnItemsListener#onComplete(String)}.
+     */
+    private Executor mBatchExecutor = MainThreadExecutor.getInstance();
+
+    /**
+     * Number of items already delivered, kept across retries
+     */
+    private volatile int mDeliveredCount;
+
+    /**
+     * Items read after the last full batch, delivered with the response
+     */
+    private volatile List<T> mLastBatch;
+
+    private volatile String mNextPageUrl;
+
+    /**
+     * Public constructor
+     *
+     * @param url URL of the API
+     * @param headers Headers to be included in the request, may be null
+     * @param converter Decodes one element of the array
+     * @param listener Listener for the batches and the end of the array
+     * @param errorListener Listener if the request was a failure
+     */
+    public JsonArrayStreamRequest(String url, Map<String, String> headers, JsonStreamConverter<T> converter,
+                                  OnItemsListener<T> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+
+        mHeaders = headers;
+        mConverter = converter;
+        mListener = listener;
+
+        // The body never reaches Volley, there is nothing to cache.
+        setShouldCache(false);
+    }
+
+    /**
+     * Sets how many items are delivered at once, {@link #DEFAULT_BATCH_SIZE} by default. The first
+     * batch is a quarter of that so the first items show up as early as possible.
+     */
+    public void setBatchSize(int batchSize) {
+        if(batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+
+        mBatchSize = batchSize;
+    }
+
+    /**
+     * Sets the executor batches are delivered on, the main thread by default.
+     */
+    public void setBatchExecutor(Executor batchExecutor) {
+        mBatchExecutor = batchExecutor;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : new HashMap<String, String>();
+    }
+
+    @Override
+    public void onResponseStream(int statusCode, Map<String, String> headers, InputStream body,
+                                 byte[] buffer) throws IOException {
+        mNextPageUrl = parseNextPageUrl(headers.get("Link"));
+
+        String charset = HttpHeaderParser.parseCharset(headers, "UTF-8");
+        JsonReader reader = new JsonReader(new InputStreamReader(body, charset));
+
+        int delivered = mDeliveredCount;
+        int batchSize = delivered == 0 ? Math.max(1, mBatchSize / 4) : mBatchSize;
+        List<T> batch = new ArrayList<>(batchSize);
+        int index = 0;
+
+        reader.beginArray();
+        while(reader.hasNext()) {
+            if(isCanceled()) {
+                throw new IOException("Request cancelled");
+            }
+
+            if(index < delivered) {
+                // Delivered by an earlier attempt.
+                reader.skipValue();
+            } else {
+                batch.add(mConverter.readValue(reader));
+            }
+            index++;
+
+            if(batch.size() == batchSize) {
+                postBatch(batch);
+                mDeliveredCount = index;
+                batchSize = mBatchSize;
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        reader.endArray();
+
+        mLastBatch = batch;
+    }
+
+    @Override
+    protected Response<List<T>> parseNetworkResponse(NetworkResponse response) {
+        return Response.success(mLastBatch, null);
+    }
+
+    @Override
+    protected void deliverResponse(List<T> response) {
+        if(response != null && !response.isEmpty()) {
+            mListener.onItems(response);
+        }
+        mListener.onComplete(mNextPageUrl);
+    }
+
+    private void postBatch(final List<T> batch) {
+        mBatchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(!isCanceled()) {
+                    mListener.onItems(batch);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the target of the rel="next" link in a Link header (RFC 5988), resolved against the
+     * URL of this request.
+     */
+    private String parseNextPageUrl(String link) {
+        if(link == null) {
+            return null;
+        }
+
+        int start = 0;
+        while((start = link.indexOf('<', start)) != -1) {
+            int end = link.indexOf('>', start);
+            if(end == -1) {
+                return null;
+            }
+
+            int next = link.indexOf('<', end);
+            String params = link.substring(end + 1, next != -1 ? next : link.length()).trim();
+            if(params.endsWith(",")) {
+                params = params.substring(0, params.length() - 1);
+            }
+            if(isNextRelation(params)) {
+                String target = link.substring(start + 1, end).trim();
+                try {
+                    return new URL(new URL(getUrl()), target).toString();
+                } catch (MalformedURLException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }
+            start = end;
+        }
+
+        return null;
+    }
+
+    private static boolean isNextRelation(String params) {
+        for(String param : params.split(";")) {
+            String[] pair = param.trim().split("=", 2);
+            if(pair.length == 2 && pair[0].trim().equalsIgnoreCase("rel")) {
+                String rel = pair[1].trim().replace("\"", "");
+                for(String type : rel.split(" ")) {
+                    if(type.equalsIgnoreCase("next")) {
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,416 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.OnProgressListener;
+import com.startechup.tools.http.ProgressReporter;
+import com.startechup.tools.http.ProgressRequest;
+import com.startechup.tools.http.StreamingBodyRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uploads any number of files, bitmaps and form fields in a single multipart/form-data request.
+ * Bitmaps are compressed in parallel on a bounded pool as soon as the body is written, while the
+ * parts before them are already streaming to the connection.
+ */
+public class MultipartUploadRequest extends Request<String> implements StreamingBodyRequest, ProgressRequest {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "MultipartUploadRequest";
+
+    private static final String LINE_END = "\r\n";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Shared pool where bitmap parts are compressed, bounded so a large gallery does not start a
+     * thread per photo.
+     */
+    private static final ExecutorService ENCODE_POOL;
+
+    static {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        pool.allowCoreThreadTimeOut(true);
+        ENCODE_POOL = pool;
+    }
+
+    /**
+     * Callback interface for delivering parsed responses.
+     */
+    private final Response.Listener<String> mListener;
+
+    private final Map<String, String> mHeaders;
+
+    private final String mBoundary = UUID.randomUUID().toString();
+
+    private final List<Part> mParts = new ArrayList<>();
+
+    private ExecutorService mEncodeExecutor = ENCODE_POOL;
+
+    /**
+     * Reports the upload progress, null if not needed.
+     */
+    private ProgressReporter mUploadProgressReporter;
+
+    /**
+     * Public constructor
+     *
+     * @param url URL of the API on where to upload
+     * @param headers Headers to be included in the request, may be null
+     * @param listener Listener if the upload was a success
+     * @param errorListener Listener if the upload was a failure
+     */
+    public MultipartUploadRequest(String url, Map<String, String> headers,
+                                  Response.Listener<String> listener, Response.ErrorListener errorListener) {
+        super(Method.POST, url, errorListener);
+
+        mListener = listener;
+        mHeaders = headers;
+    }
+
+    /**
+     * Adds a form field.
+     *
+     * @param name Part name
+     * @param value Field value
+     */
+    public MultipartUploadRequest addField(String name, String value) {
+        mParts.add(new Part(name, null, "text/plain; charset=UTF-8", null, null, toBytes(value)));
+
+        return this;
+    }
+
+    /**
+     * Adds a file, streamed from disk as the body is written.
+     *
+     * @param name Part name
+     * @param file File to be uploaded
+     * @param contentType Content type of the file, e.g. "image/jpeg"
+     */
+    public MultipartUploadRequest addFile(String name, File file, String contentType) {
+        mParts.add(new Part(name, file.getName(), contentType, file, null, null));
+
+        return this;
+    }
+
+    /**
+     * Adds a bitmap, compressed to JPEG on the encoding pool.
+     *
+     * @param name Part name
+     * @param fileName File name sent to the API
+     * @param bitmap Image to be uploaded
+     * @param quality JPEG quality from 0 to 100
+     */
+    public MultipartUploadRequest addBitmap(String name, String fileName, Bitmap bitmap, int quality) {
+        return addBitmap(name, fileName, bitmap, Bitmap.CompressFormat.JPEG, quality);
+    }
+
+    /**
+     * Adds a bitmap, compressed on the encoding pool.
+     *
+     * @param name Part name
+     * @param fileName File name sent to the API
+     * @param bitmap Image to be uploaded
+     * @param format Compression format
+     * @param quality Compression quality from 0 to 100
+     */
+    public MultipartUploadRequest addBitmap(String name, String fileName, Bitmap bitmap,
+                                            Bitmap.CompressFormat format, int quality) {
+        String contentType = format == Bitmap.CompressFormat.PNG ? "image/png"
+                : format == Bitmap.CompressFormat.WEBP ? "image/webp" : "image/jpeg";
+        Part part = new Part(name, fileName, contentType, null, bitmap, null);
+        part.mFormat = format;
+        part.mQuality = quality;
+        mParts.add(part);
+
+        return this;
+    }
+
+    /**
+     * Sets the executor bitmaps are compressed on, by default a shared pool of at most 4 threads.
+     */
+    public void setEncodeExecutor(ExecutorService encodeExecutor) {
+        mEncodeExecutor = encodeExecutor;
+    }
+
+    /**
+     * Reports the upload progress on the main thread, at most every
+     * {@link ProgressReporter#DEFAULT_INTERVAL_MS} milliseconds.
+     *
+     * @param progressListener Listener for the upload progress
+     */
+    public void setProgressListener(OnProgressListener progressListener) {
+        mUploadProgressReporter = new ProgressReporter(progressListener);
+    }
+
+    /**
+     * Reports the upload progress through the given reporter.
+     *
+     * @param progressReporter Reporter for the upload progress
+     */
+    public void setProgressReporter(ProgressReporter progressReporter) {
+        mUploadProgressReporter = progressReporter;
+    }
+
+    @Override
+    public ProgressReporter getUploadProgressReporter() {
+        return mUploadProgressReporter;
+    }
+
+    @Override
+    public ProgressReporter getDownloadProgressReporter() {
+        return null;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : new HashMap<String, String>();
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return "multipart/form-data; boundary=" + mBoundary;
+    }
+
+    /**
+     * Returns the size of the body, or -1 if it has bitmaps that are not compressed yet.
+     */
+    @Override
+    public long getBodyLength() {
+        long length = 0;
+        for(Part part : mParts) {
+            long contentLength = part.getContentLength();
+            if(contentLength < 0) {
+                return -1;
+            }
+            length += part.getHeader(mBoundary).length + contentLength + LINE_END.length();
+        }
+
+        return length + toBytes("--" + mBoundary + "--" + LINE_END).length;
+    }
+
+    @Override
+    public void writeBody(OutputStream out) throws IOException {
+        // Start compressing every bitmap right away, parts are written in order as they get ready.
+        for(Part part : mParts) {
+            if(part.mBitmap != null && part.mEncoded == null) {
+                part.mEncoded = mEncodeExecutor.submit(part.newEncoder());
+            }
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        byte[] lineEnd = toBytes(LINE_END);
+        for(Part part : mParts) {
+            out.write(part.getHeader(mBoundary));
+            part.writeContent(out, buffer);
+            out.write(lineEnd);
+        }
+        out.write(toBytes("--" + mBoundary + "--" + LINE_END));
+    }
+
+    /**
+     * Not used by {@link com.startechup.tools.http.OkHttpStack}, which streams the body with
+     * {@link #writeBody(OutputStream)}. Kept for other HTTP stacks.
+     */
+    @Override
+    public byte[] getBody() throws AuthFailureError {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try {
+            writeBody(byteStream);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    @Override
+    protected Response<String> parseNetworkResponse(NetworkResponse response) {
+        String responseBody = "";
+        try {
+            responseBody = new String(response.data, "utf-8");
+        } catch (UnsupportedEncodingException e) {
+            e.printStackTrace();
+        }
+
+        Log.i(TAG, "Network response status: " + response.statusCode);
+
+        return Response.success(responseBody, HttpHeaderParser.parseCacheHeaders(response));
+    }
+
+    @Override
+    protected void deliverResponse(String response) {
+        releaseEncodedParts();
+        mListener.onResponse(response);
+    }
+
+    @Override
+    public void deliverError(VolleyError error) {
+        releaseEncodedParts();
+        super.deliverError(error);
+    }
+
+    /**
+     * Compressed bitmaps are kept for retries, drop them once the request is over.
+     */
+    private void releaseEncodedParts() {
+        for(Part part : mParts) {
+            part.mEncoded = null;
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\"", "%22").replace("\r", "%0D").replace("\n", "%0A") + "\"";
+    }
+
+    /**
+     * One part of the multipart body, holds exactly one of a file, a bitmap or bytes.
+     */
+    private static class Part {
+
+        final String mName;
+        final String mFileName;
+        final String mContentType;
+        final File mFile;
+        final Bitmap mBitmap;
+        final byte[] mBytes;
+
+        Bitmap.CompressFormat mFormat;
+        int mQuality;
+
+        /**
+         * Compressed bitmap, set once the body is first written.
+         */
+        volatile Future<byte[]> mEncoded;
+
+        Part(String name, String fileName, String contentType, File file, Bitmap bitmap, byte[] bytes) {
+            mName = name;
+            mFileName = fileName;
+            mContentType = contentType;
+            mFile = file;
+            mBitmap = bitmap;
+            mBytes = bytes;
+        }
+
+        byte[] getHeader(String boundary) {
+            StringBuilder header = new StringBuilder();
+            header.append("--").append(boundary).append(LINE_END);
+            header.append("Content-Disposition: form-data; name=").append(quote(mName));
+            if(mFileName != null) {
+                header.append("; filename=").append(quote(mFileName));
+            }
+            header.append(LINE_END);
+            header.append("Content-Type: ").append(mContentType).append(LINE_END);
+            header.append(LINE_END);
+
+            return toBytes(header.toString());
+        }
+
+        long getContentLength() {
+            if(mBytes != null) {
+                return mBytes.length;
+            }
+            if(mFile != null) {
+                return mFile.length();
+            }
+
+            return -1;
+        }
+
+        Callable<byte[]> newEncoder() {
+            return new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    mBitmap.compress(mFormat, mQuality, out);
+                    return out.toByteArray();
+                }
+            };
+        }
+
+        void writeContent(OutputStream out, byte[] buffer) throws IOException {
+            if(mBytes != null) {
+                out.write(mBytes);
+            } else if(mFile != null) {
+                InputStream in = new FileInputStream(mFile);
+                try {
+                    int count;
+                    while((count = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, count);
+                    }
+                } finally {
+                    in.close();
+                }
+            } else {
+                out.write(awaitEncoded());
+            }
+        }
+
+        private byte[] awaitEncoded() throws IOException {
+            try {
+                return mEncoded.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while compressing " + mName);
+            } catch (ExecutionException e) {
+                throw new IOException("Unable to compress " + mName, e.getCause());
+            }
+        }
+    }
+}
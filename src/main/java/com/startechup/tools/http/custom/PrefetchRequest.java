@@ -0,0 +1,85 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Cache;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * GET sent at the lowest priority only to store its response in the cache. Nothing is delivered,
+ * a later request to the same URL is answered from the cache.
+ */
+public class PrefetchRequest extends Request<Void> {
+
+    private final Map<String, String> mHeaders;
+
+    /**
+     * How long the response stays fresh if the server did not say
+     */
+    private final long mMaxAgeMs;
+
+    /**
+     * Public constructor
+     *
+     * @param url URL to prefetch
+     * @param headers Headers to be included in the request, may be null
+     * @param maxAgeMs How long the response is fresh if it has no cache headers
+     */
+    public PrefetchRequest(String url, Map<String, String> headers, long maxAgeMs) {
+        super(Method.GET, url, null);
+
+        mHeaders = headers;
+        mMaxAgeMs = maxAgeMs;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : new HashMap<String, String>();
+    }
+
+    @Override
+    protected Response<Void> parseNetworkResponse(NetworkResponse response) {
+        // Null for no-cache and no-store, those are not stored.
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if(entry != null && !response.headers.containsKey("Cache-Control")
+                && !response.headers.containsKey("Expires")) {
+            // Without freshness information the entry would be stale before anyone reads it. A
+            // server asking for revalidation, e.g. with max-age=0, is left alone.
+            entry.ttl = System.currentTimeMillis() + mMaxAgeMs;
+            entry.softTtl = entry.ttl;
+        }
+
+        return Response.success(null, entry);
+    }
+
+    @Override
+    protected void deliverResponse(Void response) {
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+import java.util.Map;
+
+/**
+ * Request that delivers the response body exactly as received. The array Volley read from the
+ * network is handed to the listener as is, without decoding it to a String or copying it.
+ */
+public class RawRequest extends Request<byte[]> {
+
+    /**
+     * Callback interface for delivering the response body.
+     */
+    private final Response.Listener<byte[]> mListener;
+
+    private final Map<String, String> mHeaders;
+
+    private final Map<String, String> mParams;
+
+    /**
+     * Public constructor
+     *
+     * @param method One of {@link com.android.volley.Request.Method}
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request, may be null
+     * @param params Body argument parameters to be included in the network request, may be null
+     * @param listener Listener if the request was a success
+     * @param errorListener Listener if the request was a failure
+     */
+    public RawRequest(int method, String url, Map<String, String> headers, Map<String, String> params,
+                      Response.Listener<byte[]> listener, Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+
+        mHeaders = headers;
+        mParams = params;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : super.getHeaders();
+    }
+
+    @Override
+    protected Map<String, String> getParams() throws AuthFailureError {
+        return mParams;
+    }
+
+    @Override
+    protected Response<byte[]> parseNetworkResponse(NetworkResponse response) {
+        return Response.success(response.data, HttpHeaderParser.parseCacheHeaders(response));
+    }
+
+    @Override
+    protected void deliverResponse(byte[] response) {
+        mListener.onResponse(response);
+    }
+}
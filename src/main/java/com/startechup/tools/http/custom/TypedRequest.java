@@ -0,0 +1,100 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.custom;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.ResponseConverter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Request that decodes its response into a model object with a {@link ResponseConverter}. Decoding
+ * happens on the network thread straight from the response bytes, without building a String of
+ * the whole body first.
+ *
+ * @param <T> Type of the model object
+ */
+public class TypedRequest<T> extends Request<T> {
+
+    /**
+     * Callback interface for delivering parsed responses.
+     */
+    private final Response.Listener<T> mListener;
+
+    private final ResponseConverter<T> mConverter;
+
+    private final Map<String, String> mHeaders;
+
+    private final Map<String, String> mParams;
+
+    /**
+     * Public constructor
+     *
+     * @param method One of {@link com.android.volley.Request.Method}
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request, may be null
+     * @param params Body argument parameters to be included in the network request, may be null
+     * @param converter Decodes the response body
+     * @param listener Listener if the request was a success
+     * @param errorListener Listener if the request was a failure
+     */
+    public TypedRequest(int method, String url, Map<String, String> headers, Map<String, String> params,
+                        ResponseConverter<T> converter, Response.Listener<T> listener,
+                        Response.ErrorListener errorListener) {
+        super(method, url, errorListener);
+
+        mHeaders = headers;
+        mParams = params;
+        mConverter = converter;
+        mListener = listener;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders != null ? mHeaders : super.getHeaders();
+    }
+
+    @Override
+    protected Map<String, String> getParams() throws AuthFailureError {
+        return mParams;
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        String charset = HttpHeaderParser.parseCharset(response.headers, "UTF-8");
+
+        try {
+            T result = mConverter.convert(new ByteArrayInputStream(response.data), charset);
+            return Response.success(result, HttpHeaderParser.parseCacheHeaders(response));
+        } catch (IOException | RuntimeException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        mListener.onResponse(response);
+    }
+}
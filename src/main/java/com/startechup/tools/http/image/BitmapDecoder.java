@@ -0,0 +1,95 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Decodes images no larger than needed, into a pooled bitmap when one fits.
+ */
+final class BitmapDecoder {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "BitmapDecoder";
+
+    /**
+     * Decodes one image at a time like Volley's ImageRequest, so several large images do not
+     * need their memory at once.
+     */
+    private static final Object DECODE_LOCK = new Object();
+
+    private BitmapDecoder() {
+    }
+
+    /**
+     * Decodes an image, subsampled to the smallest power of two that keeps it at least as large as
+     * the given size. A size of 0 leaves that side unconstrained.
+     *
+     * @return Decoded image, null if the data is not an image
+     */
+    static Bitmap decode(byte[] data, int maxWidth, int maxHeight, Bitmap.Config config, BitmapPool pool) {
+        synchronized (DECODE_LOCK) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            if(options.outWidth <= 0 || options.outHeight <= 0) {
+                return null;
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, maxWidth, maxHeight);
+            options.inPreferredConfig = config;
+            options.inMutable = true;
+
+            // Before KitKat only bitmaps of the exact size are reused, which subsampling rules out.
+            if(pool != null && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT || options.inSampleSize == 1)) {
+                int width = (options.outWidth + options.inSampleSize - 1) / options.inSampleSize;
+                int height = (options.outHeight + options.inSampleSize - 1) / options.inSampleSize;
+                options.inBitmap = pool.get(width, height, config);
+            }
+
+            try {
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            } catch (IllegalArgumentException e) {
+                // The pooled bitmap does not suit this image after all, decode into a new one.
+                Log.d(TAG, "Unable to reuse bitmap: " + e.getMessage());
+                options.inBitmap = null;
+                return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+            }
+        }
+    }
+
+    static int calculateInSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        if(maxWidth <= 0 && maxHeight <= 0) {
+            return 1;
+        }
+
+        int sampleSize = 1;
+        while((maxWidth <= 0 || width / (sampleSize * 2) >= maxWidth)
+                && (maxHeight <= 0 || height / (sampleSize * 2) >= maxHeight)) {
+            sampleSize *= 2;
+        }
+
+        return sampleSize;
+    }
+}
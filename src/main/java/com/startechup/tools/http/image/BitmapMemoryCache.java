@@ -0,0 +1,191 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+
+import com.startechup.tools.http.MemoryTrimmable;
+import com.startechup.tools.http.MemoryTrimmer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decoded images bounded by their size in bytes, the least recently used are dropped first.
+ * Bitmaps dropped by the size limit or a memory trim are handed to {@link #onEvicted(Bitmap)},
+ * the {@link ImageLoader} pools those no view displays anymore.
+ */
+public class BitmapMemoryCache implements MemoryTrimmable {
+
+    private final LinkedHashMap<String, Bitmap> mBitmaps = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final int mSizeLimit;
+
+    private int mCurrentSize;
+
+    private long mHitCount;
+
+    private long mMissCount;
+
+    /**
+     * Bytes dropped because of memory pressure
+     */
+    private long mTrimmedBytes;
+
+    /**
+     * Public constructor
+     *
+     * @param sizeLimit Maximum number of bytes kept in the cache
+     */
+    public BitmapMemoryCache(int sizeLimit) {
+        mSizeLimit = sizeLimit;
+    }
+
+    public synchronized Bitmap get(String key) {
+        Bitmap bitmap = mBitmaps.get(key);
+        if(bitmap != null) {
+            mHitCount++;
+        } else {
+            mMissCount++;
+        }
+
+        return bitmap;
+    }
+
+    public void put(String key, Bitmap bitmap) {
+        List<Bitmap> evicted = new ArrayList<>();
+        synchronized (this) {
+            int size = BitmapPool.getSize(bitmap);
+            if(size > mSizeLimit) {
+                evicted.add(bitmap);
+            } else {
+                Bitmap previous = mBitmaps.put(key, bitmap);
+                if(previous != null) {
+                    mCurrentSize -= BitmapPool.getSize(previous);
+                    if(previous != bitmap) {
+                        evicted.add(previous);
+                    }
+                }
+                mCurrentSize += size;
+
+                trimToSize(mSizeLimit, evicted);
+            }
+        }
+
+        notifyEvicted(evicted);
+    }
+
+    /**
+     * Removes every entry holding the given bitmap, returns true if there was one. The bitmap is
+     * not handed to {@link #onEvicted(Bitmap)}.
+     */
+    public synchronized boolean remove(Bitmap bitmap) {
+        boolean removed = false;
+        Iterator<Bitmap> iterator = mBitmaps.values().iterator();
+        while(iterator.hasNext()) {
+            if(iterator.next() == bitmap) {
+                iterator.remove();
+                mCurrentSize -= BitmapPool.getSize(bitmap);
+                removed = true;
+            }
+        }
+
+        return removed;
+    }
+
+    public void clear() {
+        List<Bitmap> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(mBitmaps.values());
+            mBitmaps.clear();
+            mCurrentSize = 0;
+        }
+
+        notifyEvicted(evicted);
+    }
+
+    @Override
+    public long trimMemory(int level) {
+        List<Bitmap> evicted = new ArrayList<>();
+        int released;
+        synchronized (this) {
+            released = trimToSize((int) (mSizeLimit * MemoryTrimmer.getRetainedFraction(level)), evicted);
+            mTrimmedBytes += released;
+        }
+
+        notifyEvicted(evicted);
+        return released;
+    }
+
+    /**
+     * Called with every bitmap dropped by the size limit, a memory trim or {@link #clear()}, not
+     * holding the lock of the cache. A view may still display it.
+     */
+    protected void onEvicted(Bitmap bitmap) {
+    }
+
+    public int getSizeLimit() {
+        return mSizeLimit;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the cache.
+     */
+    public synchronized int getCachedBytes() {
+        return mCurrentSize;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of bytes dropped so far because of memory pressure.
+     */
+    public synchronized long getTrimmedBytes() {
+        return mTrimmedBytes;
+    }
+
+    private int trimToSize(int size, List<Bitmap> evicted) {
+        int released = 0;
+        Iterator<Map.Entry<String, Bitmap>> iterator = mBitmaps.entrySet().iterator();
+        while(mCurrentSize > size && iterator.hasNext()) {
+            Bitmap bitmap = iterator.next().getValue();
+            int bitmapSize = BitmapPool.getSize(bitmap);
+            iterator.remove();
+            evicted.add(bitmap);
+            mCurrentSize -= bitmapSize;
+            released += bitmapSize;
+        }
+
+        return released;
+    }
+
+    private void notifyEvicted(List<Bitmap> evicted) {
+        for(Bitmap bitmap : evicted) {
+            onEvicted(bitmap);
+        }
+    }
+}
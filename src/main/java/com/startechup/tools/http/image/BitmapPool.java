@@ -0,0 +1,195 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.startechup.tools.http.MemoryTrimmable;
+import com.startechup.tools.http.MemoryTrimmer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Bitmaps no longer displayed, decoded into again through {@link android.graphics.BitmapFactory.Options#inBitmap}
+ * so scrolling through images does not allocate a new bitmap for each of them. From KitKat any
+ * bitmap large enough is reused, before that only one of the exact same size. Bitmaps are handed
+ * out smallest first and the least recently added are dropped once the pool is over its size
+ * limit.
+ */
+public class BitmapPool implements MemoryTrimmable {
+
+    /**
+     * A bitmap more than this many times larger than needed is not reused, it would hold on to
+     * too much memory for a small image.
+     */
+    private static final int MAX_SIZE_MULTIPLE = 4;
+
+    private static final Comparator<Bitmap> SIZE_COMPARATOR = new Comparator<Bitmap>() {
+        @Override
+        public int compare(Bitmap lhs, Bitmap rhs) {
+            return getSize(lhs) - getSize(rhs);
+        }
+    };
+
+    private final List<Bitmap> mBitmapsByLastUse = new LinkedList<>();
+
+    private final List<Bitmap> mBitmapsBySize = new ArrayList<>();
+
+    private final int mSizeLimit;
+
+    private int mCurrentSize;
+
+    private long mHitCount;
+
+    private long mMissCount;
+
+    /**
+     * Bytes dropped because of memory pressure
+     */
+    private long mTrimmedBytes;
+
+    /**
+     * Public constructor
+     *
+     * @param sizeLimit Maximum number of bytes kept in the pool
+     */
+    public BitmapPool(int sizeLimit) {
+        mSizeLimit = sizeLimit;
+    }
+
+    /**
+     * Returns a bitmap an image of the given size can be decoded into, null if there is none.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        int needed = width * height * getBytesPerPixel(config);
+        boolean anySize = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+
+        for(int i = 0; i < mBitmapsBySize.size(); i++) {
+            Bitmap bitmap = mBitmapsBySize.get(i);
+            int size = getSize(bitmap);
+            if(size < needed || bitmap.getConfig() != config) {
+                continue;
+            }
+            if(anySize && size > needed * MAX_SIZE_MULTIPLE) {
+                break;
+            }
+            if(!anySize && (bitmap.getWidth() != width || bitmap.getHeight() != height)) {
+                continue;
+            }
+
+            mBitmapsBySize.remove(i);
+            mBitmapsByLastUse.remove(bitmap);
+            mCurrentSize -= size;
+            mHitCount++;
+            return bitmap;
+        }
+
+        mMissCount++;
+        return null;
+    }
+
+    /**
+     * Adds a bitmap that is no longer displayed anywhere. It must not be used after this call.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if(bitmap == null || bitmap.isRecycled() || !bitmap.isMutable() || getSize(bitmap) > mSizeLimit
+                || mBitmapsByLastUse.contains(bitmap)) {
+            return;
+        }
+
+        mBitmapsByLastUse.add(bitmap);
+        int position = Collections.binarySearch(mBitmapsBySize, bitmap, SIZE_COMPARATOR);
+        if(position < 0) {
+            position = -position - 1;
+        }
+        mBitmapsBySize.add(position, bitmap);
+        mCurrentSize += getSize(bitmap);
+
+        trimToSize(mSizeLimit);
+    }
+
+    @Override
+    public synchronized long trimMemory(int level) {
+        int released = trimToSize((int) (mSizeLimit * MemoryTrimmer.getRetainedFraction(level)));
+        mTrimmedBytes += released;
+
+        return released;
+    }
+
+    public int getSizeLimit() {
+        return mSizeLimit;
+    }
+
+    /**
+     * Returns the number of bytes currently held by the pool.
+     */
+    public synchronized int getPooledBytes() {
+        return mCurrentSize;
+    }
+
+    /**
+     * Returns how many decodes reused a bitmap from the pool.
+     */
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * Returns the number of bytes dropped so far because of memory pressure.
+     */
+    public synchronized long getTrimmedBytes() {
+        return mTrimmedBytes;
+    }
+
+    static int getBytesPerPixel(Bitmap.Config config) {
+        if(config == Bitmap.Config.RGB_565) {
+            return 2;
+        }
+        if(config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+
+        return 4;
+    }
+
+    static int getSize(Bitmap bitmap) {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                ? bitmap.getAllocationByteCount() : bitmap.getByteCount();
+    }
+
+    private int trimToSize(int size) {
+        int released = 0;
+        while(mCurrentSize > size) {
+            Bitmap bitmap = mBitmapsByLastUse.remove(0);
+            mBitmapsBySize.remove(bitmap);
+            mCurrentSize -= getSize(bitmap);
+            released += getSize(bitmap);
+        }
+
+        return released;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import java.util.Map;
+
+/**
+ * Downloads and decodes an image for {@link ImageLoader}. The encoded bytes go to the loader's disk
+ * cache, not to the request queue's cache, so images do not push API responses out of it.
+ */
+class BitmapRequest extends Request<Bitmap> {
+
+    private final ImageLoader mLoader;
+
+    private final Map<String, String> mHeaders;
+
+    private final int mMaxWidth;
+
+    private final int mMaxHeight;
+
+    /**
+     * Callback interface for delivering the decoded image.
+     */
+    private final Response.Listener<Bitmap> mListener;
+
+    BitmapRequest(ImageLoader loader, String url, Map<String, String> headers, int maxWidth, int maxHeight,
+                  Response.Listener<Bitmap> listener, Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+
+        mLoader = loader;
+        mHeaders = headers;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mListener = listener;
+
+        setShouldCache(false);
+    }
+
+    @Override
+    public Priority getPriority() {
+        return Priority.LOW;
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders;
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        Bitmap bitmap = mLoader.decode(response.data, mMaxWidth, mMaxHeight);
+        if(bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+
+        mLoader.putOnDisk(getUrl(), response);
+
+        return Response.success(bitmap, null);
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+}
@@ -0,0 +1,487 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.startechup.tools.http.ValleyClient;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads images on the client's queue and transport and decodes them to the size they are
+ * displayed at. Decoded images are kept in a memory cache bounded in bytes and the downloaded
+ * bytes in a disk cache of their own; several loads of the same image at the same size share one
+ * download and one decode.
+ *
+ * <pre>
+ * NetworkingValley.loadImage(url, imageView.getWidth(), imageView.getHeight(), new OnImageListener() {
+ *     ...
+ * });
+ * </pre>
+ *
+ * Hand bitmaps that are no longer displayed back with {@link #release(Bitmap)}, once for every
+ * listener call that received them. A released bitmap stays in the memory cache for the next load
+ * of its image; once the cache drops it, later images are decoded into it instead of allocating
+ * new ones.
+ */
+public class ImageLoader {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "ImageLoader";
+
+    /**
+     * Default size of the disk cache, 50 MB.
+     */
+    public static final int DEFAULT_DISK_CACHE_SIZE = 50 * 1024 * 1024;
+
+    /**
+     * How long an image stays fresh on disk if the server sent no cache headers, 7 days.
+     */
+    public static final long DEFAULT_MAX_AGE_MS = TimeUnit.DAYS.toMillis(7);
+
+    private final ValleyClient mClient;
+
+    /**
+     * Listeners of images read from disk are called on it, the same as for downloaded images
+     */
+    private final Executor mDeliveryExecutor;
+
+    private final BitmapMemoryCache mMemoryCache;
+
+    private final BitmapPool mBitmapPool;
+
+    private final DiskBasedCache mDiskCache;
+
+    /**
+     * Reads and decodes images from the disk cache
+     */
+    private final ExecutorService mDiskExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * Loads waiting for their image, by cache key
+     */
+    private final Map<String, Batch> mBatches = new HashMap<>();
+
+    /**
+     * Number of listener calls each bitmap was handed to and not released yet
+     */
+    private final Map<Bitmap, Integer> mReferences = new IdentityHashMap<>();
+
+    /**
+     * Bitmaps the memory cache dropped while still in use, pooled after their last release
+     */
+    private final Set<Bitmap> mEvictedInUse = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    private volatile Bitmap.Config mBitmapConfig = Bitmap.Config.ARGB_8888;
+
+    /**
+     * Public constructor, the memory cache gets an eighth of the heap and the bitmap pool half as
+     * much.
+     *
+     * @param client Client the images are downloaded with
+     * @param diskCacheDir Directory of the disk cache, not shared with any other cache
+     * @param deliveryExecutor Executor the listeners are called on
+     */
+    public ImageLoader(ValleyClient client, File diskCacheDir, Executor deliveryExecutor) {
+        this(client, diskCacheDir, deliveryExecutor, (int) (Runtime.getRuntime().maxMemory() / 8),
+                DEFAULT_DISK_CACHE_SIZE);
+    }
+
+    /**
+     * Public constructor
+     *
+     * @param client Client the images are downloaded with
+     * @param diskCacheDir Directory of the disk cache, not shared with any other cache
+     * @param deliveryExecutor Executor the listeners are called on
+     * @param memoryCacheSize Maximum number of bytes of decoded images kept in memory, the bitmap
+     *                        pool keeps half as much
+     * @param diskCacheSize Maximum number of bytes of downloaded images kept on disk
+     */
+    public ImageLoader(ValleyClient client, File diskCacheDir, Executor deliveryExecutor,
+                       int memoryCacheSize, int diskCacheSize) {
+        mClient = client;
+        mDeliveryExecutor = deliveryExecutor;
+        mMemoryCache = new BitmapMemoryCache(memoryCacheSize) {
+            @Override
+            protected void onEvicted(Bitmap bitmap) {
+                recycle(bitmap);
+            }
+        };
+        mBitmapPool = new BitmapPool(memoryCacheSize / 2);
+
+        mDiskCache = new DiskBasedCache(diskCacheDir, diskCacheSize);
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mDiskCache.initialize();
+            }
+        });
+    }
+
+    /**
+     * Sets the configuration images are decoded with, {@link Bitmap.Config#RGB_565} halves their
+     * memory for images without transparency. Images already cached keep theirs.
+     */
+    public void setBitmapConfig(Bitmap.Config bitmapConfig) {
+        mBitmapConfig = bitmapConfig;
+    }
+
+    public BitmapMemoryCache getMemoryCache() {
+        return mMemoryCache;
+    }
+
+    public BitmapPool getBitmapPool() {
+        return mBitmapPool;
+    }
+
+    /**
+     * Loads an image decoded to at least the given size, e.g. the size of the view it is displayed
+     * in. The listener is called right away if the image is in the memory cache, otherwise on the
+     * delivery executor once it is read from disk or downloaded.
+     *
+     * @param url URL of the image
+     * @param maxWidth Width the image is displayed at, 0 for any
+     * @param maxHeight Height the image is displayed at, 0 for any
+     * @param listener Listener called with the image or the error
+     * @return Handle to cancel the load, e.g. when the view is recycled
+     */
+    public Handle load(String url, int maxWidth, int maxHeight, OnImageListener listener) {
+        String key = getCacheKey(url, maxWidth, maxHeight);
+        Handle handle = new Handle(key, listener);
+
+        Bitmap cached;
+        synchronized (mReferences) {
+            cached = mMemoryCache.get(key);
+            if(cached != null) {
+                acquire(cached);
+            }
+        }
+
+        if(cached != null) {
+            listener.onSuccess(cached);
+            return handle;
+        }
+
+        final Batch batch;
+        synchronized (mBatches) {
+            Batch running = mBatches.get(key);
+            if(running != null) {
+                running.mHandles.add(handle);
+                return handle;
+            }
+
+            batch = new Batch(key, url, maxWidth, maxHeight);
+            batch.mHandles.add(handle);
+            mBatches.put(key, batch);
+        }
+
+        mDiskExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                loadFromDisk(batch);
+            }
+        });
+
+        return handle;
+    }
+
+    /**
+     * Hands back a bitmap from this loader that is no longer displayed, it must not be drawn after
+     * this call. Once every listener call that received it released it, it stays in the memory
+     * cache until dropped from there, and later images are then decoded into it.
+     */
+    public void release(Bitmap bitmap) {
+        synchronized (mReferences) {
+            Integer count = mReferences.get(bitmap);
+            if(count == null) {
+                Log.w(TAG, "Released a bitmap that is not in use");
+                return;
+            }
+
+            if(count > 1) {
+                mReferences.put(bitmap, count - 1);
+                return;
+            }
+
+            mReferences.remove(bitmap);
+            if(mEvictedInUse.remove(bitmap)) {
+                mBitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Pools a bitmap dropped by the memory cache, or keeps it until its last release if a view
+     * still displays it.
+     */
+    private void recycle(Bitmap bitmap) {
+        synchronized (mReferences) {
+            if(mReferences.containsKey(bitmap)) {
+                mEvictedInUse.add(bitmap);
+            } else {
+                mBitmapPool.put(bitmap);
+            }
+        }
+    }
+
+    /**
+     * Counts a bitmap handed to a listener, called holding the lock of the references.
+     */
+    private void acquire(Bitmap bitmap) {
+        Integer count = mReferences.get(bitmap);
+        mReferences.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    Bitmap decode(byte[] data, int maxWidth, int maxHeight) {
+        return BitmapDecoder.decode(data, maxWidth, maxHeight, mBitmapConfig, mBitmapPool);
+    }
+
+    /**
+     * Stores a downloaded image on disk. Images sent with no-cache or no-store are not kept.
+     */
+    void putOnDisk(String url, NetworkResponse response) {
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if(entry == null) {
+            return;
+        }
+
+        if(!response.headers.containsKey("Cache-Control") && !response.headers.containsKey("Expires")) {
+            entry.ttl = System.currentTimeMillis() + DEFAULT_MAX_AGE_MS;
+            entry.softTtl = entry.ttl;
+        }
+
+        mDiskCache.put(url, entry);
+    }
+
+    private void loadFromDisk(Batch batch) {
+        synchronized (mBatches) {
+            if(batch.mHandles.isEmpty()) {
+                return;
+            }
+        }
+
+        Cache.Entry entry = mDiskCache.get(batch.mUrl);
+        if(entry != null && !entry.isExpired()) {
+            Bitmap bitmap = decode(entry.data, batch.mMaxWidth, batch.mMaxHeight);
+            if(bitmap != null) {
+                deliver(batch, bitmap);
+                return;
+            }
+
+            Log.w(TAG, "Unable to decode cached " + batch.mUrl);
+            mDiskCache.remove(batch.mUrl);
+            entry = null;
+        }
+
+        BitmapRequest request = newRequest(batch);
+        if(entry != null) {
+            // Expired, the server answers 304 if it did not change.
+            request.setCacheEntry(entry);
+        }
+
+        synchronized (mBatches) {
+            if(batch.mHandles.isEmpty()) {
+                return;
+            }
+            batch.mRequest = request;
+        }
+
+        mClient.addRequestQueue(request);
+    }
+
+    private BitmapRequest newRequest(final Batch batch) {
+        BitmapRequest request = new BitmapRequest(this, batch.mUrl, getHeaders(batch.mUrl), batch.mMaxWidth,
+                batch.mMaxHeight, new Response.Listener<Bitmap>() {
+            @Override
+            public void onResponse(Bitmap response) {
+                onLoaded(batch, response);
+            }
+        }, new Response.ErrorListener() {
+            @Override
+            public void onErrorResponse(VolleyError error) {
+                onFailed(batch, error);
+            }
+        });
+
+        request.setRetryPolicy(new DefaultRetryPolicy(mClient.getNetworkQuality().getTimeoutMs(),
+                DefaultRetryPolicy.DEFAULT_MAX_RETRIES,
+                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+
+        return request;
+    }
+
+    /**
+     * Returns the headers of an image request. The access token is only sent to the client's own
+     * API, not to the CDNs images are often served from.
+     */
+    private Map<String, String> getHeaders(String url) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "image/webp,image/*");
+
+        String baseUrl = mClient.getBaseUrl();
+        if(baseUrl != null && url.startsWith(baseUrl)) {
+            headers.put("Authorization", "Bearer " + mClient.getAccessToken());
+        }
+
+        return headers;
+    }
+
+    private void deliver(final Batch batch, final Bitmap bitmap) {
+        mDeliveryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                onLoaded(batch, bitmap);
+            }
+        });
+    }
+
+    private void onLoaded(Batch batch, Bitmap bitmap) {
+        List<Handle> handles;
+        synchronized (mBatches) {
+            removeBatch(batch);
+            handles = new ArrayList<>(batch.mHandles);
+            batch.mHandles.clear();
+        }
+
+        synchronized (mReferences) {
+            // Counted first, a bitmap too large for the cache is pooled right away otherwise.
+            for(int i = 0; i < handles.size(); i++) {
+                acquire(bitmap);
+            }
+            mMemoryCache.put(batch.mKey, bitmap);
+        }
+
+        for(Handle handle : handles) {
+            handle.mListener.onSuccess(bitmap);
+        }
+    }
+
+    private void onFailed(Batch batch, VolleyError error) {
+        List<Handle> handles;
+        synchronized (mBatches) {
+            removeBatch(batch);
+            handles = new ArrayList<>(batch.mHandles);
+            batch.mHandles.clear();
+        }
+
+        for(Handle handle : handles) {
+            handle.mListener.onFail(error.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Removes a finished batch unless a newer one already took its key, called holding the lock of
+     * the batches.
+     */
+    private void removeBatch(Batch batch) {
+        if(mBatches.get(batch.mKey) == batch) {
+            mBatches.remove(batch.mKey);
+        }
+    }
+
+    private static String getCacheKey(String url, int maxWidth, int maxHeight) {
+        return maxWidth + "x" + maxHeight + ":" + url;
+    }
+
+    /**
+     * A pending load, cancel it when its image is no longer needed.
+     */
+    public class Handle {
+
+        private final String mKey;
+
+        private final OnImageListener mListener;
+
+        Handle(String key, OnImageListener listener) {
+            mKey = key;
+            mListener = listener;
+        }
+
+        /**
+         * Stops the listener from being called. The download is cancelled if no other load waits
+         * for the same image.
+         */
+        public void cancel() {
+            synchronized (mBatches) {
+                Batch batch = mBatches.get(mKey);
+                if(batch == null || !batch.mHandles.remove(this)) {
+                    return;
+                }
+
+                if(batch.mHandles.isEmpty()) {
+                    mBatches.remove(mKey);
+                    if(batch.mRequest != null) {
+                        batch.mRequest.cancel();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads of the same image at the same size, served by one download and one decode.
+     */
+    private static class Batch {
+
+        final String mKey;
+        final String mUrl;
+        final int mMaxWidth;
+        final int mMaxHeight;
+
+        final List<Handle> mHandles = new ArrayList<>();
+
+        BitmapRequest mRequest;
+
+        Batch(String key, String url, int maxWidth, int maxHeight) {
+            mKey = key;
+            mUrl = url;
+            mMaxWidth = maxWidth;
+            mMaxHeight = maxHeight;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.image;
+
+import android.graphics.Bitmap;
+
+/**
+ * Listener for an image loaded by {@link ImageLoader}.
+ */
+public interface OnImageListener {
+
+    /**
+     * Callback when the image is decoded.
+     *
+     * @param bitmap Decoded image, at least as large as the requested size unless the image is
+     *               smaller
+     */
+    void onSuccess(Bitmap bitmap);
+
+    /**
+     * Callback when the image could not be downloaded or decoded.
+     *
+     * @param response Name of the error
+     */
+    void onFail(String response);
+}
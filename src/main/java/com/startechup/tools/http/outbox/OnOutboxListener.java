@@ -0,0 +1,41 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.outbox;
+
+/**
+ * Listener for the requests replayed by an {@link Outbox}. Called on the main thread, possibly
+ * long after the request was added or in a later run of the app.
+ */
+public interface OnOutboxListener {
+
+    /**
+     * Callback when a request was accepted by the API.
+     *
+     * @param idempotencyKey Key the request was added with
+     * @param response API response
+     */
+    void onSent(String idempotencyKey, String response);
+
+    /**
+     * Callback when the API rejected a request, it is removed from the outbox and not sent again.
+     *
+     * @param idempotencyKey Key the request was added with
+     * @param response API response, or the error name if there is none
+     */
+    void onFail(String idempotencyKey, String response);
+}
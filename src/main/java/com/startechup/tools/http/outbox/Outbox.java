@@ -0,0 +1,535 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.outbox;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.HttpHeaderParser;
+import com.android.volley.toolbox.RequestFuture;
+import com.startechup.tools.http.DirectExecutor;
+import com.startechup.tools.http.NetworkingValley;
+import com.startechup.tools.http.ValleyClient;
+import com.startechup.tools.http.body.RequestBody;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Durable queue for POST, PUT, PATCH and DELETE requests that must reach the API even if the
+ * device is offline or the app is killed. Requests are written to an append-only log on disk and
+ * sent in the order they were added whenever the device is connected.
+ *
+ * <ul>
+ *     <li>Every request has an idempotency key, sent in the Idempotency-Key header. A key that is
+ *     already in the outbox or was sent recently is not added again.</li>
+ *     <li>A PUT or DELETE replaces the PUT and PATCH requests to the same URL still waiting before
+ *     it, so only the final state of a resource is sent.</li>
+ *     <li>Requests are replayed one after another. When the API is unreachable the replay stops and
+ *     is tried again later with an increasing delay, so a reconnect does not start a retry storm.</li>
+ * </ul>
+ *
+ * <p>The Authorization header is never written to disk, the current access token is sent
+ * instead when the request is replayed.</p>
+ */
+public class Outbox {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "Outbox";
+
+    private static final String DEFAULT_DIR = "outbox";
+
+    private static final String LOG_FILE = "outbox.log";
+
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+
+    private static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+
+    private static final long INITIAL_BACKOFF_MS = 2000;
+
+    private static final long MAX_BACKOFF_MS = 5 * 60 * 1000;
+
+    /**
+     * Spreads the replays of many devices that reconnect at the same time.
+     */
+    private static final long RECONNECT_JITTER_MS = 3000;
+
+    /**
+     * Number of sent keys remembered to drop duplicates.
+     */
+    private static final int MAX_SENT_KEYS = 256;
+
+    private static final int HTTP_UNAUTHORIZED = 401;
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final Context mContext;
+
+    private final OutboxLog mLog;
+
+    /**
+     * Waiting requests by key, in the order they were added. Only touched on the outbox thread.
+     */
+    private final LinkedHashMap<String, OutboxEntry> mPending = new LinkedHashMap<>();
+
+    /**
+     * Keys of recently sent requests. Only touched on the outbox thread.
+     */
+    private final LinkedHashSet<String> mSentKeys = new LinkedHashSet<>();
+
+    /**
+     * Runs all disk and network work, one task at a time.
+     */
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, TAG);
+        }
+    });
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Random mRandom = new Random();
+
+    private OnOutboxListener mListener;
+
+    /**
+     * Client the requests are sent with, the default client if not set.
+     */
+    private volatile ValleyClient mClient;
+
+    private int mTimeoutMs = NetworkingValley.DEFAULT_TIMEOUT_MS;
+
+    private boolean mLoaded;
+
+    private long mBackoffMs = INITIAL_BACKOFF_MS;
+
+    private BroadcastReceiver mConnectivityReceiver;
+
+    /**
+     * Public constructor, the log is kept in the app's files directory.
+     *
+     * @param context Context of the application
+     */
+    public Outbox(Context context) {
+        this(context, new File(context.getFilesDir(), DEFAULT_DIR));
+    }
+
+    /**
+     * Public constructor
+     *
+     * @param context Context of the application
+     * @param dir Directory where the log is kept
+     */
+    public Outbox(Context context, File dir) {
+        mContext = context.getApplicationContext();
+        mLog = new OutboxLog(new File(dir, LOG_FILE));
+    }
+
+    public void setListener(OnOutboxListener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Sends the requests with the given client. Called by {@link ValleyClient.Builder#build()}
+     * for the client the outbox is set on.
+     */
+    public void setClient(ValleyClient client) {
+        mClient = client;
+    }
+
+    public void setTimeoutMs(int timeoutMs) {
+        mTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Adds a request built by one of the construct methods of {@link NetworkingValley}. Only its
+     * method, URL, headers and body are kept, its listeners are not called, results are reported
+     * to the {@link OnOutboxListener}.
+     *
+     * @param request Request to send
+     * @param idempotencyKey Identifies the request, e.g. an id generated when the user saved
+     */
+    public void add(Request<?> request, String idempotencyKey) {
+        try {
+            add(request.getMethod(), request.getUrl(), request.getHeaders(), request.getBodyContentType(),
+                    request.getBody(), idempotencyKey);
+        } catch (AuthFailureError e) {
+            throw new IllegalArgumentException("Unable to read the request", e);
+        }
+    }
+
+    /**
+     * Adds a request with a generated idempotency key.
+     *
+     * @param request Request to send
+     * @return Idempotency key of the request
+     */
+    public String add(Request<?> request) {
+        String idempotencyKey = UUID.randomUUID().toString();
+        add(request, idempotencyKey);
+
+        return idempotencyKey;
+    }
+
+    /**
+     * Adds a request with the given body.
+     *
+     * @param method One of {@link com.android.volley.Request.Method}
+     * @param url URL of the API
+     * @param headers Header parameters to be included in the network request, may be null
+     * @param body Body of the request, may be null
+     * @param idempotencyKey Identifies the request
+     */
+    public void add(int method, String url, Map<String, String> headers, RequestBody body,
+                    String idempotencyKey) {
+        try {
+            add(method, url, headers, body != null ? body.getContentType() : null,
+                    body != null ? body.toByteArray() : null, idempotencyKey);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Unable to encode the body", e);
+        }
+    }
+
+    private void add(int method, String url, Map<String, String> headers, String contentType,
+                     byte[] body, String idempotencyKey) {
+        Map<String, String> savedHeaders = new LinkedHashMap<>();
+        boolean authorized = false;
+        if(headers != null) {
+            for(Map.Entry<String, String> header : headers.entrySet()) {
+                if(HEADER_AUTHORIZATION.equalsIgnoreCase(header.getKey())) {
+                    authorized = true;
+                } else if(!"Content-Type".equalsIgnoreCase(header.getKey())) {
+                    savedHeaders.put(header.getKey(), header.getValue());
+                }
+            }
+        }
+
+        final OutboxEntry entry = new OutboxEntry(idempotencyKey, method, url, savedHeaders, authorized,
+                contentType, body);
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(!ensureLoaded()) {
+                    return;
+                }
+
+                append(entry);
+                replay();
+            }
+        });
+    }
+
+    /**
+     * Starts replaying the log now and whenever the device connects.
+     */
+    public void start() {
+        if(mConnectivityReceiver == null) {
+            mConnectivityReceiver = new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    if(isConnected()) {
+                        scheduleReplay(mRandom.nextInt((int) RECONNECT_JITTER_MS));
+                    }
+                }
+            };
+            mContext.registerReceiver(mConnectivityReceiver,
+                    new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+        }
+
+        flush();
+    }
+
+    /**
+     * Stops listening to connectivity changes. Requests still in the log are sent after the next
+     * {@link #start()}.
+     */
+    public void stop() {
+        if(mConnectivityReceiver != null) {
+            mContext.unregisterReceiver(mConnectivityReceiver);
+            mConnectivityReceiver = null;
+        }
+
+        mMainHandler.removeCallbacks(mReplayRunnable);
+    }
+
+    /**
+     * Sends the waiting requests now, if connected.
+     */
+    public void flush() {
+        mMainHandler.removeCallbacks(mReplayRunnable);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if(ensureLoaded()) {
+                    replay();
+                }
+            }
+        });
+    }
+
+    private final Runnable mReplayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private void scheduleReplay(long delayMs) {
+        mMainHandler.removeCallbacks(mReplayRunnable);
+        mMainHandler.postDelayed(mReplayRunnable, delayMs);
+    }
+
+    private boolean ensureLoaded() {
+        if(mLoaded) {
+            return true;
+        }
+
+        try {
+            List<String> done = new ArrayList<>();
+            mLog.load(mPending, done);
+            for(String key : done) {
+                rememberSent(key);
+            }
+            mLoaded = true;
+
+            Log.d(TAG, "Loaded " + mPending.size() + " waiting requests");
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to read the outbox", e);
+        }
+
+        return mLoaded;
+    }
+
+    private void append(OutboxEntry entry) {
+        if(mPending.containsKey(entry.mKey) || mSentKeys.contains(entry.mKey)) {
+            Log.d(TAG, "Dropping duplicate request " + entry.mKey);
+            return;
+        }
+
+        try {
+            mLog.appendAdd(entry);
+            mPending.put(entry.mKey, entry);
+
+            if(entry.mMethod == Request.Method.PUT || entry.mMethod == Request.Method.DELETE) {
+                collapse(entry);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to save request " + entry.mKey, e);
+        }
+    }
+
+    /**
+     * Drops the PUT and PATCH requests to the same URL that the given request makes obsolete,
+     * going back until a request to that URL that cannot be dropped.
+     */
+    private void collapse(OutboxEntry latest) throws IOException {
+        List<OutboxEntry> entries = new ArrayList<>(mPending.values());
+        for(int i=entries.size() - 2; i>=0; i--) {
+            OutboxEntry entry = entries.get(i);
+            if(!entry.mUrl.equals(latest.mUrl)) {
+                continue;
+            }
+
+            if(entry.mMethod != Request.Method.PUT && entry.mMethod != Request.Method.PATCH) {
+                break;
+            }
+
+            Log.d(TAG, "Request " + entry.mKey + " replaced by " + latest.mKey);
+            markDone(entry.mKey);
+        }
+    }
+
+    private void markDone(String key) throws IOException {
+        mLog.appendDone(key);
+        mPending.remove(key);
+        rememberSent(key);
+    }
+
+    private void rememberSent(String key) {
+        mSentKeys.add(key);
+        if(mSentKeys.size() > MAX_SENT_KEYS) {
+            Iterator<String> oldest = mSentKeys.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    /**
+     * Sends the waiting requests in order, stops at the first one that could not reach the API.
+     */
+    private void replay() {
+        while(!mPending.isEmpty() && isConnected()) {
+            OutboxEntry entry = mPending.values().iterator().next();
+
+            NetworkResponse response;
+            VolleyError error = null;
+            try {
+                response = send(entry);
+            } catch (VolleyError e) {
+                error = e;
+                response = e.networkResponse;
+            }
+
+            if(error != null && isTransient(response)) {
+                long delayMs = mBackoffMs / 2 + mRandom.nextInt((int) mBackoffMs);
+                mBackoffMs = Math.min(MAX_BACKOFF_MS, mBackoffMs * 2);
+                Log.d(TAG, "Replay stopped at " + entry.mKey + ", trying again in " + delayMs + " ms");
+                scheduleReplay(delayMs);
+                return;
+            }
+
+            mBackoffMs = INITIAL_BACKOFF_MS;
+            try {
+                markDone(entry.mKey);
+            } catch (IOException e) {
+                // Sent but not marked, it is sent again with the same idempotency key.
+                Log.e(TAG, "Unable to mark request " + entry.mKey + " as done", e);
+                mPending.remove(entry.mKey);
+            }
+
+            deliver(entry.mKey, response, error);
+        }
+
+        compactIfNeeded();
+    }
+
+    private NetworkResponse send(OutboxEntry entry) throws VolleyError {
+        ValleyClient client = mClient != null ? mClient : NetworkingValley.getDefaultClient();
+
+        Map<String, String> headers = new HashMap<>(entry.mHeaders);
+        headers.put(HEADER_IDEMPOTENCY_KEY, entry.mKey);
+        if(entry.mAuthorized) {
+            headers.put(HEADER_AUTHORIZATION, "Bearer " + client.getAccessToken());
+        }
+
+        RequestFuture<NetworkResponse> future = RequestFuture.newFuture();
+        OutboxRequest request = new OutboxRequest(entry, headers, mTimeoutMs, future);
+        future.setRequest(request);
+
+        // This thread blocks on the result, no need to go through the main thread.
+        client.addRequestQueue(request, DirectExecutor.getInstance());
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            request.cancel();
+            Thread.currentThread().interrupt();
+            throw new VolleyError("Replay interrupted");
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof VolleyError) {
+                throw (VolleyError) e.getCause();
+            }
+            throw new VolleyError(e.getCause());
+        }
+    }
+
+    /**
+     * Returns true if the request should be sent again later: no response at all, a server error,
+     * or a status asking to come back later. An expired token is also retried, after the app has
+     * refreshed it.
+     */
+    private static boolean isTransient(NetworkResponse response) {
+        if(response == null) {
+            return true;
+        }
+
+        int statusCode = response.statusCode;
+        return statusCode >= 500 || statusCode == HTTP_REQUEST_TIMEOUT
+                || statusCode == HTTP_TOO_MANY_REQUESTS || statusCode == HTTP_UNAUTHORIZED;
+    }
+
+    private void compactIfNeeded() {
+        if(mLog.getRecordCount() < 2 * (mPending.size() + mSentKeys.size()) + MAX_SENT_KEYS) {
+            return;
+        }
+
+        try {
+            mLog.compact(mPending.values(), mSentKeys);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to compact the outbox", e);
+        }
+    }
+
+    private void deliver(final String key, NetworkResponse response, final VolleyError error) {
+        final String body = response != null ? parseBody(response) : null;
+        final OnOutboxListener listener = mListener;
+        if(listener == null) {
+            return;
+        }
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(error == null) {
+                    listener.onSent(key, body);
+                } else {
+                    listener.onFail(key, body != null ? body : error.getClass().getSimpleName());
+                }
+            }
+        });
+    }
+
+    private static String parseBody(NetworkResponse response) {
+        if(response.data == null) {
+            return "";
+        }
+
+        try {
+            return new String(response.data, HttpHeaderParser.parseCharset(response.headers));
+        } catch (UnsupportedEncodingException e) {
+            return new String(response.data);
+        }
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.outbox;
+
+import java.util.Map;
+
+/**
+ * A request waiting in the {@link Outbox}.
+ */
+class OutboxEntry {
+
+    final String mKey;
+
+    final int mMethod;
+
+    final String mUrl;
+
+    /**
+     * Headers to send, without the Authorization header which is never written to disk.
+     */
+    final Map<String, String> mHeaders;
+
+    /**
+     * True if the current access token is sent with the request.
+     */
+    final boolean mAuthorized;
+
+    final String mContentType;
+
+    final byte[] mBody;
+
+    OutboxEntry(String key, int method, String url, Map<String, String> headers, boolean authorized,
+                String contentType, byte[] body) {
+        mKey = key;
+        mMethod = method;
+        mUrl = url;
+        mHeaders = headers;
+        mAuthorized = authorized;
+        mContentType = contentType;
+        mBody = body;
+    }
+}
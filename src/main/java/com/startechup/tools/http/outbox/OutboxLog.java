@@ -0,0 +1,262 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.outbox;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the {@link Outbox}. Every added request and every request that is done is
+ * a record at the end of the file, synced to disk before the call returns. A record that was only
+ * partly written when the process died fails its checksum and is cut off on the next load.
+ *
+ * <p>Record layout: length (int), payload, CRC32 of the payload (int).</p>
+ */
+class OutboxLog {
+
+    private static final String TAG = "OutboxLog";
+
+    private static final byte RECORD_ADD = 1;
+    private static final byte RECORD_DONE = 2;
+
+    /**
+     * Larger records can only come from a corrupt length field.
+     */
+    private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+
+    private final File mFile;
+
+    private FileOutputStream mOut;
+
+    /**
+     * Records written since the last compaction, including the ones it wrote.
+     */
+    private int mRecordCount;
+
+    OutboxLog(File file) {
+        mFile = file;
+    }
+
+    /**
+     * Reads the log.
+     *
+     * @param pending Receives the requests not done yet, in the order they were added
+     * @param done Receives the keys of the requests done since the last compaction
+     */
+    void load(Map<String, OutboxEntry> pending, Collection<String> done) throws IOException {
+        long validLength = 0;
+
+        if(mFile.exists()) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            try {
+                while(true) {
+                    byte[] payload = readRecord(in);
+                    if(payload == null) {
+                        break;
+                    }
+
+                    readPayload(payload, pending, done);
+                    validLength += 8 + payload.length;
+                    mRecordCount++;
+                }
+            } finally {
+                in.close();
+            }
+
+            if(validLength < mFile.length()) {
+                Log.w(TAG, "Dropping " + (mFile.length() - validLength) + " bytes of a torn record");
+                RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+                try {
+                    file.setLength(validLength);
+                } finally {
+                    file.close();
+                }
+            }
+        } else {
+            File dir = mFile.getParentFile();
+            if(dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create " + dir);
+            }
+        }
+
+        mOut = new FileOutputStream(mFile, true);
+    }
+
+    void appendAdd(OutboxEntry entry) throws IOException {
+        write(mOut, addPayload(entry));
+        mOut.getFD().sync();
+        mRecordCount++;
+    }
+
+    void appendDone(String key) throws IOException {
+        write(mOut, donePayload(key));
+        mOut.getFD().sync();
+        mRecordCount++;
+    }
+
+    int getRecordCount() {
+        return mRecordCount;
+    }
+
+    /**
+     * Rewrites the log with only the given records, replacing the file atomically.
+     */
+    void compact(Collection<OutboxEntry> pending, Collection<String> done) throws IOException {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            for(String key : done) {
+                write(out, donePayload(key));
+            }
+            for(OutboxEntry entry : pending) {
+                write(out, addPayload(entry));
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        mOut.close();
+        if(!tempFile.renameTo(mFile)) {
+            mOut = new FileOutputStream(mFile, true);
+            throw new IOException("Unable to replace " + mFile);
+        }
+
+        mOut = new FileOutputStream(mFile, true);
+        mRecordCount = done.size() + pending.size();
+    }
+
+    private static void write(FileOutputStream out, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(payload.length + 8);
+        DataOutputStream data = new DataOutputStream(record);
+        data.writeInt(payload.length);
+        data.write(payload);
+        data.writeInt((int) crc.getValue());
+
+        // One write call, so a record is either fully in the file or torn at its end.
+        out.write(record.toByteArray());
+    }
+
+    /**
+     * Returns the payload of the next record, or null at the end of the log or at a torn record.
+     */
+    private static byte[] readRecord(DataInputStream in) throws IOException {
+        try {
+            int length = in.readInt();
+            if(length < 0 || length > MAX_RECORD_LENGTH) {
+                return null;
+            }
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            int checksum = in.readInt();
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            return (int) crc.getValue() == checksum ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] addPayload(OutboxEntry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(RECORD_ADD);
+        out.writeUTF(entry.mKey);
+        out.writeInt(entry.mMethod);
+        out.writeUTF(entry.mUrl);
+        out.writeBoolean(entry.mAuthorized);
+        out.writeUTF(entry.mContentType != null ? entry.mContentType : "");
+        out.writeInt(entry.mHeaders.size());
+        for(Map.Entry<String, String> header : entry.mHeaders.entrySet()) {
+            out.writeUTF(header.getKey());
+            out.writeUTF(header.getValue());
+        }
+        if(entry.mBody != null) {
+            out.writeInt(entry.mBody.length);
+            out.write(entry.mBody);
+        } else {
+            out.writeInt(-1);
+        }
+
+        return payload.toByteArray();
+    }
+
+    private static byte[] donePayload(String key) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(RECORD_DONE);
+        out.writeUTF(key);
+
+        return payload.toByteArray();
+    }
+
+    private static void readPayload(byte[] payload, Map<String, OutboxEntry> pending,
+                                    Collection<String> done) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String key = in.readUTF();
+
+        if(type == RECORD_DONE) {
+            pending.remove(key);
+            done.add(key);
+            return;
+        }
+
+        int method = in.readInt();
+        String url = in.readUTF();
+        boolean authorized = in.readBoolean();
+        String contentType = in.readUTF();
+
+        int headerCount = in.readInt();
+        Map<String, String> headers = new LinkedHashMap<>();
+        for(int i=0; i<headerCount; i++) {
+            headers.put(in.readUTF(), in.readUTF());
+        }
+
+        byte[] body = null;
+        int bodyLength = in.readInt();
+        if(bodyLength >= 0) {
+            body = new byte[bodyLength];
+            in.readFully(body);
+        }
+
+        pending.put(key, new OutboxEntry(key, method, url, headers, authorized,
+                contentType.isEmpty() ? null : contentType, body));
+    }
+}
@@ -0,0 +1,362 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.push;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.util.Log;
+
+import com.startechup.tools.http.ValleyClient;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived connection the server pushes messages on, in place of polling. Connections go
+ * through the client's transport, with its connection pool and SSL setup. A lost connection is
+ * opened again after a backoff that doubles up to a maximum, with jitter so clients do not all
+ * come back at once; while the device is offline the channel waits for connectivity instead.
+ */
+public abstract class EventChannel {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "EventChannel";
+
+    public static final long DEFAULT_INITIAL_BACKOFF_MS = 1000;
+
+    public static final long DEFAULT_MAX_BACKOFF_MS = 60 * 1000;
+
+    /**
+     * Spreads the reconnects of many devices once their network is back.
+     */
+    private static final long RECONNECT_JITTER_MS = 3000;
+
+    /**
+     * Runs the reconnects, and the writes and pings of WebSockets.
+     */
+    static final ScheduledExecutorService SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, TAG);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    protected final ValleyClient mClient;
+
+    protected final String mUrl;
+
+    private final Context mContext;
+
+    private final Executor mDeliveryExecutor;
+
+    private final OnEventListener mListener;
+
+    private final Random mRandom = new Random();
+
+    private long mInitialBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+
+    private long mMaxBackoffMs = DEFAULT_MAX_BACKOFF_MS;
+
+    private long mBackoffMs = DEFAULT_INITIAL_BACKOFF_MS;
+
+    /**
+     * True between {@link #connect()} and {@link #close()}
+     */
+    private boolean mOpen;
+
+    private boolean mConnected;
+
+    /**
+     * True while an attempt is under way
+     */
+    private boolean mConnecting;
+
+    /**
+     * Increased on every connection attempt, callbacks of older attempts are ignored
+     */
+    private int mGeneration;
+
+    private ScheduledFuture<?> mReconnect;
+
+    private BroadcastReceiver mConnectivityReceiver;
+
+    /**
+     * Public constructor
+     *
+     * @param client Client whose transport and access token are used
+     * @param context Context to watch the connectivity with
+     * @param url URL of the channel
+     * @param deliveryExecutor Executor the listener is called on
+     * @param listener Listener for the messages
+     */
+    protected EventChannel(ValleyClient client, Context context, String url, Executor deliveryExecutor,
+                           OnEventListener listener) {
+        mClient = client;
+        mContext = context.getApplicationContext();
+        mUrl = url;
+        mDeliveryExecutor = deliveryExecutor;
+        mListener = listener;
+    }
+
+    /**
+     * Sets the delay before the first reconnect and the most it doubles up to.
+     */
+    public synchronized void setReconnectDelay(long initialBackoffMs, long maxBackoffMs) {
+        mInitialBackoffMs = initialBackoffMs;
+        mMaxBackoffMs = Math.max(initialBackoffMs, maxBackoffMs);
+        mBackoffMs = mInitialBackoffMs;
+    }
+
+    /**
+     * Opens the channel, it stays open and reconnects until {@link #close()}.
+     */
+    public synchronized void connect() {
+        if(mOpen) {
+            return;
+        }
+
+        mOpen = true;
+        mBackoffMs = mInitialBackoffMs;
+        mConnectivityReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onConnectivityChanged();
+            }
+        };
+        mContext.registerReceiver(mConnectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+
+        startConnection();
+    }
+
+    /**
+     * Closes the channel, the listener is called one last time with
+     * {@link OnEventListener#onClose()}.
+     */
+    public void close() {
+        synchronized (this) {
+            if(!stop()) {
+                return;
+            }
+            disconnect();
+        }
+
+        deliverClose();
+    }
+
+    public synchronized boolean isConnected() {
+        return mConnected;
+    }
+
+    /**
+     * Starts a connection attempt in the background. Report its outcome with
+     * {@link #onOpened(int)}, {@link #onFailed(int, String)} or {@link #onEnded(int)}. Called with
+     * the channel locked, it must not block.
+     *
+     * @param generation Identifies the attempt, passed back to the callbacks
+     */
+    protected abstract void open(int generation);
+
+    /**
+     * Drops the current connection, if any. Its callbacks are ignored from now on. Called with
+     * the channel locked, it must not block.
+     */
+    protected abstract void disconnect();
+
+    /**
+     * Returns the Authorization header of the client, read on every connect so a refreshed token is
+     * used.
+     */
+    protected String getAuthorization() {
+        return "Bearer " + mClient.getAccessToken();
+    }
+
+    /**
+     * Returns true if the attempt is still the current one.
+     */
+    protected synchronized boolean isCurrent(int generation) {
+        return mOpen && generation == mGeneration;
+    }
+
+    protected void onOpened(int generation) {
+        synchronized (this) {
+            if(!isCurrent(generation)) {
+                return;
+            }
+            mConnected = true;
+            mConnecting = false;
+            mBackoffMs = mInitialBackoffMs;
+        }
+
+        Log.i(TAG, "Connected to " + mUrl);
+        mDeliveryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onOpen();
+            }
+        });
+    }
+
+    protected void onMessage(int generation, final String type, final String data) {
+        if(!isCurrent(generation)) {
+            return;
+        }
+
+        mDeliveryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onMessage(type, data);
+            }
+        });
+    }
+
+    protected void onFailed(int generation, final String reason) {
+        long delayMs;
+        synchronized (this) {
+            if(!isCurrent(generation)) {
+                return;
+            }
+            mConnected = false;
+            mConnecting = false;
+            mGeneration++;
+            disconnect();
+
+            // Half of the backoff plus a random part of the other half.
+            delayMs = mBackoffMs / 2 + (long) (mRandom.nextDouble() * (mBackoffMs / 2));
+            mBackoffMs = Math.min(mMaxBackoffMs, mBackoffMs * 2);
+            scheduleReconnect(delayMs);
+        }
+
+        Log.w(TAG, "Connection to " + mUrl + " failed: " + reason + ", reconnecting in " + delayMs + " ms");
+        mDeliveryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onFail(reason);
+            }
+        });
+    }
+
+    /**
+     * Called when the server asked the client not to reconnect.
+     */
+    protected void onEnded(int generation) {
+        synchronized (this) {
+            if(!isCurrent(generation)) {
+                return;
+            }
+            stop();
+            disconnect();
+        }
+
+        Log.i(TAG, "Server ended " + mUrl);
+        deliverClose();
+    }
+
+    /**
+     * Marks the channel closed, returns false if it already was.
+     */
+    private boolean stop() {
+        if(!mOpen) {
+            return false;
+        }
+
+        mOpen = false;
+        mConnected = false;
+        mConnecting = false;
+        mGeneration++;
+        if(mReconnect != null) {
+            mReconnect.cancel(false);
+            mReconnect = null;
+        }
+        if(mConnectivityReceiver != null) {
+            mContext.unregisterReceiver(mConnectivityReceiver);
+            mConnectivityReceiver = null;
+        }
+
+        return true;
+    }
+
+    private synchronized void startConnection() {
+        mReconnect = null;
+        if(!mOpen || mConnected || mConnecting) {
+            return;
+        }
+
+        if(!isNetworkConnected()) {
+            // The connectivity receiver starts it once the device is back online.
+            return;
+        }
+
+        mConnecting = true;
+        open(++mGeneration);
+    }
+
+    private void scheduleReconnect(long delayMs) {
+        if(mReconnect != null) {
+            mReconnect.cancel(false);
+        }
+
+        mReconnect = SCHEDULER.schedule(new Runnable() {
+            @Override
+            public void run() {
+                startConnection();
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void onConnectivityChanged() {
+        // Only a channel waiting to reconnect cares, an open connection reports its own failure.
+        if(mOpen && !mConnected && !mConnecting && isNetworkConnected()) {
+            mBackoffMs = mInitialBackoffMs;
+            scheduleReconnect(mRandom.nextInt((int) RECONNECT_JITTER_MS));
+        }
+    }
+
+    private void deliverClose() {
+        mDeliveryExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onClose();
+            }
+        });
+    }
+
+    private boolean isNetworkConnected() {
+        ConnectivityManager connectivityManager =
+                (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if(connectivityManager == null) {
+            return true;
+        }
+
+        NetworkInfo networkInfo = connectivityManager.getActiveNetworkInfo();
+        return networkInfo != null && networkInfo.isConnected();
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.push;
+
+/**
+ * Listener for the messages of an {@link EventChannel}.
+ */
+public interface OnEventListener {
+
+    /**
+     * Callback when the channel is connected, again after every reconnect.
+     */
+    void onOpen();
+
+    /**
+     * Callback for every message pushed by the server.
+     *
+     * @param type Event name of a Server-Sent Event, "message" if it has none. "message" for a
+     *             WebSocket text frame, "binary" for a binary frame given in Base64.
+     * @param data Message content
+     */
+    void onMessage(String type, String data);
+
+    /**
+     * Callback when the connection could not be opened or was lost. The channel reconnects on its
+     * own after a backoff.
+     *
+     * @param response Reason of the failure
+     */
+    void onFail(String response);
+
+    /**
+     * Callback when the channel is closed with {@link EventChannel#close()}, or when the server
+     * asked not to reconnect.
+     */
+    void onClose();
+}
@@ -0,0 +1,227 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.push;
+
+import android.content.Context;
+
+import com.startechup.tools.http.ValleyClient;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+
+/**
+ * Server-Sent Events channel, a GET answered with a text/event-stream body that stays open. The
+ * id of the last event is sent back in Last-Event-ID on reconnect so the server can resume, and a
+ * "retry" field from the server sets the reconnect delay. The server ends the channel for good by
+ * answering 204.
+ */
+public class SseChannel extends EventChannel {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "SseChannel";
+
+    /**
+     * The connection is considered lost after this long without a byte, servers usually send a
+     * comment line every 15 to 30 seconds to keep it alive.
+     */
+    public static final int DEFAULT_READ_TIMEOUT_MS = 90 * 1000;
+
+    private static final int HTTP_NO_CONTENT = 204;
+
+    private volatile int mReadTimeoutMs = DEFAULT_READ_TIMEOUT_MS;
+
+    private volatile String mLastEventId;
+
+    /**
+     * Connection of the current attempt
+     */
+    private HttpURLConnection mConnection;
+
+    /**
+     * Public constructor
+     *
+     * @param client Client whose transport and access token are used
+     * @param context Context to watch the connectivity with
+     * @param url URL of the event stream
+     * @param deliveryExecutor Executor the listener is called on
+     * @param listener Listener for the events
+     */
+    public SseChannel(ValleyClient client, Context context, String url, Executor deliveryExecutor,
+                      OnEventListener listener) {
+        super(client, context, url, deliveryExecutor, listener);
+    }
+
+    /**
+     * Sets how long the stream may stay silent before it is reconnected.
+     */
+    public void setReadTimeoutMs(int readTimeoutMs) {
+        mReadTimeoutMs = readTimeoutMs;
+    }
+
+    /**
+     * Returns the id of the last event received, null if none had one.
+     */
+    public String getLastEventId() {
+        return mLastEventId;
+    }
+
+    @Override
+    protected void open(final int generation) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    read(generation);
+                } catch (IOException e) {
+                    onFailed(generation, e.getClass().getSimpleName());
+                }
+            }
+        }, TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    protected synchronized void disconnect() {
+        if(mConnection != null) {
+            // Unblocks the reading thread, which then finds its attempt is no longer current.
+            mConnection.disconnect();
+            mConnection = null;
+        }
+    }
+
+    private void read(int generation) throws IOException {
+        HttpURLConnection connection = mClient.getHttpStack().createConnection(new URL(mUrl));
+        connection.setConnectTimeout(mClient.getNetworkQuality().getTimeoutMs());
+        connection.setReadTimeout(mReadTimeoutMs);
+        connection.setUseCaches(false);
+        connection.setRequestProperty("Accept", "text/event-stream");
+        connection.setRequestProperty("Cache-Control", "no-cache");
+        connection.setRequestProperty("Authorization", getAuthorization());
+        if(mLastEventId != null) {
+            connection.setRequestProperty("Last-Event-ID", mLastEventId);
+        }
+
+        synchronized (this) {
+            if(!isCurrent(generation)) {
+                return;
+            }
+            mConnection = connection;
+        }
+
+        int statusCode = connection.getResponseCode();
+        if(statusCode == HTTP_NO_CONTENT) {
+            onEnded(generation);
+            return;
+        }
+
+        String contentType = connection.getContentType();
+        if(statusCode != HttpURLConnection.HTTP_OK || contentType == null
+                || !contentType.startsWith("text/event-stream")) {
+            onFailed(generation, "HTTP " + statusCode + " " + contentType);
+            return;
+        }
+
+        onOpened(generation);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"));
+        try {
+            readEvents(generation, reader);
+        } finally {
+            reader.close();
+        }
+
+        onFailed(generation, "Stream ended");
+    }
+
+    /**
+     * Reads events as the server sends them, until the stream ends.
+     */
+    private void readEvents(int generation, BufferedReader reader) throws IOException {
+        StringBuilder data = new StringBuilder();
+        boolean hasData = false;
+        String type = null;
+
+        String line;
+        while((line = reader.readLine()) != null && isCurrent(generation)) {
+            if(line.isEmpty()) {
+                // A blank line dispatches the event read so far.
+                if(hasData) {
+                    onMessage(generation, type != null ? type : "message", data.toString());
+                }
+                data.setLength(0);
+                hasData = false;
+                type = null;
+                continue;
+            }
+
+            if(line.startsWith(":")) {
+                // Comment, usually a keep-alive.
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            String field = colon >= 0 ? line.substring(0, colon) : line;
+            String value = colon >= 0 ? line.substring(colon + 1) : "";
+            if(value.startsWith(" ")) {
+                value = value.substring(1);
+            }
+
+            switch(field) {
+                case "data":
+                    if(hasData) {
+                        data.append('\n');
+                    }
+                    data.append(value);
+                    hasData = true;
+                    break;
+                case "event":
+                    type = value;
+                    break;
+                case "id":
+                    if(value.indexOf('\0') < 0) {
+                        mLastEventId = value;
+                    }
+                    break;
+                case "retry":
+                    setRetry(value);
+                    break;
+                default:
+                    // Unknown fields are ignored.
+                    break;
+            }
+        }
+    }
+
+    private void setRetry(String value) {
+        try {
+            long retryMs = Long.parseLong(value.trim());
+            if(retryMs > 0) {
+                setReconnectDelay(retryMs, Math.max(retryMs, DEFAULT_MAX_BACKOFF_MS));
+            }
+        } catch (NumberFormatException e) {
+            // Not a number, ignored like the spec says.
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.push;
+
+import android.content.Context;
+import android.util.Base64;
+import android.util.Log;
+
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Request;
+import com.squareup.okhttp.RequestBody;
+import com.squareup.okhttp.Response;
+import com.squareup.okhttp.ResponseBody;
+import com.squareup.okhttp.ws.WebSocket;
+import com.squareup.okhttp.ws.WebSocketCall;
+import com.squareup.okhttp.ws.WebSocketListener;
+import com.startechup.tools.http.ValleyClient;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+/**
+ * WebSocket channel on the client's OkHttp client, sharing its connection pool and SSL setup. The
+ * connection has no read timeout, a ping is sent at a fixed interval instead and a ping left
+ * without a pong counts as a lost connection.
+ */
+public class WebSocketChannel extends EventChannel {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "WebSocketChannel";
+
+    public static final long DEFAULT_PING_INTERVAL_MS = 30 * 1000;
+
+    private static final int CLOSE_NORMAL = 1000;
+
+    private final OkHttpClient mOkHttpClient;
+
+    private volatile long mPingIntervalMs = DEFAULT_PING_INTERVAL_MS;
+
+    private WebSocketCall mCall;
+
+    private WebSocket mWebSocket;
+
+    private ScheduledFuture<?> mPing;
+
+    private boolean mAwaitingPong;
+
+    /**
+     * Public constructor
+     *
+     * @param client Client whose transport and access token are used
+     * @param context Context to watch the connectivity with
+     * @param url URL of the WebSocket, ws:// or wss://
+     * @param deliveryExecutor Executor the listener is called on
+     * @param listener Listener for the messages
+     */
+    public WebSocketChannel(ValleyClient client, Context context, String url, Executor deliveryExecutor,
+                            OnEventListener listener) {
+        super(client, context, url, deliveryExecutor, listener);
+
+        // Same pool and SSL setup, but a silent socket is fine, the pings tell if it is alive.
+        mOkHttpClient = client.getHttpStack().getOkHttpClient().clone();
+        mOkHttpClient.setReadTimeout(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sets the interval of the pings, which also bounds how long a dead connection goes unnoticed.
+     */
+    public void setPingIntervalMs(long pingIntervalMs) {
+        mPingIntervalMs = pingIntervalMs;
+    }
+
+    /**
+     * Sends a text message. Dropped if the channel is not connected.
+     *
+     * @return False if the channel is not connected
+     */
+    public boolean send(final String text) {
+        final WebSocket webSocket;
+        synchronized (this) {
+            webSocket = mWebSocket;
+        }
+        if(webSocket == null) {
+            return false;
+        }
+
+        // Writes happen off the caller's thread, which is often the main thread.
+        SCHEDULER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    webSocket.sendMessage(RequestBody.create(WebSocket.TEXT, text));
+                } catch (IOException | IllegalStateException e) {
+                    Log.w(TAG, "Unable to send message: " + e.getMessage());
+                }
+            }
+        });
+
+        return true;
+    }
+
+    @Override
+    protected void open(final int generation) {
+        Request request = new Request.Builder()
+                .url(toHttpUrl(mUrl))
+                .header("Authorization", getAuthorization())
+                .build();
+
+        WebSocketCall call = WebSocketCall.create(mOkHttpClient, request);
+        synchronized (this) {
+            mCall = call;
+        }
+
+        call.enqueue(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                synchronized (WebSocketChannel.this) {
+                    if(!isCurrent(generation)) {
+                        closeQuietly(webSocket);
+                        return;
+                    }
+                    mWebSocket = webSocket;
+                    startPings(generation, webSocket);
+                }
+                onOpened(generation);
+            }
+
+            @Override
+            public void onFailure(IOException e, Response response) {
+                onFailed(generation, response != null
+                        ? "HTTP " + response.code() : e != null ? e.getClass().getSimpleName() : "Failure");
+            }
+
+            @Override
+            public void onMessage(ResponseBody message) throws IOException {
+                try {
+                    if(WebSocket.BINARY.equals(message.contentType())) {
+                        WebSocketChannel.this.onMessage(generation, "binary",
+                                Base64.encodeToString(message.bytes(), Base64.NO_WRAP));
+                    } else {
+                        WebSocketChannel.this.onMessage(generation, "message", message.string());
+                    }
+                } finally {
+                    message.close();
+                }
+            }
+
+            @Override
+            public void onPong(Buffer payload) {
+                synchronized (WebSocketChannel.this) {
+                    mAwaitingPong = false;
+                }
+            }
+
+            @Override
+            public void onClose(int code, String reason) {
+                // Servers close for deploys and load balancing too, so reconnect.
+                onFailed(generation, "Closed " + code + " " + reason);
+            }
+        });
+    }
+
+    @Override
+    protected synchronized void disconnect() {
+        if(mPing != null) {
+            mPing.cancel(false);
+            mPing = null;
+        }
+        if(mCall != null) {
+            mCall.cancel();
+            mCall = null;
+        }
+        if(mWebSocket != null) {
+            closeQuietly(mWebSocket);
+            mWebSocket = null;
+        }
+    }
+
+    private void startPings(final int generation, final WebSocket webSocket) {
+        mAwaitingPong = false;
+        mPing = SCHEDULER.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                boolean awaitingPong;
+                synchronized (WebSocketChannel.this) {
+                    awaitingPong = mAwaitingPong;
+                    mAwaitingPong = true;
+                }
+
+                if(awaitingPong) {
+                    onFailed(generation, "Ping timeout");
+                    return;
+                }
+
+                try {
+                    webSocket.sendPing(new Buffer().writeUtf8("ping"));
+                } catch (IOException | IllegalStateException e) {
+                    onFailed(generation, "Unable to send ping: " + e.getMessage());
+                }
+            }
+        }, mPingIntervalMs, mPingIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeQuietly(final WebSocket webSocket) {
+        SCHEDULER.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    webSocket.close(CLOSE_NORMAL, null);
+                } catch (IOException | IllegalStateException e) {
+                    Log.v(TAG, "Error occurred when closing the WebSocket");
+                }
+            }
+        });
+    }
+
+    /**
+     * OkHttp opens WebSockets from an http or https URL.
+     */
+    private static String toHttpUrl(String url) {
+        if(url.regionMatches(true, 0, "ws:", 0, 3)) {
+            return "http:" + url.substring(3);
+        }
+        if(url.regionMatches(true, 0, "wss:", 0, 4)) {
+            return "https:" + url.substring(4);
+        }
+
+        return url;
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.RequestFuture;
+import com.startechup.tools.http.DirectExecutor;
+import com.startechup.tools.http.NetworkingValley;
+import com.startechup.tools.http.OnAPIListener;
+import com.startechup.tools.http.ValleyClient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Uploads a large file in fixed size chunks. Progress is saved to disk after every chunk the
+ * server acknowledges, so a failed or killed upload continues from the last acknowledged offset
+ * when {@link #start()} is called again instead of sending the whole file again.
+ *
+ * <p>With {@link #setParallelUploads(int)} the file is split into parts that are uploaded at the
+ * same time and joined on the server, if the {@link UploadProtocol} supports it.</p>
+ */
+public class ResumableUpload {
+
+    /**
+     * Label to identify this class when debugging/logging.
+     */
+    private static final String TAG = "ResumableUpload";
+
+    /**
+     * Default chunk size at 1 MB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_GONE = 410;
+
+    /**
+     * URL where uploads are created.
+     */
+    private final String mEndpoint;
+
+    /**
+     * File to be uploaded.
+     */
+    private final File mFile;
+
+    /**
+     * Directory where the upload progress is saved.
+     */
+    private final File mStateDir;
+
+    /**
+     * Headers added to every call, e.g. the Authorization header.
+     */
+    private final Map<String, String> mHeaders;
+
+    private final OnAPIListener mListener;
+
+    /**
+     * Client the protocol calls are sent with, the default client if null.
+     */
+    private final ValleyClient mClient;
+
+    private UploadProtocol mProtocol = new TusUploadProtocol();
+
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+
+    private int mParallelUploads = 1;
+
+    private int mTimeoutMs = NetworkingValley.DEFAULT_TIMEOUT_MS;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final AtomicBoolean mRunning = new AtomicBoolean();
+
+    private volatile ExecutorService mPartExecutor;
+
+    private volatile Thread mUploadThread;
+
+    /**
+     * Set by {@link #cancel()}, the errors caused by stopping the upload are not reported
+     */
+    private volatile boolean mCancelled;
+
+    /**
+     * Public constructor
+     *
+     * @param endpoint URL of the API where uploads are created
+     * @param file File to be uploaded
+     * @param stateDir Directory where the upload progress is saved
+     * @param headers Headers added to every call
+     * @param listener Listener called with the URL of the completed upload, or on failure
+     */
+    public ResumableUpload(String endpoint, File file, File stateDir, Map<String, String> headers,
+                           OnAPIListener listener) {
+        this(null, endpoint, file, stateDir, headers, listener);
+    }
+
+    /**
+     * Public constructor
+     *
+     * @param client Client the upload is sent with
+     * @param endpoint URL of the API where uploads are created
+     * @param file File to be uploaded
+     * @param stateDir Directory where the upload progress is saved
+     * @param headers Headers added to every call
+     * @param listener Listener called with the URL of the completed upload, or on failure
+     */
+    public ResumableUpload(ValleyClient client, String endpoint, File file, File stateDir,
+                           Map<String, String> headers, OnAPIListener listener) {
+        mClient = client;
+        mEndpoint = endpoint;
+        mFile = file;
+        mStateDir = stateDir;
+        mHeaders = headers != null ? headers : new HashMap<String, String>();
+        mListener = listener;
+    }
+
+    public void setProtocol(UploadProtocol protocol) {
+        mProtocol = protocol;
+    }
+
+    /**
+     * Sets how many bytes are sent per request, {@link #DEFAULT_CHUNK_SIZE} by default.
+     */
+    public void setChunkSize(int chunkSize) {
+        if(chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+
+        mChunkSize = chunkSize;
+    }
+
+    /**
+     * Number of parts uploaded at the same time. Ignored if the protocol cannot join parts, or
+     * when resuming an upload that was started with a different value.
+     */
+    public void setParallelUploads(int parallelUploads) {
+        mParallelUploads = Math.max(1, parallelUploads);
+    }
+
+    public void setTimeoutMs(int timeoutMs) {
+        mTimeoutMs = timeoutMs;
+    }
+
+    /**
+     * Starts the upload, or resumes it from the saved progress. Does nothing if already running.
+     */
+    public void start() {
+        if(!mRunning.compareAndSet(false, true)) {
+            return;
+        }
+
+        mCancelled = false;
+        mUploadThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runUpload();
+            }
+        }, TAG);
+        mUploadThread.start();
+    }
+
+    /**
+     * Stops the upload without calling the listener. The saved progress is kept, call
+     * {@link #start()} to resume.
+     */
+    public void cancel() {
+        mCancelled = true;
+        Thread uploadThread = mUploadThread;
+        if(uploadThread != null) {
+            uploadThread.interrupt();
+        }
+
+        ExecutorService partExecutor = mPartExecutor;
+        if(partExecutor != null) {
+            partExecutor.shutdownNow();
+        }
+    }
+
+    public boolean isRunning() {
+        return mRunning.get();
+    }
+
+    private void runUpload() {
+        try {
+            final UploadState state = loadOrCreateState();
+
+            mPartExecutor = Executors.newFixedThreadPool(state.mParts.length);
+
+            List<Future<Void>> results = new ArrayList<>();
+            for(final UploadState.Part part : state.mParts) {
+                results.add(mPartExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        uploadPart(state, part);
+                        return null;
+                    }
+                }));
+            }
+
+            for(Future<Void> result : results) {
+                result.get();
+            }
+
+            String uploadUrl;
+            if(state.mParts.length == 1) {
+                uploadUrl = state.mParts[0].mUrl;
+            } else {
+                List<String> partUrls = new ArrayList<>();
+                for(UploadState.Part part : state.mParts) {
+                    partUrls.add(part.mUrl);
+                }
+                uploadUrl = mProtocol.concatenate(mTransport, mEndpoint, partUrls);
+            }
+
+            state.delete();
+
+            Log.d(TAG, "Upload complete: " + uploadUrl);
+            deliverSuccess(uploadUrl);
+        } catch (ExecutionException e) {
+            onUploadFailed(e.getCause());
+        } catch (InterruptedException | VolleyError | IOException | RuntimeException e) {
+            onUploadFailed(e);
+        } finally {
+            if(mPartExecutor != null) {
+                mPartExecutor.shutdownNow();
+                mPartExecutor = null;
+            }
+            mUploadThread = null;
+            mRunning.set(false);
+        }
+    }
+
+    private void onUploadFailed(Throwable error) {
+        if(mCancelled) {
+            Log.d(TAG, "Upload cancelled: " + mFile);
+            return;
+        }
+
+        Log.w(TAG, "Upload failed: " + mFile, error);
+        deliverFail(error);
+    }
+
+    private UploadState loadOrCreateState() throws IOException {
+        String fingerprint = mEndpoint + "|" + mFile.getAbsolutePath() + "|" + mFile.length()
+                + "|" + mFile.lastModified();
+        File stateFile = new File(mStateDir, sha1(fingerprint) + ".upload");
+
+        UploadState state = UploadState.load(stateFile, fingerprint);
+        if(state != null) {
+            Log.d(TAG, "Resuming upload of " + mFile);
+            return state;
+        }
+
+        if(!mStateDir.exists() && !mStateDir.mkdirs()) {
+            throw new IOException("Unable to create " + mStateDir);
+        }
+
+        long length = mFile.length();
+        int partCount = mProtocol.supportsConcatenation() ? mParallelUploads : 1;
+
+        // Keep every part at least one chunk long so small files are not split needlessly.
+        partCount = (int) Math.max(1, Math.min(partCount, length / mChunkSize));
+
+        UploadState.Part[] parts = new UploadState.Part[partCount];
+        long partLength = length / partCount;
+        for(int i=0; i<partCount; i++) {
+            long start = i * partLength;
+            long end = i == partCount - 1 ? length : start + partLength;
+            parts[i] = new UploadState.Part(start, end);
+        }
+
+        state = new UploadState(stateFile, fingerprint, parts);
+        state.save();
+
+        return state;
+    }
+
+    private void uploadPart(UploadState state, UploadState.Part part) throws VolleyError, IOException {
+        boolean partial = state.mParts.length > 1;
+
+        if(part.mUrl != null) {
+            // Trust the server over our saved offset, it may have stored more than we know of.
+            try {
+                part.mOffset = mProtocol.queryOffset(mTransport, part.mUrl);
+            } catch (VolleyError e) {
+                if(!isUploadGone(e)) {
+                    throw e;
+                }
+
+                Log.d(TAG, "Upload expired on the server, starting part again: " + part.mUrl);
+                part.mUrl = null;
+            }
+        }
+
+        if(part.mUrl == null) {
+            part.mUrl = mProtocol.createUpload(mTransport, mEndpoint, part.length(), partial);
+            part.mOffset = 0;
+            state.save();
+        }
+
+        if(part.isComplete()) {
+            return;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        try {
+            byte[] buffer = new byte[(int) Math.min(mChunkSize, part.length())];
+
+            while(part.mOffset < part.length()) {
+                if(Thread.currentThread().isInterrupted()) {
+                    throw new VolleyError("Upload cancelled");
+                }
+
+                int length = (int) Math.min(buffer.length, part.length() - part.mOffset);
+                file.seek(part.mStart + part.mOffset);
+                file.readFully(buffer, 0, length);
+
+                byte[] chunk = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                long acknowledged = mProtocol.uploadChunk(mTransport, part.mUrl, part.mOffset, chunk);
+                if(acknowledged <= part.mOffset) {
+                    throw new VolleyError("Server did not accept chunk at offset " + part.mOffset);
+                }
+
+                part.mOffset = acknowledged;
+                state.save();
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private boolean isUploadGone(VolleyError error) {
+        if(error.networkResponse == null) {
+            return false;
+        }
+
+        int statusCode = error.networkResponse.statusCode;
+        return statusCode == HTTP_NOT_FOUND || statusCode == HTTP_GONE;
+    }
+
+    /**
+     * Sends the protocol calls through the Volley queue and waits for their response.
+     */
+    private final UploadTransport mTransport = new UploadTransport() {
+        @Override
+        public NetworkResponse execute(int method, String url, Map<String, String> headers,
+                                       String contentType, byte[] body) throws VolleyError {
+            Map<String, String> allHeaders = new HashMap<>(mHeaders);
+            allHeaders.putAll(headers);
+
+            RequestFuture<NetworkResponse> future = RequestFuture.newFuture();
+            UploadCallRequest request = new UploadCallRequest(method, url, allHeaders, contentType,
+                    body, mTimeoutMs, future);
+            future.setRequest(request);
+
+            // This thread blocks on the result, no need to go through the main thread.
+            ValleyClient client = mClient != null ? mClient : NetworkingValley.getDefaultClient();
+            client.addRequestQueue(request, DirectExecutor.getInstance());
+
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                request.cancel();
+                Thread.currentThread().interrupt();
+                throw new VolleyError("Upload cancelled");
+            } catch (ExecutionException e) {
+                if(e.getCause() instanceof VolleyError) {
+                    throw (VolleyError) e.getCause();
+                }
+                throw new VolleyError(e.getCause());
+            }
+        }
+    };
+
+    private void deliverSuccess(final String uploadUrl) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onSuccess(uploadUrl);
+            }
+        });
+    }
+
+    private void deliverFail(final Throwable error) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onFail(error.getClass().getSimpleName());
+            }
+        });
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes("UTF-8"));
+
+            StringBuilder hex = new StringBuilder();
+            for(byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default {@link UploadProtocol} following the <a href="http://tus.io/protocols/resumable-upload.html">tus</a>
+ * resumable upload protocol, including its concatenation extension for parallel parts.
+ */
+public class TusUploadProtocol implements UploadProtocol {
+
+    private static final String TUS_VERSION = "1.0.0";
+
+    private static final String HEADER_TUS_RESUMABLE = "Tus-Resumable";
+    private static final String HEADER_UPLOAD_LENGTH = "Upload-Length";
+    private static final String HEADER_UPLOAD_OFFSET = "Upload-Offset";
+    private static final String HEADER_UPLOAD_CONCAT = "Upload-Concat";
+    private static final String HEADER_LOCATION = "Location";
+
+    private static final String CONTENT_TYPE_OFFSET_STREAM = "application/offset+octet-stream";
+
+    @Override
+    public String createUpload(UploadTransport transport, String endpoint, long length, boolean partial)
+            throws VolleyError {
+        Map<String, String> headers = newHeaders();
+        headers.put(HEADER_UPLOAD_LENGTH, String.valueOf(length));
+        if(partial) {
+            headers.put(HEADER_UPLOAD_CONCAT, "partial");
+        }
+
+        NetworkResponse response = transport.execute(Request.Method.POST, endpoint, headers, null, null);
+
+        return resolveLocation(endpoint, response);
+    }
+
+    @Override
+    public long queryOffset(UploadTransport transport, String uploadUrl) throws VolleyError {
+        NetworkResponse response = transport.execute(Request.Method.HEAD, uploadUrl, newHeaders(), null, null);
+
+        return parseOffset(response);
+    }
+
+    @Override
+    public long uploadChunk(UploadTransport transport, String uploadUrl, long offset, byte[] chunk)
+            throws VolleyError {
+        Map<String, String> headers = newHeaders();
+        headers.put(HEADER_UPLOAD_OFFSET, String.valueOf(offset));
+
+        NetworkResponse response = transport.execute(Request.Method.PATCH, uploadUrl, headers,
+                CONTENT_TYPE_OFFSET_STREAM, chunk);
+
+        return parseOffset(response);
+    }
+
+    @Override
+    public boolean supportsConcatenation() {
+        return true;
+    }
+
+    @Override
+    public String concatenate(UploadTransport transport, String endpoint, List<String> partUrls)
+            throws VolleyError {
+        StringBuilder concat = new StringBuilder("final;");
+        for(int i=0; i<partUrls.size(); i++) {
+            if(i > 0) {
+                concat.append(' ');
+            }
+            concat.append(partUrls.get(i));
+        }
+
+        Map<String, String> headers = newHeaders();
+        headers.put(HEADER_UPLOAD_CONCAT, concat.toString());
+
+        NetworkResponse response = transport.execute(Request.Method.POST, endpoint, headers, null, null);
+
+        return resolveLocation(endpoint, response);
+    }
+
+    private Map<String, String> newHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put(HEADER_TUS_RESUMABLE, TUS_VERSION);
+
+        return headers;
+    }
+
+    private long parseOffset(NetworkResponse response) throws VolleyError {
+        String offset = response.headers.get(HEADER_UPLOAD_OFFSET);
+        if(offset == null) {
+            throw new ParseError(response);
+        }
+
+        try {
+            return Long.parseLong(offset.trim());
+        } catch (NumberFormatException e) {
+            throw new ParseError(e);
+        }
+    }
+
+    private String resolveLocation(String endpoint, NetworkResponse response) throws VolleyError {
+        String location = response.headers.get(HEADER_LOCATION);
+        if(location == null) {
+            throw new ParseError(response);
+        }
+
+        try {
+            // Servers may answer with a path relative to the creation endpoint.
+            return new URL(new URL(endpoint), location).toString();
+        } catch (MalformedURLException e) {
+            throw new ParseError(e);
+        }
+    }
+}
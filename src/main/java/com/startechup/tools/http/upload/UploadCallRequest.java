@@ -0,0 +1,81 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.RequestFuture;
+
+import java.util.Map;
+
+/**
+ * Single protocol call of a {@link ResumableUpload}. The raw response is returned so the
+ * protocol can read its headers. Volley retries are disabled, the upload resumes by asking the
+ * server for its offset instead of blindly sending the same bytes again.
+ */
+class UploadCallRequest extends Request<NetworkResponse> {
+
+    private final RequestFuture<NetworkResponse> mFuture;
+
+    private final Map<String, String> mHeaders;
+
+    private final String mContentType;
+
+    private final byte[] mBody;
+
+    UploadCallRequest(int method, String url, Map<String, String> headers, String contentType,
+                      byte[] body, int timeoutMs, RequestFuture<NetworkResponse> future) {
+        super(method, url, future);
+
+        mFuture = future;
+        mHeaders = headers;
+        mContentType = contentType;
+        mBody = body;
+
+        setShouldCache(false);
+        setRetryPolicy(new DefaultRetryPolicy(timeoutMs, 0, DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+    }
+
+    @Override
+    protected Response<NetworkResponse> parseNetworkResponse(NetworkResponse response) {
+        return Response.success(response, null);
+    }
+
+    @Override
+    protected void deliverResponse(NetworkResponse response) {
+        mFuture.onResponse(response);
+    }
+
+    @Override
+    public Map<String, String> getHeaders() throws AuthFailureError {
+        return mHeaders;
+    }
+
+    @Override
+    public String getBodyContentType() {
+        return mContentType != null ? mContentType : super.getBodyContentType();
+    }
+
+    @Override
+    public byte[] getBody() throws AuthFailureError {
+        return mBody;
+    }
+}
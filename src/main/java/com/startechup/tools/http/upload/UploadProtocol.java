@@ -0,0 +1,78 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import com.android.volley.VolleyError;
+
+import java.util.List;
+
+/**
+ * Server side protocol used by {@link ResumableUpload}. All methods are called from the upload's
+ * worker threads and may block.
+ */
+public interface UploadProtocol {
+
+    /**
+     * Creates a new upload on the server.
+     *
+     * @param transport Executes the HTTP calls
+     * @param endpoint URL where uploads are created
+     * @param length Total number of bytes that will be uploaded
+     * @param partial True if this upload is one of several parts that will be concatenated
+     * @return URL of the created upload
+     */
+    String createUpload(UploadTransport transport, String endpoint, long length, boolean partial)
+            throws VolleyError;
+
+    /**
+     * Asks the server how many bytes of the upload it already has.
+     *
+     * @param transport Executes the HTTP calls
+     * @param uploadUrl URL returned by {@link #createUpload}
+     * @return Offset of the next byte the server expects
+     */
+    long queryOffset(UploadTransport transport, String uploadUrl) throws VolleyError;
+
+    /**
+     * Sends one chunk of the upload.
+     *
+     * @param transport Executes the HTTP calls
+     * @param uploadUrl URL returned by {@link #createUpload}
+     * @param offset Offset of the first byte of the chunk
+     * @param chunk Chunk bytes
+     * @return Offset acknowledged by the server after this chunk
+     */
+    long uploadChunk(UploadTransport transport, String uploadUrl, long offset, byte[] chunk)
+            throws VolleyError;
+
+    /**
+     * Returns true if the server can join partial uploads, which lets parts be sent in parallel.
+     */
+    boolean supportsConcatenation();
+
+    /**
+     * Joins completed partial uploads into the final upload.
+     *
+     * @param transport Executes the HTTP calls
+     * @param endpoint URL where uploads are created
+     * @param partUrls URLs of the partial uploads, in file order
+     * @return URL of the final upload
+     */
+    String concatenate(UploadTransport transport, String endpoint, List<String> partUrls)
+            throws VolleyError;
+}
@@ -0,0 +1,176 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Progress of a {@link ResumableUpload} saved to disk so the upload can continue after a failure
+ * or after the process was killed. The file is rewritten after every acknowledged chunk.
+ */
+class UploadState {
+
+    private static final String TAG = "UploadState";
+
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_PART_COUNT = "part.count";
+
+    /**
+     * Identifies the file and endpoint this state belongs to.
+     */
+    final String mFingerprint;
+
+    final Part[] mParts;
+
+    private final File mStateFile;
+
+    UploadState(File stateFile, String fingerprint, Part[] parts) {
+        mStateFile = stateFile;
+        mFingerprint = fingerprint;
+        mParts = parts;
+    }
+
+    /**
+     * Byte range of the file uploaded to one server side upload.
+     */
+    static class Part {
+
+        final long mStart;
+
+        final long mEnd;
+
+        /**
+         * URL of the server side upload, null until it is created.
+         */
+        volatile String mUrl;
+
+        /**
+         * Number of bytes of this part acknowledged by the server.
+         */
+        volatile long mOffset;
+
+        Part(long start, long end) {
+            mStart = start;
+            mEnd = end;
+        }
+
+        long length() {
+            return mEnd - mStart;
+        }
+
+        boolean isComplete() {
+            return mUrl != null && mOffset >= length();
+        }
+    }
+
+    /**
+     * Loads a saved state, returns null if there is none or if it belongs to another file.
+     */
+    static UploadState load(File stateFile, String fingerprint) {
+        if(!stateFile.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(stateFile);
+            properties.load(in);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read upload state " + stateFile, e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+
+        if(!fingerprint.equals(properties.getProperty(KEY_FINGERPRINT))) {
+            return null;
+        }
+
+        try {
+            int count = Integer.parseInt(properties.getProperty(KEY_PART_COUNT));
+            Part[] parts = new Part[count];
+            for(int i=0; i<count; i++) {
+                String prefix = "part." + i + ".";
+                parts[i] = new Part(Long.parseLong(properties.getProperty(prefix + "start")),
+                        Long.parseLong(properties.getProperty(prefix + "end")));
+                parts[i].mUrl = properties.getProperty(prefix + "url");
+                parts[i].mOffset = Long.parseLong(properties.getProperty(prefix + "offset", "0"));
+            }
+
+            return new UploadState(stateFile, fingerprint, parts);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Discarding corrupt upload state " + stateFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the state to a temporary file and renames it, so a crash never leaves a partial file.
+     */
+    synchronized void save() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(KEY_FINGERPRINT, mFingerprint);
+        properties.setProperty(KEY_PART_COUNT, String.valueOf(mParts.length));
+        for(int i=0; i<mParts.length; i++) {
+            String prefix = "part." + i + ".";
+            properties.setProperty(prefix + "start", String.valueOf(mParts[i].mStart));
+            properties.setProperty(prefix + "end", String.valueOf(mParts[i].mEnd));
+            properties.setProperty(prefix + "offset", String.valueOf(mParts[i].mOffset));
+            if(mParts[i].mUrl != null) {
+                properties.setProperty(prefix + "url", mParts[i].mUrl);
+            }
+        }
+
+        File tempFile = new File(mStateFile.getPath() + ".tmp");
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            properties.store(out, null);
+            out.getFD().sync();
+        } finally {
+            closeQuietly(out);
+        }
+
+        if(!tempFile.renameTo(mStateFile)) {
+            throw new IOException("Unable to save upload state " + mStateFile);
+        }
+    }
+
+    void delete() {
+        if(mStateFile.exists() && !mStateFile.delete()) {
+            Log.w(TAG, "Unable to delete upload state " + mStateFile);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if(closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.upload;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.VolleyError;
+
+import java.util.Map;
+
+/**
+ * Executes the HTTP calls of an {@link UploadProtocol} and blocks until the response arrives.
+ */
+public interface UploadTransport {
+
+    /**
+     * Performs a request and waits for its response.
+     *
+     * @param method One of {@link com.android.volley.Request.Method}
+     * @param url URL of the request
+     * @param headers Protocol headers to be added to the default ones
+     * @param contentType Content type of the body, null if there is no body
+     * @param body Request body, null if there is no body
+     * @return Raw network response, only successful responses are returned
+     * @throws VolleyError If the request failed or the server answered with an error status
+     */
+    NetworkResponse execute(int method, String url, Map<String, String> headers,
+                            String contentType, byte[] body) throws VolleyError;
+}
@@ -0,0 +1,166 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.url;
+
+import java.util.Map;
+
+/**
+ * Adds query parameters to an expanded {@link UrlTemplate}. Names and values are percent-encoded
+ * straight into the builder's buffer, no intermediate map or strings are created.
+ *
+ * <pre>
+ * UrlBuilder builder = NetworkingValley.newUrl("users/{id}/posts", userId)
+ *         .addQuery("q", text)
+ *         .addQuery("page", 1);
+ * String url = builder.build();
+ * </pre>
+ *
+ * For paging, {@link #clearQuery()} keeps the expanded path and the buffer, so the next page's URL
+ * is written in place.
+ */
+public class UrlBuilder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final StringBuilder mBuffer;
+
+    /**
+     * Length of the expanded template, where the added parameters start
+     */
+    private final int mPathLength;
+
+    private final boolean mTemplateHasQuery;
+
+    private boolean mHasQuery;
+
+    UrlBuilder(UrlTemplate template, String baseUrl, Object[] values) {
+        mBuffer = new StringBuilder(template.estimateLength(baseUrl));
+        template.appendTo(mBuffer, baseUrl, values);
+
+        mPathLength = mBuffer.length();
+        mTemplateHasQuery = template.hasQuery();
+        mHasQuery = mTemplateHasQuery;
+    }
+
+    /**
+     * Adds a query parameter, nothing is added if the value is null.
+     *
+     * @param name Parameter name, not encoded yet
+     * @param value Parameter value, written with {@link String#valueOf(Object)}, not encoded yet
+     */
+    public UrlBuilder addQuery(String name, Object value) {
+        if(value == null) {
+            return this;
+        }
+
+        char last = mBuffer.length() > 0 ? mBuffer.charAt(mBuffer.length() - 1) : 0;
+        if(!mHasQuery) {
+            mBuffer.append('?');
+            mHasQuery = true;
+        } else if(last != '?' && last != '&') {
+            mBuffer.append('&');
+        }
+        appendEncoded(mBuffer, name);
+        mBuffer.append('=');
+        appendEncoded(mBuffer, String.valueOf(value));
+
+        return this;
+    }
+
+    /**
+     * Adds the parameter once for every value, e.g. "id=1&id=2".
+     */
+    public UrlBuilder addQueryValues(String name, Iterable<?> values) {
+        for(Object value : values) {
+            addQuery(name, value);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds every entry of the map, in the map's iteration order.
+     */
+    public UrlBuilder addQueryParams(Map<String, ?> params) {
+        for(Map.Entry<String, ?> param : params.entrySet()) {
+            addQuery(param.getKey(), param.getValue());
+        }
+
+        return this;
+    }
+
+    /**
+     * Removes the parameters added so far, keeping the expanded template.
+     */
+    public UrlBuilder clearQuery() {
+        mBuffer.setLength(mPathLength);
+        mHasQuery = mTemplateHasQuery;
+
+        return this;
+    }
+
+    public String build() {
+        return mBuffer.toString();
+    }
+
+    @Override
+    public String toString() {
+        return build();
+    }
+
+    /**
+     * Appends the value in UTF-8, percent-encoding everything but the unreserved characters of
+     * RFC 3986. Spaces become "%20", which is valid in both the path and the query.
+     */
+    static void appendEncoded(StringBuilder out, String value) {
+        int length = value.length();
+        for(int i = 0; i < length; ) {
+            int codePoint = value.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if(codePoint < 0x80) {
+                if(isUnreserved(codePoint)) {
+                    out.append((char) codePoint);
+                } else {
+                    appendByte(out, codePoint);
+                }
+            } else if(codePoint < 0x800) {
+                appendByte(out, 0xC0 | (codePoint >> 6));
+                appendByte(out, 0x80 | (codePoint & 0x3F));
+            } else if(codePoint < 0x10000) {
+                appendByte(out, 0xE0 | (codePoint >> 12));
+                appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(out, 0x80 | (codePoint & 0x3F));
+            } else {
+                appendByte(out, 0xF0 | (codePoint >> 18));
+                appendByte(out, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendByte(out, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendByte(out, 0x80 | (codePoint & 0x3F));
+            }
+        }
+    }
+
+    private static boolean isUnreserved(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    private static void appendByte(StringBuilder out, int b) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
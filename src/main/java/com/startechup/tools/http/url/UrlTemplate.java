@@ -0,0 +1,186 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.url;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Path template such as "users/{id}/posts", resolved against a base URL. A template is parsed
+ * once, compiled templates are cached by their text so the same template string is never parsed
+ * twice.
+ *
+ * <pre>
+ * String url = UrlTemplate.compile("users/{id}/posts").expand(baseUrl, userId);
+ * </pre>
+ *
+ * Values are encoded when they are written, callers pass them as they are. A value fills a single
+ * path segment, so a "/" in it is encoded as well.
+ */
+public final class UrlTemplate {
+
+    /**
+     * Templates are expected to be constants, past this many the new ones are no longer cached.
+     */
+    private static final int MAX_CACHED_TEMPLATES = 256;
+
+    private static final ConcurrentHashMap<String, UrlTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String mTemplate;
+
+    /**
+     * Text around the variables, one more than there are variables
+     */
+    private final String[] mLiterals;
+
+    /**
+     * Names of the variables, in order
+     */
+    private final String[] mNames;
+
+    /**
+     * True if the template has its own scheme and ignores the base URL
+     */
+    private final boolean mAbsolute;
+
+    private final boolean mHasQuery;
+
+    private UrlTemplate(String template) {
+        mTemplate = template;
+
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int queryStart = template.indexOf('?');
+
+        int start = 0;
+        int open;
+        while((open = template.indexOf('{', start)) != -1) {
+            int close = template.indexOf('}', open);
+            if(close == -1) {
+                throw new IllegalArgumentException("Unclosed variable in " + template);
+            }
+            String name = template.substring(open + 1, close);
+            if(name.length() == 0 || name.indexOf('{') != -1) {
+                throw new IllegalArgumentException("Bad variable name at " + open + " in " + template);
+            }
+            literals.add(template.substring(start, open));
+            names.add(name);
+            start = close + 1;
+        }
+        literals.add(template.substring(start));
+        if(template.indexOf('}', start) != -1) {
+            throw new IllegalArgumentException("Unopened variable in " + template);
+        }
+
+        mLiterals = literals.toArray(new String[literals.size()]);
+        mNames = names.toArray(new String[names.size()]);
+        mAbsolute = template.startsWith("http://") || template.startsWith("https://");
+        mHasQuery = queryStart != -1;
+    }
+
+    /**
+     * Returns the compiled template, parsed on the first call for a given text.
+     *
+     * @param template Template such as "users/{id}/posts", relative to the base URL or absolute
+     * @throws IllegalArgumentException If a variable is not closed or has no name
+     */
+    public static UrlTemplate compile(String template) {
+        UrlTemplate compiled = CACHE.get(template);
+        if(compiled == null) {
+            compiled = new UrlTemplate(template);
+            if(CACHE.size() < MAX_CACHED_TEMPLATES) {
+                UrlTemplate previous = CACHE.putIfAbsent(template, compiled);
+                if(previous != null) {
+                    compiled = previous;
+                }
+            }
+        }
+
+        return compiled;
+    }
+
+    public String getTemplate() {
+        return mTemplate;
+    }
+
+    public int getVariableCount() {
+        return mNames.length;
+    }
+
+    /**
+     * Returns the URL with the variables replaced by the given values, in the order they appear.
+     *
+     * @param baseUrl URL the template is relative to, ignored for an absolute template, may be null
+     * @param values One value per variable, written with {@link String#valueOf(Object)}
+     * @throws IllegalArgumentException If the number of values does not match or a value is null
+     */
+    public String expand(String baseUrl, Object... values) {
+        StringBuilder url = new StringBuilder(estimateLength(baseUrl));
+        appendTo(url, baseUrl, values);
+
+        return url.toString();
+    }
+
+    /**
+     * Returns a builder for query parameters, starting from the expanded template.
+     */
+    public UrlBuilder newBuilder(String baseUrl, Object... values) {
+        return new UrlBuilder(this, baseUrl, values);
+    }
+
+    boolean hasQuery() {
+        return mHasQuery;
+    }
+
+    int estimateLength(String baseUrl) {
+        return (baseUrl != null ? baseUrl.length() : 0) + mTemplate.length() + 16 * mNames.length + 32;
+    }
+
+    void appendTo(StringBuilder url, String baseUrl, Object[] values) {
+        int count = values != null ? values.length : 0;
+        if(count != mNames.length) {
+            throw new IllegalArgumentException(mTemplate + " takes " + mNames.length + " values, got " + count);
+        }
+
+        if(!mAbsolute && baseUrl != null) {
+            url.append(baseUrl);
+            boolean baseSlash = baseUrl.endsWith("/");
+            boolean templateSlash = mTemplate.startsWith("/");
+            if(baseSlash && templateSlash) {
+                url.setLength(url.length() - 1);
+            } else if(!baseSlash && !templateSlash && mTemplate.length() > 0 && !mTemplate.startsWith("?")) {
+                url.append('/');
+            }
+        }
+
+        for(int i = 0; i < mNames.length; i++) {
+            url.append(mLiterals[i]);
+            if(values[i] == null) {
+                throw new IllegalArgumentException("No value for {" + mNames[i] + "} in " + mTemplate);
+            }
+            UrlBuilder.appendEncoded(url, String.valueOf(values[i]));
+        }
+        url.append(mLiterals[mNames.length]);
+    }
+
+    @Override
+    public String toString() {
+        return mTemplate;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * High dynamic range histogram of latencies in microseconds, in the layout of HdrHistogram: every
+ * power of two is split into 1024 linear buckets, so any value from a microsecond to hours is kept with
+ * three significant digits in a fixed array. Recording takes no lock.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 11;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private static final int SUB_BUCKET_HALF = SUB_BUCKET_COUNT / 2;
+
+    /**
+     * Values are capped at 2^36 microseconds, about 19 hours.
+     */
+    private static final int MAX_VALUE_BITS = 36;
+
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+    private final AtomicLongArray mCounts =
+            new AtomicLongArray(SUB_BUCKET_COUNT + (MAX_VALUE_BITS - SUB_BUCKET_BITS) * SUB_BUCKET_HALF);
+
+    private final AtomicLong mTotalCount = new AtomicLong();
+
+    private final AtomicLong mTotalValue = new AtomicLong();
+
+    private final AtomicLong mMaxValue = new AtomicLong();
+
+    void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        mCounts.incrementAndGet(indexOf(value));
+        mTotalCount.incrementAndGet();
+        mTotalValue.addAndGet(value);
+
+        long max;
+        while(value > (max = mMaxValue.get()) && !mMaxValue.compareAndSet(max, value)) {
+            // Another thread raised the maximum, compare again.
+        }
+    }
+
+    long getCount() {
+        return mTotalCount.get();
+    }
+
+    long getMax() {
+        return mMaxValue.get();
+    }
+
+    double getMean() {
+        long count = mTotalCount.get();
+        return count > 0 ? (double) mTotalValue.get() / count : 0;
+    }
+
+    /**
+     * Returns the value the given share of the recorded values are at or below, as the highest
+     * value of its bucket like HdrHistogram does.
+     *
+     * @param percentile From 0 to 100
+     */
+    long getValueAtPercentile(double percentile) {
+        long count = mTotalCount.get();
+        if(count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for(int i = 0; i < mCounts.length(); i++) {
+            seen += mCounts.get(i);
+            if(seen >= target) {
+                return Math.min(highestValueAt(i), mMaxValue.get());
+            }
+        }
+
+        return mMaxValue.get();
+    }
+
+    static int indexOf(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return SUB_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_HALF + (int) ((value >> shift) - SUB_BUCKET_HALF);
+    }
+
+    static long highestValueAt(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_HALF + 1;
+        long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_HALF + SUB_BUCKET_HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
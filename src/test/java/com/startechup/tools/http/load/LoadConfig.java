@@ -0,0 +1,166 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Settings of a load test, read from "valley.load.*" system properties so the same run can be
+ * repeated on every release:
+ *
+ * <pre>
+ * ./gradlew testDebugUnitTest --tests '*LoadTest' -Dvalley.load=true \
+ *         -Dvalley.load.concurrency=32 -Dvalley.load.rate=500 -Dvalley.load.mix=get=80,post=15,upload=5
+ * </pre>
+ */
+class LoadConfig {
+
+    private static final String PREFIX = "valley.load.";
+
+    /**
+     * Name of the run, used for the report file, e.g. the version under test
+     */
+    String mLabel = "local";
+
+    int mDurationSec = 60;
+
+    /**
+     * Requests sent before measuring, to fill pools and caches and let the JIT compile
+     */
+    int mWarmupSec = 10;
+
+    /**
+     * Seconds between interval lines, to see drift over a long soak
+     */
+    int mReportSec = 10;
+
+    int mConcurrency = 16;
+
+    /**
+     * Requests started per second, 0 to send the next request as soon as one completes
+     */
+    int mRate;
+
+    final Map<RequestKind, Integer> mMix = new EnumMap<>(RequestKind.class);
+
+    int mResponseBytes = 4096;
+
+    int mUploadBytes = 256 * 1024;
+
+    /**
+     * Time the mock server waits before answering
+     */
+    int mServerDelayMs;
+
+    /**
+     * "none", "tls" or "mtls" where the server requires the client certificate
+     */
+    String mTls = "none";
+
+    /**
+     * BKS stores given to SSLHttpStack, which opens them with an empty password
+     */
+    String mClientKeyStore;
+    String mClientTrustStore;
+
+    /**
+     * Stores of the mock server, BKS, PKCS12 or JKS by file extension
+     */
+    String mServerKeyStore;
+    String mServerKeyStorePassword = "";
+    String mServerTrustStore;
+    String mServerTrustStorePassword = "";
+
+    /**
+     * Share of failed requests above which the run fails
+     */
+    double mMaxErrorRate = 0.01;
+
+    static LoadConfig fromSystemProperties() {
+        LoadConfig config = new LoadConfig();
+        config.mLabel = System.getProperty(PREFIX + "label", config.mLabel);
+        config.mDurationSec = Integer.getInteger(PREFIX + "durationSec", config.mDurationSec);
+        config.mWarmupSec = Integer.getInteger(PREFIX + "warmupSec", config.mWarmupSec);
+        config.mReportSec = Math.max(1, Integer.getInteger(PREFIX + "reportSec", config.mReportSec));
+        config.mConcurrency = Math.max(1, Integer.getInteger(PREFIX + "concurrency", config.mConcurrency));
+        config.mRate = Integer.getInteger(PREFIX + "rate", config.mRate);
+        config.mResponseBytes = Integer.getInteger(PREFIX + "responseBytes", config.mResponseBytes);
+        config.mUploadBytes = Integer.getInteger(PREFIX + "uploadBytes", config.mUploadBytes);
+        config.mServerDelayMs = Integer.getInteger(PREFIX + "serverDelayMs", config.mServerDelayMs);
+        config.mTls = System.getProperty(PREFIX + "tls", config.mTls).toLowerCase(Locale.US);
+        config.mClientKeyStore = System.getProperty(PREFIX + "clientKeyStore");
+        config.mClientTrustStore = System.getProperty(PREFIX + "clientTrustStore");
+        config.mServerKeyStore = System.getProperty(PREFIX + "serverKeyStore");
+        config.mServerKeyStorePassword = System.getProperty(PREFIX + "serverKeyStorePassword", "");
+        config.mServerTrustStore = System.getProperty(PREFIX + "serverTrustStore");
+        config.mServerTrustStorePassword = System.getProperty(PREFIX + "serverTrustStorePassword", "");
+        config.mMaxErrorRate = Double.parseDouble(System.getProperty(PREFIX + "maxErrorRate", "0.01"));
+        config.parseMix(System.getProperty(PREFIX + "mix", "get=70,post=20,upload=10"));
+
+        return config;
+    }
+
+    boolean isTls() {
+        return !"none".equals(mTls);
+    }
+
+    boolean isMutualTls() {
+        return "mtls".equals(mTls);
+    }
+
+    /**
+     * Picks the kind of the next request by its weight in the mix.
+     */
+    RequestKind pickKind(Random random) {
+        int total = 0;
+        for(int weight : mMix.values()) {
+            total += weight;
+        }
+
+        int pick = random.nextInt(total);
+        for(Map.Entry<RequestKind, Integer> entry : mMix.entrySet()) {
+            pick -= entry.getValue();
+            if(pick < 0) {
+                return entry.getKey();
+            }
+        }
+
+        return RequestKind.GET;
+    }
+
+    private void parseMix(String mix) {
+        for(String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if(pair.length != 2) {
+                throw new IllegalArgumentException("Expected kind=weight in " + mix);
+            }
+
+            int weight = Integer.parseInt(pair[1].trim());
+            if(weight > 0) {
+                mMix.put(RequestKind.valueOf(pair[0].trim().toUpperCase(Locale.US)), weight);
+            }
+        }
+
+        if(mMix.isEmpty()) {
+            throw new IllegalArgumentException("Empty request mix " + mix);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import com.android.volley.Request;
+import com.startechup.tools.http.OnAPIListener;
+import com.startechup.tools.http.ValleyClient;
+
+import java.io.File;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends the request mix through a client at the configured concurrency and rate and measures it.
+ * With a rate, latencies are counted from the time each request was due rather than sent, so a
+ * client falling behind shows in the percentiles instead of silently lowering the load.
+ */
+class LoadRunner {
+
+    private final LoadConfig mConfig;
+
+    private final ValleyClient mClient;
+
+    private final String mBaseUrl;
+
+    private final File mUploadFile;
+
+    private final Semaphore mPermits;
+
+    private final ResourceSampler mSampler = new ResourceSampler();
+
+    private final Random mRandom = new Random(42);
+
+    /**
+     * Replaced once the warm-up is over, requests of the warm-up are not counted.
+     */
+    private volatile Stats mStats = new Stats();
+
+    /**
+     * Replaced on every interval line
+     */
+    private volatile LatencyHistogram mInterval = new LatencyHistogram();
+
+    LoadRunner(LoadConfig config, ValleyClient client, String baseUrl, File uploadFile) {
+        mConfig = config;
+        mClient = client;
+        mBaseUrl = baseUrl;
+        mUploadFile = uploadFile;
+        mPermits = new Semaphore(config.mConcurrency);
+    }
+
+    /**
+     * Runs the warm-up and the measured period and returns the report.
+     */
+    Report run() throws InterruptedException {
+        long periodNanos = mConfig.mRate > 0 ? TimeUnit.SECONDS.toNanos(1) / mConfig.mRate : 0;
+        long reportNanos = TimeUnit.SECONDS.toNanos(mConfig.mReportSec);
+
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(mConfig.mWarmupSec);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(mConfig.mDurationSec);
+        long nextRequest = start;
+        long nextReport = measureStart + reportNanos;
+
+        boolean measuring = false;
+        ResourceSampler.Sample first = null;
+        long intervalStart = measureStart;
+        while(true) {
+            long now = System.nanoTime();
+            if(!measuring && now >= measureStart) {
+                mStats = new Stats();
+                mInterval = new LatencyHistogram();
+                mSampler.resetPeakThreadCount();
+                first = mSampler.sample();
+                measuring = true;
+            }
+            if(now >= end) {
+                break;
+            }
+            if(measuring && now >= nextReport) {
+                printInterval(now - measureStart, now - intervalStart);
+                intervalStart = now;
+                nextReport += reportNanos;
+            }
+
+            if(periodNanos > 0 && now < nextRequest) {
+                LockSupport.parkNanos(Math.min(nextRequest - now, TimeUnit.MILLISECONDS.toNanos(10)));
+                continue;
+            }
+            if(!mPermits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                continue;
+            }
+
+            long due = periodNanos > 0 ? nextRequest : System.nanoTime();
+            nextRequest += periodNanos;
+            send(mConfig.pickKind(mRandom), due);
+        }
+
+        // Let the requests still running finish, they count towards the measured period.
+        mPermits.tryAcquire(mConfig.mConcurrency, 60, TimeUnit.SECONDS);
+        ResourceSampler.Sample last = mSampler.sample();
+
+        return new Report(mConfig, mBaseUrl, mStats, first, last, mSampler.getPeakThreadCount());
+    }
+
+    private void send(final RequestKind kind, final long due) {
+        final Stats stats = mStats;
+        OnAPIListener listener = new OnAPIListener() {
+            @Override
+            public void onSuccess(String response) {
+                onDone(stats, kind, due, true);
+            }
+
+            @Override
+            public void onFail(String response) {
+                onDone(stats, kind, due, false);
+            }
+        };
+
+        Request<?> request;
+        switch(kind) {
+            case POST:
+                HashMap<String, String> body = new HashMap<>();
+                body.put("name", "load-test");
+                body.put("value", String.valueOf(due));
+                request = mClient.constructPostRequest(mBaseUrl + "items", body, listener);
+                break;
+            case UPLOAD:
+                request = mClient.constructMultipartUploadRequest(mBaseUrl + "upload", listener)
+                        .addField("name", "load-test")
+                        .addFile("file", mUploadFile, "application/octet-stream");
+                break;
+            default:
+                request = mClient.constructGetRequest(mBaseUrl + "items", listener);
+                break;
+        }
+
+        mClient.addRequestQueue(request);
+    }
+
+    private void onDone(Stats stats, RequestKind kind, long due, boolean success) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+        if(success) {
+            stats.mLatencies.get(kind).record(micros);
+            stats.mAll.record(micros);
+            mInterval.record(micros);
+        } else {
+            stats.mErrors.get(kind).incrementAndGet();
+        }
+
+        mPermits.release();
+    }
+
+    private void printInterval(long elapsedNanos, long intervalNanos) {
+        LatencyHistogram interval = mInterval;
+        mInterval = new LatencyHistogram();
+
+        ResourceSampler.Sample sample = mSampler.sample();
+        System.out.println(String.format(Locale.US,
+                "[%5ds] %8.1f req/s  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  threads %4d  heap %6.1f MB",
+                TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+                interval.getCount() * 1e9 / intervalNanos,
+                interval.getValueAtPercentile(50) / 1000.0,
+                interval.getValueAtPercentile(99) / 1000.0,
+                interval.getMax() / 1000.0,
+                sample.mThreadCount,
+                sample.mUsedHeap / 1048576.0));
+    }
+
+    /**
+     * Latencies and errors of the measured period.
+     */
+    static class Stats {
+
+        final Map<RequestKind, LatencyHistogram> mLatencies = new EnumMap<>(RequestKind.class);
+
+        final Map<RequestKind, AtomicLong> mErrors = new EnumMap<>(RequestKind.class);
+
+        final LatencyHistogram mAll = new LatencyHistogram();
+
+        Stats() {
+            for(RequestKind kind : RequestKind.values()) {
+                mLatencies.put(kind, new LatencyHistogram());
+                mErrors.put(kind, new AtomicLong());
+            }
+        }
+
+        long getErrorCount() {
+            long errors = 0;
+            for(AtomicLong count : mErrors.values()) {
+                errors += count.get();
+            }
+
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import com.startechup.tools.http.DirectExecutor;
+import com.startechup.tools.http.ValleyClient;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.Security;
+import java.util.Random;
+
+/**
+ * Soak and load test of the client against a local mock server, skipped unless run with
+ * -Dvalley.load=true. See {@link LoadConfig} for the settings.
+ */
+public class LoadTest {
+
+    @Test
+    public void runLoad() throws Exception {
+        Assume.assumeTrue("Run with -Dvalley.load=true", Boolean.getBoolean("valley.load"));
+
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        if(config.isTls() && Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            // SSLHttpStack reads BKS stores, which the JVM cannot open on its own.
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        File workDir = File.createTempFile("valley-load", "");
+        if(!workDir.delete() || !workDir.mkdirs()) {
+            throw new IOException("Unable to create " + workDir);
+        }
+        File uploadFile = createUploadFile(new File(workDir, "upload.bin"), config.mUploadBytes);
+
+        MockServer server = new MockServer(config);
+        server.start();
+        ValleyClient client = createClient(config, server.getBaseUrl(), workDir);
+        try {
+            Report report = new LoadRunner(config, client, server.getBaseUrl(), uploadFile).run();
+            System.out.println(report);
+            report.writeTo(new File("build/valley-load/" + config.mLabel + ".txt"));
+
+            Assert.assertTrue("Error rate " + report.getErrorRate() + " over " + config.mMaxErrorRate,
+                    report.getErrorRate() <= config.mMaxErrorRate);
+        } finally {
+            client.stop();
+            server.stop();
+        }
+    }
+
+    private static ValleyClient createClient(LoadConfig config, String baseUrl, File workDir) throws IOException {
+        // Listeners run on the network threads, there is no main thread on the JVM.
+        ValleyClient.Builder builder = new ValleyClient.Builder(new JvmContext(workDir), baseUrl)
+                .setDeliveryExecutor(DirectExecutor.getInstance());
+
+        if(config.isTls()) {
+            if(config.mClientKeyStore == null || config.mClientTrustStore == null) {
+                throw new IllegalArgumentException(
+                        "valley.load.clientKeyStore and valley.load.clientTrustStore are needed for " + config.mTls);
+            }
+            builder.loadCerts(new FileInputStream(config.mClientKeyStore), new FileInputStream(config.mClientTrustStore));
+        }
+
+        return builder.build();
+    }
+
+    private static File createUploadFile(File file, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(7).nextBytes(data);
+
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+
+        return file;
+    }
+}
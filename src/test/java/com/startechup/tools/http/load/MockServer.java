@@ -0,0 +1,220 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * Local HTTP or HTTPS server the load test runs against, on the JDK's built-in server so the test
+ * needs no other dependency. GET /items answers a JSON body of the configured size, POST /items
+ * and POST /upload read the whole body and answer a short JSON object.
+ */
+class MockServer {
+
+    private final LoadConfig mConfig;
+
+    private final HttpServer mServer;
+
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "MockServer-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final byte[] mItems;
+
+    MockServer(LoadConfig config) throws IOException, GeneralSecurityException {
+        mConfig = config;
+        mItems = createItems(config.mResponseBytes);
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        if(config.isTls()) {
+            final SSLContext sslContext = createSSLContext(config);
+            final boolean needClientAuth = config.isMutualTls();
+
+            HttpsServer server = HttpsServer.create(address, 0);
+            server.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
+                @Override
+                public void configure(HttpsParameters params) {
+                    SSLParameters sslParameters = sslContext.getDefaultSSLParameters();
+                    sslParameters.setNeedClientAuth(needClientAuth);
+                    params.setSSLParameters(sslParameters);
+                }
+            });
+            mServer = server;
+        } else {
+            mServer = HttpServer.create(address, 0);
+        }
+
+        mServer.setExecutor(mExecutor);
+        mServer.createContext("/items", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if("GET".equals(exchange.getRequestMethod())) {
+                    drain(exchange);
+                    respond(exchange, mItems);
+                } else {
+                    long received = drain(exchange);
+                    respond(exchange, ("{\"id\":" + received + "}").getBytes("UTF-8"));
+                }
+            }
+        });
+        mServer.createContext("/upload", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                long received = drain(exchange);
+                respond(exchange, ("{\"received\":" + received + "}").getBytes("UTF-8"));
+            }
+        });
+    }
+
+    void start() {
+        mServer.start();
+    }
+
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    String getBaseUrl() {
+        return (mConfig.isTls() ? "https" : "http") + "://127.0.0.1:" + mServer.getAddress().getPort() + "/";
+    }
+
+    private long drain(HttpExchange exchange) throws IOException {
+        long received = 0;
+        byte[] buffer = new byte[8192];
+        InputStream in = exchange.getRequestBody();
+        try {
+            int count;
+            while((count = in.read(buffer)) != -1) {
+                received += count;
+            }
+        } finally {
+            in.close();
+        }
+
+        return received;
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        if(mConfig.mServerDelayMs > 0) {
+            try {
+                Thread.sleep(mConfig.mServerDelayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        // Every GET reaches the server, as a polling screen would.
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, body.length);
+
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(body);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Returns a JSON array of about the given size.
+     */
+    private static byte[] createItems(int size) throws IOException {
+        StringBuilder items = new StringBuilder(size + 64).append('[');
+        char[] filler = new char[64];
+        Arrays.fill(filler, 'x');
+        for(int i = 0; items.length() < size - 2; i++) {
+            if(i > 0) {
+                items.append(',');
+            }
+            items.append("{\"id\":").append(i).append(",\"name\":\"").append(filler).append("\"}");
+        }
+
+        return items.append(']').toString().getBytes("UTF-8");
+    }
+
+    private static SSLContext createSSLContext(LoadConfig config) throws IOException, GeneralSecurityException {
+        if(config.mServerKeyStore == null) {
+            throw new IllegalArgumentException("valley.load.serverKeyStore is needed for " + config.mTls);
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(loadKeyStore(config.mServerKeyStore, config.mServerKeyStorePassword),
+                config.mServerKeyStorePassword.toCharArray());
+
+        TrustManagerFactory trustManagerFactory = null;
+        if(config.mServerTrustStore != null) {
+            trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            trustManagerFactory.init(loadKeyStore(config.mServerTrustStore, config.mServerTrustStorePassword));
+        } else if(config.isMutualTls()) {
+            throw new IllegalArgumentException("valley.load.serverTrustStore is needed to verify client certificates");
+        }
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(),
+                trustManagerFactory != null ? trustManagerFactory.getTrustManagers() : null, null);
+
+        return sslContext;
+    }
+
+    private static KeyStore loadKeyStore(String path, String password) throws IOException, GeneralSecurityException {
+        String type = path.endsWith(".bks") ? "BKS" : path.endsWith(".p12") || path.endsWith(".pfx") ? "PKCS12" : "JKS";
+        KeyStore keyStore = KeyStore.getInstance(type);
+
+        InputStream in = new FileInputStream(path);
+        try {
+            keyStore.load(in, password.toCharArray());
+        } finally {
+            in.close();
+        }
+
+        return keyStore;
+    }
+}
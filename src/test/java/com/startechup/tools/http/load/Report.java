@@ -0,0 +1,139 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of a load test, printed and saved under build/valley-load so runs of two releases can be
+ * put side by side.
+ */
+class Report {
+
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    private final LoadConfig mConfig;
+
+    private final String mBaseUrl;
+
+    private final LoadRunner.Stats mStats;
+
+    private final ResourceSampler.Sample mFirst;
+
+    private final ResourceSampler.Sample mLast;
+
+    private final int mPeakThreadCount;
+
+    Report(LoadConfig config, String baseUrl, LoadRunner.Stats stats, ResourceSampler.Sample first,
+           ResourceSampler.Sample last, int peakThreadCount) {
+        mConfig = config;
+        mBaseUrl = baseUrl;
+        mStats = stats;
+        mFirst = first;
+        mLast = last;
+        mPeakThreadCount = peakThreadCount;
+    }
+
+    /**
+     * Returns the share of failed requests, 0 if none was sent.
+     */
+    double getErrorRate() {
+        long errors = mStats.getErrorCount();
+        long total = mStats.mAll.getCount() + errors;
+        return total > 0 ? (double) errors / total : 0;
+    }
+
+    void writeTo(File file) throws IOException {
+        File dir = file.getParentFile();
+        if(dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        double seconds = (mLast.mTimeNanos - mFirst.mTimeNanos) / 1e9;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Load test %s%n", mConfig.mLabel));
+        report.append(String.format(Locale.US, "  target       %s (tls: %s)%n", mBaseUrl, mConfig.mTls));
+        report.append(String.format(Locale.US, "  load         %.0f s after %d s warm-up, concurrency %d, rate %s%n",
+                seconds, mConfig.mWarmupSec, mConfig.mConcurrency,
+                mConfig.mRate > 0 ? mConfig.mRate + " req/s" : "unbounded"));
+        report.append(String.format(Locale.US, "  mix          %s, response %d B, upload %d B, server delay %d ms%n",
+                mConfig.mMix, mConfig.mResponseBytes, mConfig.mUploadBytes, mConfig.mServerDelayMs));
+        report.append(String.format(Locale.US, "%n%-8s %9s %7s %9s %9s", "kind", "count", "errors", "req/s", "mean ms"));
+        for(double percentile : PERCENTILES) {
+            report.append(String.format(Locale.US, " %9s", "p" + formatPercentile(percentile)));
+        }
+        report.append(String.format(Locale.US, " %9s%n", "max"));
+
+        for(Map.Entry<RequestKind, LatencyHistogram> entry : mStats.mLatencies.entrySet()) {
+            if(mConfig.mMix.containsKey(entry.getKey())) {
+                appendRow(report, entry.getKey().name(), entry.getValue(),
+                        mStats.mErrors.get(entry.getKey()).get(), seconds);
+            }
+        }
+        appendRow(report, "ALL", mStats.mAll, mStats.getErrorCount(), seconds);
+
+        report.append('\n');
+        if(mLast.mAllocatedBytes >= 0) {
+            long allocated = mLast.mAllocatedBytes - mFirst.mAllocatedBytes;
+            report.append(String.format(Locale.US, "  allocation   %.1f MB/s, %.1f KB per request%n",
+                    allocated / 1048576.0 / seconds,
+                    mStats.mAll.getCount() > 0 ? allocated / 1024.0 / mStats.mAll.getCount() : 0));
+        } else {
+            report.append("  allocation   not measured by this JVM\n");
+        }
+        report.append(String.format(Locale.US, "  threads      %d at start, %d at end, %d peak%n",
+                mFirst.mThreadCount, mLast.mThreadCount, mPeakThreadCount));
+        report.append(String.format(Locale.US, "  gc           %d collections, %d ms%n",
+                mLast.mGcCount - mFirst.mGcCount, mLast.mGcTimeMs - mFirst.mGcTimeMs));
+        report.append(String.format(Locale.US, "  heap         %.1f MB used at start, %.1f MB at end%n",
+                mFirst.mUsedHeap / 1048576.0, mLast.mUsedHeap / 1048576.0));
+
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String name, LatencyHistogram histogram, long errors,
+                                  double seconds) {
+        report.append(String.format(Locale.US, "%-8s %9d %7d %9.1f %9.2f", name, histogram.getCount(), errors,
+                histogram.getCount() / seconds, histogram.getMean() / 1000.0));
+        for(double percentile : PERCENTILES) {
+            report.append(String.format(Locale.US, " %9.2f", histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        report.append(String.format(Locale.US, " %9.2f%n", histogram.getMax() / 1000.0));
+    }
+
+    private static String formatPercentile(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((int) percentile) : String.valueOf(percentile);
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ *   Copyright (2015) StarTechUp Inc.
+
+     Licensed under the Apache License, Version 2.0 (the "License");
+     you may not use this file except in compliance with the License.
+     You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+     Unless required by applicable law or agreed to in writing, software
+     distributed under the License is distributed on an "AS IS" BASIS,
+     WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+     See the License for the specific language governing permissions and
+     limitations under the License.
+
+ */
+
+package com.startechup.tools.http.load;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the allocations, threads, garbage collections and heap of the JVM running the test.
+ */
+class ResourceSampler {
+
+    private final ThreadMXBean mThreadBean = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Last allocation count of every thread seen, so threads that ended still count.
+     */
+    private final Map<Long, Long> mAllocatedByThread = new HashMap<>();
+
+    /**
+     * Values at one point of the run.
+     */
+    static class Sample {
+        long mTimeNanos;
+        long mAllocatedBytes;
+        int mThreadCount;
+        long mGcCount;
+        long mGcTimeMs;
+        long mUsedHeap;
+    }
+
+    synchronized Sample sample() {
+        Sample sample = new Sample();
+        sample.mTimeNanos = System.nanoTime();
+        sample.mAllocatedBytes = getAllocatedBytes();
+        sample.mThreadCount = mThreadBean.getThreadCount();
+
+        for(GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            sample.mGcCount += Math.max(0, gcBean.getCollectionCount());
+            sample.mGcTimeMs += Math.max(0, gcBean.getCollectionTime());
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        sample.mUsedHeap = runtime.totalMemory() - runtime.freeMemory();
+
+        return sample;
+    }
+
+    void resetPeakThreadCount() {
+        mThreadBean.resetPeakThreadCount();
+    }
+
+    int getPeakThreadCount() {
+        return mThreadBean.getPeakThreadCount();
+    }
+
+    /**
+     * Returns the bytes allocated by all threads so far, -1 if the JVM does not count them.
+     */
+    private long getAllocatedBytes() {
+        if(!(mThreadBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) mThreadBean;
+        if(!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        long[] ids = threadBean.getAllThreadIds();
+        long[] allocated = threadBean.getThreadAllocatedBytes(ids);
+        for(int i = 0; i < ids.length; i++) {
+            if(allocated[i] >= 0) {
+                mAllocatedByThread.put(ids[i], allocated[i]);
+            }
+        }
+
+        long total = 0;
+        for(long bytes : mAllocatedByThread.values()) {
+            total += bytes;
+        }
+
+        return total;
+    }
+}